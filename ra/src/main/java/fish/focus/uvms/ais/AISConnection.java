@@ -45,7 +45,49 @@ public interface AISConnection {
 
     public void open(String host, Integer port, String userName, String password);
 
+    /**
+     * Like {@link #open(String, Integer, String, String)}, for a feed that compresses the data it sends after the login.
+     */
+    public void open(String host, Integer port, String userName, String password, StreamCompression compression);
+
+    /**
+     * Receives NMEA datagrams on the local address and port instead of connecting to a feed.
+     *
+     * @param bindAddress local address, e.g. 0.0.0.0 for all interfaces
+     * @param port        local UDP port
+     */
+    public void listen(String bindAddress, Integer port);
+
+    /**
+     * Replays a recorded NMEA file, plain or gzip, instead of connecting to a feed. Lines are paced by their
+     * TAG block timestamps. The connection stays open after the end of the file.
+     *
+     * @param file  path of the file
+     * @param speed multiple of the recorded pace, 0 or less for maximum speed
+     */
+    public void replay(String file, double speed);
+
     public List<Sentence> getSentences();
 
+    /**
+     * Replaces the socket of an open connection without a gap in the data, if the resource adapter is
+     * configured for make-before-break reconnects.
+     *
+     * @return false if nothing was done, the caller should close and reopen the connection instead
+     */
+    public boolean reconnect();
+
+    /**
+     * Pushes read sentences to the listener in micro-batches instead of waiting for {@link #getSentences()}.
+     * Replaces any previously subscribed listener. The subscription ends when the connection is closed.
+     *
+     * @param listener the listener
+     */
+    public void subscribe(SentenceListener listener);
+
+    public void unsubscribe(SentenceListener listener);
+
+    public AISConnectionMetrics getMetrics();
+
     public void close();
 }
\ No newline at end of file
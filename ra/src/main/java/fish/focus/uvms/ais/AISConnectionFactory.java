@@ -50,4 +50,18 @@ public interface AISConnectionFactory extends Serializable, Referenceable {
      */
     public AISConnection getConnection() throws ResourceException;
 
+    /**
+     * Get connection for a named feed. Each feed has its own physical connection.
+     *
+     * @param feed name of the feed
+     * @return AISConnection instance
+     * @throws ResourceException Thrown if a connection can't be obtained
+     */
+    public AISConnection getConnection(String feed) throws ResourceException;
+
+    /**
+     * @return number of reader threads currently running in the resource adapter, for all feeds
+     */
+    public int getLiveReaders();
+
 }
\ No newline at end of file
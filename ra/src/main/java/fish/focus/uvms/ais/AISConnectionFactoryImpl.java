@@ -100,6 +100,29 @@ public class AISConnectionFactoryImpl implements AISConnectionFactory {
         return (AISConnection) connectionManager.allocateConnection(mcf, null);
     }
 
+    /**
+     * Get connection for a named feed
+     *
+     * @param feed name of the feed
+     * @return AISConnection instance
+     * @throws ResourceException Thrown if a connection can't be obtained
+     */
+    @Override
+    public AISConnection getConnection(String feed) throws ResourceException {
+        log.finest("getConnection(" + feed + ")");
+        return (AISConnection) connectionManager.allocateConnection(mcf, new AISConnectionRequestInfo(feed));
+    }
+
+    /**
+     * Get the number of running reader threads
+     *
+     * @return number of reader threads currently running in the resource adapter
+     */
+    @Override
+    public int getLiveReaders() {
+        return mcf.getReaderExecutor().getLiveReaders();
+    }
+
     /**
      * Get the Reference instance.
      *
@@ -76,6 +76,30 @@ public class AISConnectionImpl implements AISConnection {
         }
     }
 
+    @Override
+    public void open(String host, Integer port, String userName, String password, StreamCompression compression) {
+        LOG.finest("Open connection");
+        if (mc != null) {
+            mc.open(host, port, userName, password, compression);
+        }
+    }
+
+    @Override
+    public void listen(String bindAddress, Integer port) {
+        LOG.finest("Listen");
+        if (mc != null) {
+            mc.listen(bindAddress, port);
+        }
+    }
+
+    @Override
+    public void replay(String file, double speed) {
+        LOG.finest("Replay");
+        if (mc != null) {
+            mc.replay(file, speed);
+        }
+    }
+
     @Override
     public boolean isOpen() {
         LOG.finest("isOpen");
@@ -94,6 +118,40 @@ public class AISConnectionImpl implements AISConnection {
         return mc.getSentences();
     }
 
+    @Override
+    public boolean reconnect() {
+        LOG.finest("reconnect");
+        if (mc == null) {
+            return false;
+        }
+        return mc.reconnect();
+    }
+
+    @Override
+    public void subscribe(SentenceListener listener) {
+        LOG.finest("subscribe");
+        if (mc != null) {
+            mc.subscribe(listener);
+        }
+    }
+
+    @Override
+    public void unsubscribe(SentenceListener listener) {
+        LOG.finest("unsubscribe");
+        if (mc != null) {
+            mc.unsubscribe(listener);
+        }
+    }
+
+    @Override
+    public AISConnectionMetrics getMetrics() {
+        LOG.finest("getMetrics");
+        if (mc == null) {
+            return null;
+        }
+        return mc.getMetrics();
+    }
+
     @Override
     public void close() {
         LOG.finest("Closing connection");
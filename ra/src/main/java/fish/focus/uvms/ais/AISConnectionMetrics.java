@@ -0,0 +1,235 @@
+package fish.focus.uvms.ais;
+
+/**
+ * Read-only view of the runtime counters of an AIS connection.
+ */
+public class AISConnectionMetrics {
+
+    private final String feed;
+    private final SentenceRingBuffer sentences;
+    private final FeedCounters counters;
+
+    AISConnectionMetrics(String feed, SentenceRingBuffer sentences, FeedCounters counters) {
+        this.feed = feed;
+        this.sentences = sentences;
+        this.counters = counters;
+    }
+
+    /**
+     * @return name of the feed the connection reads
+     */
+    public String getFeed() {
+        return feed;
+    }
+
+    /**
+     * @return number of sentences currently waiting to be retrieved
+     */
+    public int getQueueSize() {
+        return sentences.size();
+    }
+
+    public int getQueueCapacity() {
+        return sentences.getCapacity();
+    }
+
+    /**
+     * @return the largest number of sentences that have been waiting at the same time
+     */
+    public int getQueueHighWatermark() {
+        return sentences.getHighWatermark();
+    }
+
+    /**
+     * @return number of complete sentences read from the feed, before duplicates are dropped
+     */
+    public long getFramedSentences() {
+        return counters.getFramedSentences();
+    }
+
+    /**
+     * @return number of sentences taken from the queue, by polling or by a subscribed listener
+     */
+    public long getDeliveredSentences() {
+        return sentences.getDequeuedCount();
+    }
+
+    /**
+     * Framed sentences that have neither been delivered, nor are queued, nor have been counted as dropped or
+     * duplicate. Should stay 0, also across reconnects. Read while the feed is busy the counters are not taken
+     * at the same instant, so the value may be off by a few sentences for a moment.
+     *
+     * @return number of sentences lost without being counted
+     */
+    public long getUnaccountedSentences() {
+        long delivered = sentences.getDequeuedCount();
+        long queued = sentences.size();
+        return counters.getFramedSentences() - counters.getDuplicates() - sentences.getDroppedCount() - delivered - queued;
+    }
+
+    /**
+     * @return number of sentences discarded because the queue was full
+     */
+    public long getDroppedSentences() {
+        return sentences.getDroppedCount();
+    }
+
+    /**
+     * @return number of sentences dropped because the same payload was received shortly before, by this or another feed
+     */
+    public long getDuplicateSentences() {
+        return counters.getDuplicates();
+    }
+
+    /**
+     * @return number of multi-sentence messages dropped because fragments were missing, repeated or invalid
+     */
+    public long getDiscardedFragmentGroups() {
+        return counters.getDiscardedFragmentGroups();
+    }
+
+    /**
+     * @return number of lines dropped because the NMEA checksum was missing or wrong
+     */
+    public long getBadChecksums() {
+        return counters.getBadChecksums();
+    }
+
+    /**
+     * @return milliseconds since the last byte was received, or -1 if nothing has been received
+     */
+    public long getLastReadAgeMillis() {
+        return counters.getLastReadAgeMillis(System.currentTimeMillis());
+    }
+
+    /**
+     * @return age in milliseconds of the newest TAG block timestamp received, or -1 if the feed sends no timestamps
+     */
+    public long getFeedLagMillis() {
+        return counters.getFeedLagMillis(System.currentTimeMillis());
+    }
+
+    /**
+     * @return number of times the reader reconnected because the feed was idle or lagging
+     */
+    public long getWatchdogReconnects() {
+        return counters.getWatchdogReconnects();
+    }
+
+    /**
+     * @return number of idle read timeouts of a datagram feed, the socket stays bound through them
+     */
+    public long getIdleTimeouts() {
+        return counters.getIdleTimeouts();
+    }
+
+    /**
+     * @return number of UDP datagrams received
+     */
+    public long getReceivedDatagrams() {
+        return counters.getDatagrams();
+    }
+
+    /**
+     * @return number of bytes received in UDP datagrams
+     */
+    public long getReceivedDatagramBytes() {
+        return counters.getDatagramBytes();
+    }
+
+    /**
+     * Datagrams the operating system dropped because the socket receive buffer was full. Only known on Linux,
+     * and counted per socket, so the count starts over when the socket is bound again.
+     *
+     * @return number of dropped datagrams, 0 if not received over UDP or unknown
+     */
+    public long getDroppedDatagrams() {
+        int port = counters.getBoundPort();
+        return port == 0 ? 0 : Math.max(0, UdpSocketStats.getDrops(port));
+    }
+
+    /**
+     * @return number of raw lines written to the capture journal
+     */
+    public long getCapturedLines() {
+        return counters.getCapturedLines();
+    }
+
+    /**
+     * @return number of raw lines left out of the capture journal
+     */
+    public long getCaptureDroppedLines() {
+        return counters.getCaptureDroppedLines();
+    }
+
+    /**
+     * @return number of lines read from the replayed file, 0 if the feed is not a replay
+     */
+    public long getReplayedLines() {
+        return counters.getReplayedLines();
+    }
+
+    /**
+     * @return lines per second the file replay has achieved, 0 if the feed is not a replay
+     */
+    public double getReplayLinesPerSecond() {
+        return counters.getReplayLinesPerSecond(System.currentTimeMillis());
+    }
+
+    /**
+     * @return number of bytes received, see {@link FeedCounters#getReceivedBytes()}
+     */
+    public long getReceivedBytes() {
+        return counters.getReceivedBytes();
+    }
+
+    /**
+     * @return number of complete lines received, valid or not
+     */
+    public long getReceivedLines() {
+        return counters.getReceivedLines();
+    }
+
+    /**
+     * @return number of lines that were too long, had too few fields or could not be parsed
+     */
+    public long getRejectedLines() {
+        return counters.getRejectedLines();
+    }
+
+    /**
+     * @return number of multi-sentence messages put together from their fragments
+     */
+    public long getReassembledMessages() {
+        return counters.getReassembledMessages();
+    }
+
+    /**
+     * @param messageType AIS message type, 0 to 63
+     * @return number of messages of the type dropped by the message type filter
+     */
+    public long getFilteredMessages(int messageType) {
+        return counters.getFilteredMessages(messageType);
+    }
+
+    /**
+     * @return number of messages of all types dropped by the message type filter
+     */
+    public long getFilteredMessages() {
+        return counters.getFilteredMessages();
+    }
+
+    /**
+     * @return number of messages dropped because of their source MMSI
+     */
+    public long getRejectedMmsis() {
+        return counters.getRejectedMmsis();
+    }
+
+    /**
+     * @return number of times the feed was connected, or its datagram socket bound
+     */
+    public long getConnects() {
+        return counters.getConnects();
+    }
+}
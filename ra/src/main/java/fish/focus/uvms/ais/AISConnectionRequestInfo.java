@@ -0,0 +1,49 @@
+package fish.focus.uvms.ais;
+
+import javax.resource.spi.ConnectionRequestInfo;
+import java.util.Objects;
+
+/**
+ * Selects the feed a connection handle is requested for. Every feed gets its own managed connection,
+ * and with it its own reader and sentence buffer.
+ */
+public class AISConnectionRequestInfo implements ConnectionRequestInfo {
+
+    /**
+     * Name of the feed used when a connection is requested without a feed name
+     */
+    public static final String DEFAULT_FEED = "default";
+
+    private final String feed;
+
+    public AISConnectionRequestInfo(String feed) {
+        this.feed = feed == null ? DEFAULT_FEED : feed;
+    }
+
+    public String getFeed() {
+        return feed;
+    }
+
+    static String feedOf(ConnectionRequestInfo cxRequestInfo) {
+        return cxRequestInfo instanceof AISConnectionRequestInfo ? ((AISConnectionRequestInfo) cxRequestInfo).getFeed() : DEFAULT_FEED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        AISConnectionRequestInfo that = (AISConnectionRequestInfo) o;
+        return feed.equals(that.feed);
+    }
+
+    @Override
+    public int hashCode() {
+        return feed.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "AISConnectionRequestInfo{feed=" + feed + "}";
+    }
+}
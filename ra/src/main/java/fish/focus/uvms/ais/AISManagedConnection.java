@@ -40,15 +40,25 @@ import javax.transaction.xa.XAResource;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -62,22 +72,58 @@ public class AISManagedConnection implements ManagedConnection {
 
     private static final AtomicInteger NUMBER_OF_STARTED_THREADS = new AtomicInteger(0);
 
-    private static final int RETRY_DELAY_TIME_SEC = 10;
-    private static final int SOCKET_SO_TIMEOUT = 5 * 60 * 1000;
+    private static final int DEFAULT_IDLE_READ_TIMEOUT_MS = 30 * 1000;
+    private static final int DEFAULT_RECONNECT_DELAY_MS = 10 * 1000;
+    private static final int DEFAULT_MAX_RECONNECT_DELAY_MS = 5 * 60 * 1000;
+    private static final int READER_HAND_OFF_TIMEOUT_SEC = 30;
+    private static final int OVERLAP_WINDOW_MS = 10 * 1000;
+    private static final int OVERLAP_CAPACITY = 16384;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int DATAGRAM_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final int DEFAULT_DELIVERY_BATCH_SIZE = 500;
+    private static final int DEFAULT_DELIVERY_BATCH_TIMEOUT_MS = 200;
 
-    private static final Pattern COMMENT_BLOCK_PATTERN = Pattern.compile("\\\\(.*?)\\\\(.*)");
-
-    private volatile boolean continueRetry = true;
     private final AtomicReference<CountDownLatch> atomicCountDownLatch = new AtomicReference<>(new CountDownLatch(1));
 
-    private ConcurrentLinkedQueue<Sentence> sentences;
+    private final SentenceRingBuffer sentences;
+
+    private final PayloadDeduplicator deduplicator;
+
+    /**
+     * Drops the lines a make-before-break reconnect reads twice when the shared deduplicator is disabled
+     */
+    private final PayloadDeduplicator overlapDeduplicator;
+    private volatile long overlapUntil;
+    private final FeedCounters counters = new FeedCounters();
+
+    /**
+     * Shared by the reader generations of this connection, one at a time, see {@link Reader}
+     */
+    private final NmeaFramer framer = new NmeaFramer(this::accept, counters);
+
+    /**
+     * Raw capture of the lines read, null when the capture is disabled
+     */
+    private final CaptureJournal captureJournal;
 
-    private Socket socket;
+    private final AtomicReference<SentenceDispatcher> dispatcher = new AtomicReference<>();
+
+    /**
+     * The reader of this connection, there is at most one at a time
+     */
+    private final AtomicReference<Reader> reader = new AtomicReference<>();
 
     private PrintWriter logWriter;
 
     private final AISManagedConnectionFactory mcf;
 
+    /**
+     * Runs the reader threads when there is no managed connection factory
+     */
+    private final ReaderExecutor unmanagedExecutor;
+
+    private final String feed;
+
     private final List<ConnectionEventListener> listeners;
     private final Set<AISConnectionImpl> connections;
 
@@ -87,7 +133,27 @@ public class AISManagedConnection implements ManagedConnection {
      * @param mcf mcf
      */
     public AISManagedConnection(AISManagedConnectionFactory mcf) {
+        this(mcf, AISConnectionRequestInfo.DEFAULT_FEED);
+    }
+
+    /**
+     * Constructor for a named feed
+     *
+     * @param mcf  mcf
+     * @param feed name of the feed this connection reads
+     */
+    public AISManagedConnection(AISManagedConnectionFactory mcf, String feed) {
         this.mcf = mcf;
+        this.unmanagedExecutor = mcf == null ? new ReaderExecutor(null, false) : null;
+        this.feed = feed;
+        this.sentences = mcf != null ? mcf.createSentenceBuffer()
+                : new SentenceRingBuffer(AISManagedConnectionFactory.DEFAULT_SENTENCE_BUFFER_CAPACITY, SentenceRingBuffer.OverflowPolicy.DROP_OLDEST);
+        this.deduplicator = mcf != null ? mcf.getDeduplicator() : null;
+        this.overlapDeduplicator = deduplicator == null && mcf != null && Boolean.TRUE.equals(mcf.getMakeBeforeBreakReconnect())
+                ? new PayloadDeduplicator(OVERLAP_WINDOW_MS, OVERLAP_CAPACITY) : null;
+        this.captureJournal = mcf != null ? mcf.createCaptureJournal(feed, counters) : null;
+        framer.setLineSink(captureJournal);
+        framer.setFilter(mcf != null ? mcf.createIngestFilter(counters) : IngestFilter.acceptAll(counters));
         this.logWriter = null;
         this.listeners = Collections.synchronizedList(new ArrayList<>(1));
         this.connections = new HashSet<>();
@@ -149,6 +215,10 @@ public class AISManagedConnection implements ManagedConnection {
         LOG.finest("destroy()");
         connections.forEach(AISConnectionImpl::close);
         connections.clear();
+        stopDispatcher();
+        if (captureJournal != null) {
+            captureJournal.stop();
+        }
     }
 
     /**
@@ -183,6 +253,7 @@ public class AISManagedConnection implements ManagedConnection {
     void closeHandle(AISConnection handle) {
         LOG.finest("closing connection handle");
         closeSocket();
+        stopDispatcher();
         connections.remove((AISConnectionImpl) handle);
         ConnectionEvent event = new ConnectionEvent(this, ConnectionEvent.CONNECTION_CLOSED);
         event.setConnectionHandle(handle);
@@ -193,13 +264,9 @@ public class AISManagedConnection implements ManagedConnection {
 
     public void closeSocket() {
         LOG.finest("Closing socket");
-        continueRetry = false;
-        if (socket != null) {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                LOG.warning("Error when closing socket. " + e);
-            }
+        Reader current = reader.getAndSet(null);
+        if (current != null) {
+            current.stop();
         }
     }
 
@@ -253,7 +320,12 @@ public class AISManagedConnection implements ManagedConnection {
      */
     public ManagedConnectionMetaData getMetaData() throws ResourceException {
         LOG.finest("getMetaData()");
-        return new AISManagedConnectionMetaData();
+        Reader current = reader.get();
+        return new AISManagedConnectionMetaData(current != null ? current.userName : null, getMetrics());
+    }
+
+    public String getFeed() {
+        return feed;
     }
 
     public boolean isOpen() {
@@ -263,57 +335,166 @@ public class AISManagedConnection implements ManagedConnection {
     }
 
     public List<Sentence> getSentences() {
-        if (sentences == null) {
-            sentences = new ConcurrentLinkedQueue<>();
+        List<Sentence> returnList = new ArrayList<>(sentences.size());
+        sentences.drainTo(returnList, Integer.MAX_VALUE);
+        return returnList;
+    }
+
+    public void subscribe(SentenceListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("Listener is null");
+
+        int batchSize = mcf != null ? mcf.getDeliveryBatchSize() : DEFAULT_DELIVERY_BATCH_SIZE;
+        long batchTimeout = mcf != null ? mcf.getDeliveryBatchTimeout() : DEFAULT_DELIVERY_BATCH_TIMEOUT_MS;
+        SentenceDispatcher newDispatcher = new SentenceDispatcher(sentences, listener, batchSize, batchTimeout);
+        SentenceDispatcher oldDispatcher = dispatcher.getAndSet(newDispatcher);
+        if (oldDispatcher != null) {
+            oldDispatcher.stop();
+        }
+        LOG.finest("Starting AIS dispatch thread");
+        try {
+            getReaderExecutor().execute("AIS Dispatch thread " + feed + " " + NUMBER_OF_STARTED_THREADS.getAndIncrement(), newDispatcher, newDispatcher::stop);
+        } catch (ResourceException e) {
+            LOG.warning("Failed to start the AIS dispatch thread: " + e);
+            dispatcher.compareAndSet(newDispatcher, null);
         }
+    }
 
-        List<Sentence> returnList = new ArrayList<>(sentences.size());
+    public void unsubscribe(SentenceListener listener) {
+        SentenceDispatcher current = dispatcher.get();
+        if (current != null && current.getListener() == listener && dispatcher.compareAndSet(current, null)) {
+            current.stop();
+        }
+    }
 
-        for (Sentence sentence = sentences.poll(); sentence != null; sentence = sentences.poll()) {
-            returnList.add(sentence);
+    private void stopDispatcher() {
+        SentenceDispatcher current = dispatcher.getAndSet(null);
+        if (current != null) {
+            current.stop();
         }
+    }
 
-        return returnList;
+    public AISConnectionMetrics getMetrics() {
+        return new AISConnectionMetrics(feed, sentences, counters);
     }
 
     public void open(final String host, final Integer port, final String userName, final String password) {
-        LOG.finest("Starting AIS reader thread");
-        continueRetry = true;
-        new Thread("AIS Read thread" + NUMBER_OF_STARTED_THREADS.getAndIncrement()) {
-            @Override
-            public void run() {
-                LOG.finest("AIS reader thread started");
-                atomicCountDownLatch.get().countDown();
-                while (continueRetry) {
-                    socket = new Socket();
-                    try {
-                        BufferedReader commandInput = tryOpen(host, port, userName, password);
-                        read(commandInput);
-                    } catch (Exception e) {
-                        LOG.warning("AIS connection lost: " + e.getLocalizedMessage());
-                        LOG.warning("Exception: " + e);
-                    } finally {
-                        try {
-                            if (socket.isConnected()) {
-                                socket.close();
-                            }
-                            Thread.sleep(RETRY_DELAY_TIME_SEC * 1000L);
-                        } catch (Exception e) {
-                            LOG.info("//NOP: {}" + e.getLocalizedMessage());
-                            LOG.info("Exception:" + e);
-                        }
-                    }
-                }
+        open(host, port, userName, password, StreamCompression.NONE);
+    }
 
-                LOG.finest("Stopping AIS reader thread");
-                CountDownLatch oldLatch = atomicCountDownLatch.get();
-                atomicCountDownLatch.compareAndSet(oldLatch, new CountDownLatch(1));
-            }
-        }.start();
+    /**
+     * Connects to the feed, replacing the running reader if there is one.
+     *
+     * @param compression compression of the data the feed sends after the login
+     */
+    public void open(final String host, final Integer port, final String userName, final String password, StreamCompression compression) {
+        start(new Reader(host, port, userName, password, compression, false, false));
+    }
+
+    /**
+     * Receives NMEA datagrams sent by receivers to the local address and port, replacing the running reader if
+     * there is one. Each datagram holds one or more complete lines.
+     *
+     * @param bindAddress local address to listen on, e.g. 0.0.0.0 for all interfaces
+     * @param port        local UDP port
+     */
+    public void listen(final String bindAddress, final Integer port) {
+        start(new Reader(bindAddress, port, null, null, StreamCompression.NONE, true, false));
+    }
+
+    /**
+     * Replays a recorded NMEA file, plain or gzip, instead of connecting to a feed, replacing the running reader
+     * if there is one. The connection stays open after the end of the file, so the file is replayed once.
+     *
+     * @param file  path of the file
+     * @param speed multiple of the pace recorded in the TAG block timestamps, 0 or less for maximum speed
+     */
+    public void replay(final String file, final double speed) {
+        start(new Reader(Paths.get(file), speed));
+    }
+
+    private void start(Reader newReader) {
+        LOG.finest("Starting AIS reader thread");
+        if (captureJournal != null) {
+            captureJournal.start(getReaderExecutor(), "AIS Capture thread " + feed);
+        }
+        Reader oldReader = reader.getAndSet(newReader);
+        if (oldReader != null) {
+            oldReader.stop();
+            newReader.previous = oldReader;
+        }
+        try {
+            execute(newReader);
+        } catch (ResourceException e) {
+            LOG.warning("Failed to start the AIS Reader Thread: " + e);
+            reader.compareAndSet(newReader, null);
+            return;
+        }
 
         waitForThreadStart();
     }
 
+    /**
+     * Reconnects to the endpoint of the running reader without a gap in the data: a new reader connects and
+     * logs in while the current one keeps reading, then takes over and closes the old socket. Lines received
+     * on both sockets around the switch are dropped as duplicates. If the new socket cannot be connected the
+     * current one is kept.
+     *
+     * @return false if make-before-break reconnects are disabled or there is no running reader
+     */
+    public boolean reconnect() {
+        if (mcf == null || !Boolean.TRUE.equals(mcf.getMakeBeforeBreakReconnect())) {
+            return false;
+        }
+        Reader current = reader.get();
+        // a datagram socket has no session to replace, a replay no socket at all
+        if (current == null || !current.running || current.datagram || current.replayFile != null) {
+            return false;
+        }
+        LOG.info("Reconnecting feed " + feed + " before closing the current connection");
+        startOverlap();
+        Reader newReader = new Reader(current.host, current.port, current.userName, current.password, current.compression, false, true);
+        newReader.previous = current;
+        if (!reader.compareAndSet(current, newReader)) {
+            endOverlap(0);
+            return false;
+        }
+        try {
+            execute(newReader);
+        } catch (ResourceException e) {
+            LOG.warning("Failed to start the AIS Reader Thread: " + e);
+            reader.compareAndSet(newReader, current);
+            endOverlap(0);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts dropping the payloads the new socket delivers again. Not needed when the shared deduplicator is enabled.
+     */
+    private void startOverlap() {
+        overlapUntil = Long.MAX_VALUE;
+    }
+
+    private void endOverlap(long untilMillis) {
+        overlapUntil = untilMillis;
+    }
+
+    private boolean isOverlapDuplicate(byte[] payload) {
+        // payloads are remembered all the time, the lines read just before the reconnect are the ones repeated
+        return overlapDeduplicator != null && overlapDeduplicator.isDuplicate(payload) && System.currentTimeMillis() < overlapUntil;
+    }
+
+    private void execute(Reader newReader) throws ResourceException {
+        newReader.executor = getReaderExecutor();
+        newReader.executor.execute("AIS Read thread " + feed + " " + NUMBER_OF_STARTED_THREADS.getAndIncrement(), newReader, newReader::stop);
+    }
+
+    ReaderExecutor getReaderExecutor() {
+        return mcf != null ? mcf.getReaderExecutor() : unmanagedExecutor;
+    }
+
     private void waitForThreadStart() {
         try {
             boolean isStarted = atomicCountDownLatch.get().await(1, SECONDS);
@@ -326,61 +507,424 @@ public class AISManagedConnection implements ManagedConnection {
         }
     }
 
-    BufferedReader tryOpen(final String host, final Integer port, final String userName, final String password) throws IOException {
-        LOG.info("Trying to connect to " + host + " on port " + port);
-        sentences = new ConcurrentLinkedQueue<>();
+    SocketChannel tryOpen(SocketChannel socket, final String host, final Integer port, final String userName, final String password) throws IOException {
+        LOG.info("Trying to connect feed " + feed + " to " + host + " on port " + port);
 
-        socket.setKeepAlive(true);
-        socket.setSoTimeout(SOCKET_SO_TIMEOUT);
+        socket.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
         socket.connect(new InetSocketAddress(InetAddress.getByName(host), port));
 
-        BufferedWriter commandOut = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
         LOG.info("AISWorker: Connection established");
         LOG.info("AISWorker: Socket-parameter: " + socket);
 
         String loginCmd = '\u0001' + userName + '\u0000' + password + '\u0000';
-        commandOut.write(loginCmd);
-        commandOut.flush();
+        ByteBuffer commandOut = Charset.defaultCharset().encode(loginCmd);
+        while (commandOut.hasRemaining()) {
+            socket.write(commandOut);
+        }
+
+        socket.configureBlocking(false);
+        return socket;
+    }
+
+    DatagramChannel bind(DatagramChannel channel, final String bindAddress, final Integer port) throws IOException {
+        LOG.info("Listening for datagrams of feed " + feed + " on " + bindAddress + " port " + port);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        // bursts from many receivers have to fit while the reader is busy framing
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, DATAGRAM_RECEIVE_BUFFER_SIZE);
+        channel.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+        channel.configureBlocking(false);
+        counters.bound(((InetSocketAddress) channel.getLocalAddress()).getPort());
+        return channel;
+    }
+
+    /**
+     * Receives datagrams until the channel is closed. All datagrams waiting in the socket are taken each time the
+     * selector wakes up, and go through the framer one by one. A line left open at the end of a datagram is ended there.
+     * <p>
+     * When no datagram has been received for the idle read timeout the feed is counted as idle, but the socket stays
+     * bound: a new socket would not bring the receivers back, and it would lose the datagrams sent meanwhile.
+     *
+     * @param channel      bound channel in non-blocking mode
+     * @param readSelector selector to wait on, woken up when the reader is stopped
+     * @throws IOException on receive errors
+     */
+    void receive(DatagramChannel channel, Selector readSelector) throws IOException {
+        long idleReadTimeout = mcf != null ? mcf.getIdleReadTimeout() : DEFAULT_IDLE_READ_TIMEOUT_MS;
+        counters.connected();
+        framer.reset();
+        // larger than any UDP datagram
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        channel.register(readSelector, SelectionKey.OP_READ);
+        boolean idle = false;
+        while (channel.isOpen()) {
+            if (readSelector.select(idleReadTimeout) == 0) {
+                if (!channel.isOpen()) {
+                    break;
+                }
+                if (!idle) {
+                    LOG.warning("No datagram received on feed " + feed + " in " + idleReadTimeout + " ms, keeping the socket bound");
+                    idle = true;
+                }
+                counters.idleTimeout();
+                continue;
+            }
+            idle = false;
+            readSelector.selectedKeys().clear();
+            counters.read(System.currentTimeMillis());
+            // Java has no call to receive several datagrams at once, drain the socket before selecting again
+            while (channel.receive(buffer) != null) {
+                buffer.flip();
+                counters.datagram(buffer.remaining());
+                counters.received(buffer.remaining());
+                framer.feed(buffer);
+                framer.endLine();
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Reads from the channel until EOF or the channel is closed. Gives up with an exception when no data has
+     * been received for the idle read timeout, or when the newest TAG block timestamp is older than the maximum
+     * feed lag, so the reader reconnects. A new connection gets the maximum feed lag to catch up on a backlog.
+     *
+     * @param channel      connected channel in non-blocking mode
+     * @param readSelector selector to wait on, woken up when the reader is stopped
+     * @param compression  compression of the received data
+     * @throws IOException on read errors, read timeout, feed lag and corrupt compressed data
+     */
+    void read(SocketChannel channel, Selector readSelector, StreamCompression compression) throws IOException {
+        long idleReadTimeout = mcf != null ? mcf.getIdleReadTimeout() : DEFAULT_IDLE_READ_TIMEOUT_MS;
+        long maxFeedLag = mcf != null ? mcf.getMaxFeedLag() : 0;
+        long connectedAt = System.currentTimeMillis();
+        counters.connected();
+
+        // the line that was being received when the previous connection was lost will never be completed
+        framer.reset();
+        StreamInflater inflater = compression == StreamCompression.NONE ? null : new StreamInflater(compression);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        channel.register(readSelector, SelectionKey.OP_READ);
+        try {
+            // Infinite read until read is EOF
+            while (channel.isOpen()) {
+                if (readSelector.select(idleReadTimeout) == 0) {
+                    if (!channel.isOpen()) {
+                        break;
+                    }
+                    counters.watchdogReconnect();
+                    throw new SocketTimeoutException("No data received in " + idleReadTimeout + " ms");
+                }
+                readSelector.selectedKeys().clear();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                long now = System.currentTimeMillis();
+                counters.read(now);
+                counters.received(read);
+                buffer.flip();
+                if (inflater == null) {
+                    framer.feed(buffer);
+                } else {
+                    inflater.feed(buffer.array(), 0, buffer.limit(), framer);
+                }
+                buffer.clear();
 
-        return new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                if (maxFeedLag > 0 && now - connectedAt > maxFeedLag) {
+                    long lag = counters.getFeedLagMillis(now);
+                    if (lag > maxFeedLag) {
+                        counters.watchdogReconnect();
+                        throw new IOException("Feed is lagging " + lag + " ms behind, more than " + maxFeedLag + " ms");
+                    }
+                }
+            }
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Delay before the next reconnect attempt: the base delay doubled for each failed attempt, up to the
+     * maximum, of which a random half is taken off so the readers of a restarted feed do not reconnect in step.
+     *
+     * @param baseDelay first delay in milliseconds
+     * @param maxDelay  maximum delay in milliseconds
+     * @param attempt   number of failed attempts since the last connection that delivered data
+     * @return the delay in milliseconds
+     */
+    static long reconnectDelay(long baseDelay, long maxDelay, int attempt) {
+        long delay = Math.max(0, Math.min(maxDelay, baseDelay << Math.min(attempt, 20)));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
     }
 
     void read(BufferedReader commandInput) throws IOException {
+        framer.reset();
         String input;
-        String payload = "";
-        String commentBlock = null;
         // Infinite read until read is EOF
         while ((input = commandInput.readLine()) != null) {
+            framer.feed(StandardCharsets.ISO_8859_1.encode(input + '\n'));
+        }
+    }
+
+    /**
+     * Queues a framed sentence unless another receiver or feed has delivered the same payload recently.
+     */
+    private void accept(Sentence sentence) {
+        counters.framed();
+        if (deduplicator != null ? deduplicator.isDuplicate(sentence.getPayload()) : isOverlapDuplicate(sentence.getPayload())) {
+            counters.duplicate();
+            return;
+        }
+        sentences.offer(sentence);
+    }
+
+    /**
+     * Connects to the feed and reads until the connection is lost, then reconnects with exponential
+     * back-off, see {@link #reconnectDelay(long, long, int)}. Runs until stopped, a stopped reader leaves
+     * the retry delay right away.
+     * <p>
+     * When the connection is reopened a new reader generation replaces the running one. The sentence buffer
+     * and the framer belong to the managed connection and are handed over: the new reader waits for the
+     * previous one to finish before it reads, so there is only ever one producer, and queued sentences and
+     * incomplete multi-sentence messages carry over. On {@link #open} the previous reader is stopped right
+     * away, on a make-before-break {@link #reconnect()} only once the new socket is logged in.
+     */
+    private class Reader implements Runnable {
+
+        private final String host;
+        private final Integer port;
+        private final String userName;
+        private final String password;
+        private final StreamCompression compression;
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private final boolean datagram;
+        private final boolean makeBeforeBreak;
+        private final Path replayFile;
+        private final double replaySpeed;
+
+        // the executor the reader runs on, set before it is started
+        private ReaderExecutor executor;
+        private volatile Reader previous;
+        private volatile boolean running = true;
+        private volatile Thread thread;
+        private volatile Channel socket;
+        private volatile Selector selector;
+
+        Reader(String host, Integer port, String userName, String password, StreamCompression compression, boolean datagram,
+               boolean makeBeforeBreak) {
+            this.host = host;
+            this.port = port;
+            this.userName = userName;
+            this.password = password;
+            this.compression = compression == null ? StreamCompression.NONE : compression;
+            this.datagram = datagram;
+            this.makeBeforeBreak = makeBeforeBreak;
+            this.replayFile = null;
+            this.replaySpeed = 0;
+        }
+
+        Reader(Path replayFile, double replaySpeed) {
+            this.host = null;
+            this.port = null;
+            this.userName = null;
+            this.password = null;
+            this.compression = StreamCompression.NONE;
+            this.datagram = false;
+            this.makeBeforeBreak = false;
+            this.replayFile = replayFile;
+            this.replaySpeed = replaySpeed;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            executor.readerStarted();
+            LOG.finest("AIS reader thread started");
+            atomicCountDownLatch.get().countDown();
+            long baseDelay = mcf != null ? mcf.getReconnectDelay() : DEFAULT_RECONNECT_DELAY_MS;
+            long maxDelay = mcf != null ? mcf.getMaxReconnectDelay() : DEFAULT_MAX_RECONNECT_DELAY_MS;
+            int failedAttempts = 0;
             try {
-                Matcher matcher = COMMENT_BLOCK_PATTERN.matcher(input);
-                if (matcher.matches()) {
-                    if (commentBlock == null) {
-                        commentBlock = matcher.group(1);
+                if (replayFile != null) {
+                    replayAndIdle();
+                }
+                while (running) {
+                    long attemptStart = System.currentTimeMillis();
+                    boolean connected = connectAndRead();
+                    if (!connected && makeBeforeBreak && keepPrevious()) {
+                        break;
+                    }
+                    if (counters.getLastReadMillis() >= attemptStart) {
+                        failedAttempts = 0;
+                    }
+                    if (running) {
+                        long delay = reconnectDelay(baseDelay, maxDelay, failedAttempts++);
+                        LOG.info("Reconnecting feed " + feed + " in " + delay + " ms");
+                        try {
+                            Thread.sleep(delay);
+                        } catch (InterruptedException e) {
+                            LOG.finest("AIS reader interrupted during retry delay");
+                        }
                     }
-                    input = matcher.group(2);
                 }
-                // Split the incoming line
-                String[] arr = input.split(",");
-                if (arr.length <= 4 || "$ABVSI".equals(arr[0])) {
-                    continue;
+            } finally {
+                thread = null;
+                previous = null;
+                finished.countDown();
+                executor.readerStopped();
+                LOG.finest("Stopping AIS reader thread");
+                // a newer reader of this connection is already running, the connection is still open
+                if (reader.compareAndSet(this, null) || reader.get() == null) {
+                    CountDownLatch oldLatch = atomicCountDownLatch.get();
+                    atomicCountDownLatch.compareAndSet(oldLatch, new CountDownLatch(1));
                 }
+            }
+        }
 
-                if (Integer.parseInt(arr[1]) == 2) {
-                    payload += arr[5];
-                    // If this part is the last sentence part, cache it
-                    if (Integer.parseInt(arr[1]) == Integer.parseInt(arr[2])) {
-                        sentences.add(new Sentence(commentBlock, payload));
-                        payload = "";
-                        commentBlock = null;
+        /**
+         * @return true if the socket was connected and logged in
+         */
+        private boolean connectAndRead() {
+            if (datagram) {
+                return bindAndReceive();
+            }
+            boolean connected = false;
+            try (SocketChannel channel = SocketChannel.open(); Selector readSelector = Selector.open()) {
+                socket = channel;
+                selector = readSelector;
+                if (running) {
+                    tryOpen(channel, host, port, userName, password);
+                    connected = true;
+                    takeOver();
+                    if (running) {
+                        read(channel, readSelector, compression);
                     }
-                } else {
-                    // This is a single sentence message, cache it
-                    sentences.add(new Sentence(commentBlock, arr[5]));
-                    commentBlock = null;
                 }
             } catch (Exception e) {
-                LOG.warning("Input:" + input);
-                LOG.warning("Exception: " + e);
+                if (running) {
+                    LOG.warning("AIS connection lost: " + e.getLocalizedMessage());
+                    LOG.warning("Exception: " + e);
+                }
+            } finally {
+                socket = null;
+                selector = null;
+            }
+            return connected;
+        }
+
+        /**
+         * Replays the file, then idles until stopped so the connection stays open.
+         */
+        private void replayAndIdle() {
+            takeOver();
+            try {
+                new FileReplay(replayFile, replaySpeed, framer, counters,
+                        () -> sentences.size() >= sentences.getCapacity(), () -> running).replay();
+            } catch (IOException e) {
+                if (running) {
+                    LOG.warning("Replay of " + replayFile + " failed: " + e);
+                }
+            }
+            while (running) {
+                LockSupport.park(this);
+            }
+        }
+
+        /**
+         * @return true if the datagram socket was bound
+         */
+        private boolean bindAndReceive() {
+            boolean bound = false;
+            try (DatagramChannel channel = DatagramChannel.open(); Selector readSelector = Selector.open()) {
+                socket = channel;
+                selector = readSelector;
+                if (running) {
+                    bind(channel, host, port);
+                    bound = true;
+                    takeOver();
+                    if (running) {
+                        receive(channel, readSelector);
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    LOG.warning("AIS datagram socket failed: " + e.getLocalizedMessage());
+                    LOG.warning("Exception: " + e);
+                }
+            } finally {
+                socket = null;
+                selector = null;
+                counters.unbound();
+            }
+            return bound;
+        }
+
+        /**
+         * Stops the previous reader, if it is still running, and waits until it has finished.
+         */
+        private void takeOver() {
+            Reader oldReader = previous;
+            if (oldReader == null) {
+                return;
+            }
+            oldReader.stop();
+            try {
+                if (!oldReader.finished.await(READER_HAND_OFF_TIMEOUT_SEC, SECONDS)) {
+                    LOG.warning("Previous AIS reader of feed " + feed + " did not stop within " + READER_HAND_OFF_TIMEOUT_SEC + " s");
+                    running = false;
+                }
+            } catch (InterruptedException e) {
+                LOG.finest("AIS reader interrupted while waiting for the previous reader");
+                running = false;
+            }
+            previous = null;
+            endOverlap(System.currentTimeMillis() + OVERLAP_WINDOW_MS);
+        }
+
+        /**
+         * Gives the connection back to the previous reader when the new socket could not be connected.
+         *
+         * @return true if the previous reader was still running and has been kept
+         */
+        private boolean keepPrevious() {
+            Reader oldReader = previous;
+            if (oldReader == null || !oldReader.running || !reader.compareAndSet(this, oldReader)) {
+                return false;
+            }
+            LOG.warning("Could not reconnect feed " + feed + ", keeping the current connection");
+            previous = null;
+            running = false;
+            endOverlap(0);
+            return true;
+        }
+
+        void stop() {
+            running = false;
+            // a reader stopped while taking over a running connection stops that one too
+            Reader oldReader = previous;
+            if (oldReader != null) {
+                oldReader.stop();
+            }
+            Channel currentSocket = socket;
+            if (currentSocket != null) {
+                try {
+                    currentSocket.close();
+                } catch (IOException e) {
+                    LOG.warning("Error when closing socket. " + e);
+                }
+            }
+            Selector currentSelector = selector;
+            if (currentSelector != null) {
+                currentSelector.wakeup();
+            }
+            // releases a reader blocked on a full sentence buffer or sleeping before a retry
+            Thread currentThread = thread;
+            if (currentThread != null) {
+                currentThread.interrupt();
             }
         }
     }
@@ -391,22 +935,20 @@ public class AISManagedConnection implements ManagedConnection {
         if (o == null || getClass() != o.getClass()) return false;
 
         AISManagedConnection that = (AISManagedConnection) o;
-        return continueRetry == that.continueRetry &&
-                Objects.equals(sentences, that.sentences) &&
-                Objects.equals(socket, that.socket) &&
+        return Objects.equals(sentences, that.sentences) &&
                 Objects.equals(logWriter, that.logWriter) &&
                 Objects.equals(mcf, that.mcf) &&
+                Objects.equals(feed, that.feed) &&
                 listeners.equals(that.listeners);
     }
 
     @Override
     public int hashCode() {
-        int result = Boolean.hashCode(continueRetry);
-        result = 31 * result + atomicCountDownLatch.hashCode();
+        int result = atomicCountDownLatch.hashCode();
         result = 31 * result + Objects.hashCode(sentences);
-        result = 31 * result + Objects.hashCode(socket);
         result = 31 * result + Objects.hashCode(logWriter);
         result = 31 * result + Objects.hashCode(mcf);
+        result = 31 * result + Objects.hashCode(feed);
         result = 31 * result + listeners.hashCode();
         return result;
     }
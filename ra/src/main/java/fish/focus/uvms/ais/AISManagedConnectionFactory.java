@@ -36,9 +36,11 @@ import javax.resource.ResourceException;
 import javax.resource.spi.*;
 import javax.security.auth.Subject;
 import java.io.PrintWriter;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -62,6 +64,11 @@ public class AISManagedConnectionFactory implements ManagedConnectionFactory, Re
      */
     private static Logger log = Logger.getLogger(AISManagedConnectionFactory.class.getName());
 
+    static final int DEFAULT_SENTENCE_BUFFER_CAPACITY = 262144;
+
+    // lines waiting for the capture journal writer, about ten seconds of a busy feed
+    private static final int CAPTURE_BUFFER_SIZE = 4 * 1024 * 1024;
+
     /**
      * The resource adapter
      */
@@ -72,6 +79,122 @@ public class AISManagedConnectionFactory implements ManagedConnectionFactory, Re
      */
     private PrintWriter logwriter;
 
+    /**
+     * Number of sentences buffered per connection before the overflow policy kicks in
+     */
+    @ConfigProperty(defaultValue = "262144")
+    private Integer sentenceBufferCapacity = DEFAULT_SENTENCE_BUFFER_CAPACITY;
+
+    /**
+     * What to do when the sentence buffer is full, one of DROP_OLDEST, DROP_NEWEST or BLOCK
+     */
+    @ConfigProperty(defaultValue = "DROP_OLDEST")
+    private String sentenceBufferOverflowPolicy = SentenceRingBuffer.OverflowPolicy.DROP_OLDEST.name();
+
+    /**
+     * Maximum number of sentences pushed to a subscribed listener in one batch
+     */
+    @ConfigProperty(defaultValue = "500")
+    private Integer deliveryBatchSize = 500;
+
+    /**
+     * Maximum time in milliseconds a sentence waits for its batch to fill up before it is pushed to a subscribed listener
+     */
+    @ConfigProperty(defaultValue = "200")
+    private Integer deliveryBatchTimeout = 200;
+
+    /**
+     * Time in milliseconds a payload is remembered to drop copies received from other receivers or feeds, 0 disables
+     */
+    @ConfigProperty(defaultValue = "10000")
+    private Integer duplicateWindow = 10000;
+
+    /**
+     * Number of distinct payloads expected within the duplicate window
+     */
+    @ConfigProperty(defaultValue = "65536")
+    private Integer duplicateCapacity = 65536;
+
+    /**
+     * Time in milliseconds without any received byte after which the reader reconnects. A datagram feed only
+     * counts the timeout, its socket stays bound.
+     */
+    @ConfigProperty(defaultValue = "30000")
+    private Integer idleReadTimeout = 30000;
+
+    /**
+     * Age in milliseconds of the newest TAG block {@code c:} timestamp after which the reader reconnects, 0 disables
+     */
+    @ConfigProperty(defaultValue = "0")
+    private Integer maxFeedLag = 0;
+
+    /**
+     * Delay in milliseconds before the first reconnect attempt, doubled for each failed attempt
+     */
+    @ConfigProperty(defaultValue = "10000")
+    private Integer reconnectDelay = 10000;
+
+    /**
+     * Upper bound in milliseconds of the reconnect delay
+     */
+    @ConfigProperty(defaultValue = "300000")
+    private Integer maxReconnectDelay = 300000;
+
+    /**
+     * Whether a reconnect requested by the plugin opens the new socket before the old one is closed. Needs an
+     * upstream that accepts two sessions for the same login.
+     */
+    @ConfigProperty(defaultValue = "false")
+    private Boolean makeBeforeBreakReconnect = false;
+
+    /**
+     * Directory of the raw capture journals, one subdirectory per feed. Empty disables the capture.
+     */
+    @ConfigProperty(defaultValue = "")
+    private String captureDirectory = "";
+
+    /**
+     * Size in bytes of a capture journal segment file
+     */
+    @ConfigProperty(defaultValue = "67108864")
+    private Integer captureSegmentSize = 67108864;
+
+    /**
+     * Hours a capture journal segment is kept after its last line
+     */
+    @ConfigProperty(defaultValue = "24")
+    private Integer captureRetentionHours = 24;
+
+    /**
+     * Comma separated AIS message types and ranges passed on to the plugin, e.g. 1-3,5,18,24. Messages of other
+     * types are dropped in the reader before they are queued. Empty passes all types.
+     */
+    @ConfigProperty(defaultValue = "")
+    private String messageTypes = "";
+
+    /**
+     * Comma separated source MMSIs and ranges passed on to the plugin, e.g. 200000000-799999999. Empty passes all.
+     */
+    @ConfigProperty(defaultValue = "")
+    private String allowedMmsis = "";
+
+    /**
+     * Comma separated source MMSIs and ranges dropped in the reader, also when allowed, e.g. 0,123456789 for
+     * unconfigured transponders. Empty drops none.
+     */
+    @ConfigProperty(defaultValue = "")
+    private String deniedMmsis = "";
+
+    /**
+     * Shared by the managed connections of all feeds
+     */
+    private transient PayloadDeduplicator deduplicator;
+
+    /**
+     * Runs the reader threads while the resource adapter is not started
+     */
+    private transient ReaderExecutor unmanagedExecutor;
+
     /**
      * Default constructor
      */
@@ -112,7 +235,7 @@ public class AISManagedConnectionFactory implements ManagedConnectionFactory, Re
     public ManagedConnection createManagedConnection(Subject subject,
                                                      ConnectionRequestInfo cxRequestInfo) throws ResourceException {
         log.finest("createManagedConnection()");
-        return new AISManagedConnection(this);
+        return new AISManagedConnection(this, AISConnectionRequestInfo.feedOf(cxRequestInfo));
     }
 
     /**
@@ -127,11 +250,12 @@ public class AISManagedConnectionFactory implements ManagedConnectionFactory, Re
     public ManagedConnection matchManagedConnections(Set connectionSet,
                                                      Subject subject, ConnectionRequestInfo cxRequestInfo) throws ResourceException {
         log.finest("matchManagedConnections()");
+        String feed = AISConnectionRequestInfo.feedOf(cxRequestInfo);
         ManagedConnection result = null;
         Iterator it = connectionSet.iterator();
         while (result == null && it.hasNext()) {
             ManagedConnection mc = (ManagedConnection) it.next();
-            if (mc instanceof AISManagedConnection) {
+            if (mc instanceof AISManagedConnection && feed.equals(((AISManagedConnection) mc).getFeed())) {
                 result = mc;
             }
 
@@ -181,6 +305,374 @@ public class AISManagedConnectionFactory implements ManagedConnectionFactory, Re
         this.ra = ra;
     }
 
+    /**
+     * Get sentenceBufferCapacity
+     *
+     * @return The value
+     */
+    public Integer getSentenceBufferCapacity() {
+        return sentenceBufferCapacity;
+    }
+
+    /**
+     * Set sentenceBufferCapacity
+     *
+     * @param sentenceBufferCapacity The value
+     */
+    public void setSentenceBufferCapacity(Integer sentenceBufferCapacity) {
+        this.sentenceBufferCapacity = sentenceBufferCapacity;
+    }
+
+    /**
+     * Get sentenceBufferOverflowPolicy
+     *
+     * @return The value
+     */
+    public String getSentenceBufferOverflowPolicy() {
+        return sentenceBufferOverflowPolicy;
+    }
+
+    /**
+     * Set sentenceBufferOverflowPolicy
+     *
+     * @param sentenceBufferOverflowPolicy The value
+     */
+    public void setSentenceBufferOverflowPolicy(String sentenceBufferOverflowPolicy) {
+        this.sentenceBufferOverflowPolicy = sentenceBufferOverflowPolicy;
+    }
+
+    /**
+     * Get deliveryBatchSize
+     *
+     * @return The value
+     */
+    public Integer getDeliveryBatchSize() {
+        return deliveryBatchSize;
+    }
+
+    /**
+     * Set deliveryBatchSize
+     *
+     * @param deliveryBatchSize The value
+     */
+    public void setDeliveryBatchSize(Integer deliveryBatchSize) {
+        this.deliveryBatchSize = deliveryBatchSize;
+    }
+
+    /**
+     * Get deliveryBatchTimeout
+     *
+     * @return The value
+     */
+    public Integer getDeliveryBatchTimeout() {
+        return deliveryBatchTimeout;
+    }
+
+    /**
+     * Set deliveryBatchTimeout
+     *
+     * @param deliveryBatchTimeout The value
+     */
+    public void setDeliveryBatchTimeout(Integer deliveryBatchTimeout) {
+        this.deliveryBatchTimeout = deliveryBatchTimeout;
+    }
+
+    /**
+     * Get duplicateWindow
+     *
+     * @return The value
+     */
+    public Integer getDuplicateWindow() {
+        return duplicateWindow;
+    }
+
+    /**
+     * Set duplicateWindow
+     *
+     * @param duplicateWindow The value
+     */
+    public void setDuplicateWindow(Integer duplicateWindow) {
+        this.duplicateWindow = duplicateWindow;
+    }
+
+    /**
+     * Get duplicateCapacity
+     *
+     * @return The value
+     */
+    public Integer getDuplicateCapacity() {
+        return duplicateCapacity;
+    }
+
+    /**
+     * Set duplicateCapacity
+     *
+     * @param duplicateCapacity The value
+     */
+    public void setDuplicateCapacity(Integer duplicateCapacity) {
+        this.duplicateCapacity = duplicateCapacity;
+    }
+
+    /**
+     * Get idleReadTimeout
+     *
+     * @return The value
+     */
+    public Integer getIdleReadTimeout() {
+        return idleReadTimeout;
+    }
+
+    /**
+     * Set idleReadTimeout
+     *
+     * @param idleReadTimeout The value
+     */
+    public void setIdleReadTimeout(Integer idleReadTimeout) {
+        this.idleReadTimeout = idleReadTimeout;
+    }
+
+    /**
+     * Get maxFeedLag
+     *
+     * @return The value
+     */
+    public Integer getMaxFeedLag() {
+        return maxFeedLag;
+    }
+
+    /**
+     * Set maxFeedLag
+     *
+     * @param maxFeedLag The value
+     */
+    public void setMaxFeedLag(Integer maxFeedLag) {
+        this.maxFeedLag = maxFeedLag;
+    }
+
+    /**
+     * Get reconnectDelay
+     *
+     * @return The value
+     */
+    public Integer getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    /**
+     * Set reconnectDelay
+     *
+     * @param reconnectDelay The value
+     */
+    public void setReconnectDelay(Integer reconnectDelay) {
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    /**
+     * Get maxReconnectDelay
+     *
+     * @return The value
+     */
+    public Integer getMaxReconnectDelay() {
+        return maxReconnectDelay;
+    }
+
+    /**
+     * Set maxReconnectDelay
+     *
+     * @param maxReconnectDelay The value
+     */
+    public void setMaxReconnectDelay(Integer maxReconnectDelay) {
+        this.maxReconnectDelay = maxReconnectDelay;
+    }
+
+    /**
+     * Get makeBeforeBreakReconnect
+     *
+     * @return The value
+     */
+    public Boolean getMakeBeforeBreakReconnect() {
+        return makeBeforeBreakReconnect;
+    }
+
+    /**
+     * Set makeBeforeBreakReconnect
+     *
+     * @param makeBeforeBreakReconnect The value
+     */
+    public void setMakeBeforeBreakReconnect(Boolean makeBeforeBreakReconnect) {
+        this.makeBeforeBreakReconnect = makeBeforeBreakReconnect;
+    }
+
+    /**
+     * Get captureDirectory
+     *
+     * @return The value
+     */
+    public String getCaptureDirectory() {
+        return captureDirectory;
+    }
+
+    /**
+     * Set captureDirectory
+     *
+     * @param captureDirectory The value
+     */
+    public void setCaptureDirectory(String captureDirectory) {
+        this.captureDirectory = captureDirectory;
+    }
+
+    /**
+     * Get captureSegmentSize
+     *
+     * @return The value
+     */
+    public Integer getCaptureSegmentSize() {
+        return captureSegmentSize;
+    }
+
+    /**
+     * Set captureSegmentSize
+     *
+     * @param captureSegmentSize The value
+     */
+    public void setCaptureSegmentSize(Integer captureSegmentSize) {
+        this.captureSegmentSize = captureSegmentSize;
+    }
+
+    /**
+     * Get captureRetentionHours
+     *
+     * @return The value
+     */
+    public Integer getCaptureRetentionHours() {
+        return captureRetentionHours;
+    }
+
+    /**
+     * Set captureRetentionHours
+     *
+     * @param captureRetentionHours The value
+     */
+    public void setCaptureRetentionHours(Integer captureRetentionHours) {
+        this.captureRetentionHours = captureRetentionHours;
+    }
+
+    /**
+     * Get messageTypes
+     *
+     * @return The value
+     */
+    public String getMessageTypes() {
+        return messageTypes;
+    }
+
+    /**
+     * Set messageTypes
+     *
+     * @param messageTypes The value
+     */
+    public void setMessageTypes(String messageTypes) {
+        this.messageTypes = messageTypes;
+    }
+
+    /**
+     * Get allowedMmsis
+     *
+     * @return The value
+     */
+    public String getAllowedMmsis() {
+        return allowedMmsis;
+    }
+
+    /**
+     * Set allowedMmsis
+     *
+     * @param allowedMmsis The value
+     */
+    public void setAllowedMmsis(String allowedMmsis) {
+        this.allowedMmsis = allowedMmsis;
+    }
+
+    /**
+     * Get deniedMmsis
+     *
+     * @return The value
+     */
+    public String getDeniedMmsis() {
+        return deniedMmsis;
+    }
+
+    /**
+     * Set deniedMmsis
+     *
+     * @param deniedMmsis The value
+     */
+    public void setDeniedMmsis(String deniedMmsis) {
+        this.deniedMmsis = deniedMmsis;
+    }
+
+    /**
+     * Gets the deduplicator shared by the managed connections of this factory
+     *
+     * @return The deduplicator, or null if duplicate suppression is disabled
+     */
+    synchronized PayloadDeduplicator getDeduplicator() {
+        if (deduplicator == null && duplicateWindow != null && duplicateWindow > 0) {
+            deduplicator = new PayloadDeduplicator(duplicateWindow, duplicateCapacity);
+        }
+        return deduplicator;
+    }
+
+    /**
+     * Gets the executor for the reader threads of the managed connections. Falls back to plain threads
+     * when the resource adapter has not been started.
+     */
+    synchronized ReaderExecutor getReaderExecutor() {
+        ReaderExecutor executor = ra instanceof AISResourceAdapter ? ((AISResourceAdapter) ra).getReaderExecutor() : null;
+        if (executor != null) {
+            return executor;
+        }
+        if (unmanagedExecutor == null) {
+            unmanagedExecutor = new ReaderExecutor(null, false);
+        }
+        return unmanagedExecutor;
+    }
+
+    /**
+     * Creates the sentence buffer of a new managed connection from the configured capacity and overflow policy.
+     *
+     * @return a new, empty buffer
+     */
+    SentenceRingBuffer createSentenceBuffer() {
+        return new SentenceRingBuffer(sentenceBufferCapacity,
+                SentenceRingBuffer.OverflowPolicy.valueOf(sentenceBufferOverflowPolicy.trim().toUpperCase()));
+    }
+
+    /**
+     * Creates the capture journal of a feed.
+     *
+     * @param feed     name of the feed
+     * @param counters counters of the feed
+     * @return a new journal, or null if the capture is disabled
+     */
+    CaptureJournal createCaptureJournal(String feed, FeedCounters counters) {
+        if (captureDirectory == null || captureDirectory.isBlank()) {
+            return null;
+        }
+        return new CaptureJournal(Paths.get(captureDirectory.trim(), feed), captureSegmentSize,
+                TimeUnit.HOURS.toMillis(captureRetentionHours), CAPTURE_BUFFER_SIZE, counters);
+    }
+
+    /**
+     * Creates the message type and MMSI filter of a feed from the configured lists.
+     *
+     * @param counters counters of the feed
+     * @return a new filter
+     */
+    IngestFilter createIngestFilter(FeedCounters counters) {
+        return new IngestFilter(MessageTypes.parse(messageTypes), MmsiRanges.parse(allowedMmsis), MmsiRanges.parse(deniedMmsis), counters);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -191,13 +683,47 @@ public class AISManagedConnectionFactory implements ManagedConnectionFactory, Re
         }
 
         AISManagedConnectionFactory that = (AISManagedConnectionFactory) o;
-        return Objects.equals(ra, that.ra) && Objects.equals(logwriter, that.logwriter);
+        return Objects.equals(ra, that.ra) && Objects.equals(logwriter, that.logwriter)
+                && Objects.equals(sentenceBufferCapacity, that.sentenceBufferCapacity)
+                && Objects.equals(sentenceBufferOverflowPolicy, that.sentenceBufferOverflowPolicy)
+                && Objects.equals(deliveryBatchSize, that.deliveryBatchSize)
+                && Objects.equals(deliveryBatchTimeout, that.deliveryBatchTimeout)
+                && Objects.equals(duplicateWindow, that.duplicateWindow)
+                && Objects.equals(duplicateCapacity, that.duplicateCapacity)
+                && Objects.equals(idleReadTimeout, that.idleReadTimeout)
+                && Objects.equals(maxFeedLag, that.maxFeedLag)
+                && Objects.equals(reconnectDelay, that.reconnectDelay)
+                && Objects.equals(maxReconnectDelay, that.maxReconnectDelay)
+                && Objects.equals(makeBeforeBreakReconnect, that.makeBeforeBreakReconnect)
+                && Objects.equals(captureDirectory, that.captureDirectory)
+                && Objects.equals(captureSegmentSize, that.captureSegmentSize)
+                && Objects.equals(captureRetentionHours, that.captureRetentionHours)
+                && Objects.equals(messageTypes, that.messageTypes)
+                && Objects.equals(allowedMmsis, that.allowedMmsis)
+                && Objects.equals(deniedMmsis, that.deniedMmsis);
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hashCode(ra);
         result = 31 * result + Objects.hashCode(logwriter);
+        result = 31 * result + Objects.hashCode(sentenceBufferCapacity);
+        result = 31 * result + Objects.hashCode(sentenceBufferOverflowPolicy);
+        result = 31 * result + Objects.hashCode(deliveryBatchSize);
+        result = 31 * result + Objects.hashCode(deliveryBatchTimeout);
+        result = 31 * result + Objects.hashCode(duplicateWindow);
+        result = 31 * result + Objects.hashCode(duplicateCapacity);
+        result = 31 * result + Objects.hashCode(idleReadTimeout);
+        result = 31 * result + Objects.hashCode(maxFeedLag);
+        result = 31 * result + Objects.hashCode(reconnectDelay);
+        result = 31 * result + Objects.hashCode(maxReconnectDelay);
+        result = 31 * result + Objects.hashCode(makeBeforeBreakReconnect);
+        result = 31 * result + Objects.hashCode(captureDirectory);
+        result = 31 * result + Objects.hashCode(captureSegmentSize);
+        result = 31 * result + Objects.hashCode(captureRetentionHours);
+        result = 31 * result + Objects.hashCode(messageTypes);
+        result = 31 * result + Objects.hashCode(allowedMmsis);
+        result = 31 * result + Objects.hashCode(deniedMmsis);
         return result;
     }
 }
\ No newline at end of file
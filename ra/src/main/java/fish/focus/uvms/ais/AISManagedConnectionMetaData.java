@@ -47,11 +47,34 @@ public class AISManagedConnectionMetaData implements ManagedConnectionMetaData {
      */
     private static Logger log = Logger.getLogger(AISManagedConnectionMetaData.class.getName());
 
+    private final String userName;
+    private final AISConnectionMetrics metrics;
+
     /**
      * Default constructor
      */
     public AISManagedConnectionMetaData() {
+        this(null, null);
+    }
+
+    /**
+     * Constructor for an open connection
+     *
+     * @param userName user the feed is logged in as, null if none
+     * @param metrics  metrics of the connection
+     */
+    public AISManagedConnectionMetaData(String userName, AISConnectionMetrics metrics) {
+        this.userName = userName;
+        this.metrics = metrics;
+    }
 
+    /**
+     * Returns the counters of the feed read through the ManagedConnection.
+     *
+     * @return the metrics, null if not known
+     */
+    public AISConnectionMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -63,7 +86,7 @@ public class AISManagedConnectionMetaData implements ManagedConnectionMetaData {
     @Override
     public String getEISProductName() throws ResourceException {
         log.finest("getEISProductName()");
-        return null; //TODO
+        return "AIS NMEA feed";
     }
 
     /**
@@ -99,7 +122,7 @@ public class AISManagedConnectionMetaData implements ManagedConnectionMetaData {
     @Override
     public String getUserName() throws ResourceException {
         log.finest("getUserName()");
-        return null; //TODO
+        return userName;
     }
 
 
@@ -71,6 +71,17 @@ public class AISResourceAdapter implements ResourceAdapter, java.io.Serializable
     @ConfigProperty(defaultValue = "0")
     private Integer port;
 
+    /**
+     * Run the AIS readers on virtual threads instead of work manager threads, needs JDK 21 or later
+     */
+    @ConfigProperty(defaultValue = "false")
+    private Boolean virtualThreadReaders = false;
+
+    /**
+     * Executor for reader threads, available between start() and stop()
+     */
+    private transient volatile ReaderExecutor readerExecutor;
+
     /**
      * Default constructor
      */
@@ -114,6 +125,33 @@ public class AISResourceAdapter implements ResourceAdapter, java.io.Serializable
         this.port = port;
     }
 
+    /**
+     * Get virtualThreadReaders
+     *
+     * @return The value
+     */
+    public Boolean getVirtualThreadReaders() {
+        return virtualThreadReaders;
+    }
+
+    /**
+     * Set virtualThreadReaders
+     *
+     * @param virtualThreadReaders The value
+     */
+    public void setVirtualThreadReaders(Boolean virtualThreadReaders) {
+        this.virtualThreadReaders = virtualThreadReaders;
+    }
+
+    /**
+     * Get the executor for reader threads
+     *
+     * @return The executor, or null if the resource adapter is not started
+     */
+    ReaderExecutor getReaderExecutor() {
+        return readerExecutor;
+    }
+
     /**
      * This is called during the activation of a message endpoint.
      *
@@ -148,6 +186,7 @@ public class AISResourceAdapter implements ResourceAdapter, java.io.Serializable
     public void start(BootstrapContext ctx)
             throws ResourceAdapterInternalException {
         log.finest("start()");
+        readerExecutor = new ReaderExecutor(ctx.getWorkManager(), Boolean.TRUE.equals(virtualThreadReaders));
 
     }
 
@@ -157,6 +196,11 @@ public class AISResourceAdapter implements ResourceAdapter, java.io.Serializable
      */
     public void stop() {
         log.finest("stop()");
+        ReaderExecutor executor = readerExecutor;
+        readerExecutor = null;
+        if (executor != null) {
+            executor.stop();
+        }
 
     }
 
@@ -179,13 +223,15 @@ public class AISResourceAdapter implements ResourceAdapter, java.io.Serializable
         if (o == null || getClass() != o.getClass()) return false;
 
         AISResourceAdapter that = (AISResourceAdapter) o;
-        return Objects.equals(address, that.address) && Objects.equals(port, that.port);
+        return Objects.equals(address, that.address) && Objects.equals(port, that.port)
+                && Objects.equals(virtualThreadReaders, that.virtualThreadReaders);
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hashCode(address);
         result = 31 * result + Objects.hashCode(port);
+        result = 31 * result + Objects.hashCode(virtualThreadReaders);
         return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,376 @@
+package fish.focus.uvms.ais;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Append-only capture of the raw lines received from a feed, with their receive time, for analysis of
+ * decoding and downstream problems.
+ * <p>
+ * The reader thread copies each line into a lock-free ring buffer and never waits, a line that does not fit
+ * is counted as dropped. A writer thread moves the lines into memory-mapped segment files named after the
+ * receive time of their first line. Each segment has a sparse index file with the offset of the first line
+ * of every second, used by {@link #extract} to find the start of a time range without scanning the segment.
+ * Segments older than the retention are deleted when a new segment is started.
+ * <p>
+ * A segment is a sequence of records {@code [int length][long receive time ms][line bytes]}, the unused end of
+ * the file is zero. An index entry is {@code [long receive time ms][int offset]}. Receive times never go
+ * backwards within a journal.
+ */
+public class CaptureJournal implements NmeaFramer.LineSink, Runnable {
+
+    private static final Logger LOG = Logger.getLogger(CaptureJournal.class.getName());
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int RECORD_HEADER_LENGTH = Integer.BYTES + Long.BYTES;
+    private static final int INDEX_ENTRY_LENGTH = Long.BYTES + Integer.BYTES;
+    private static final long INDEX_INTERVAL_MS = 1000;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionMillis;
+    private final FeedCounters counters;
+
+    private final byte[] ring;
+    private final int mask;
+    /**
+     * Byte positions in the ring, head is moved by the writer, tail by the reader
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    // only used by the reader thread
+    private long lastTimestamp;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running;
+    private volatile Thread writerThread;
+
+    // only used by the writer thread
+    private MappedByteBuffer segment;
+    private FileChannel indexChannel;
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+    private long lastIndexed;
+    private boolean failing;
+
+    /**
+     * @param directory       directory of the segment files, created if missing
+     * @param segmentSize     size of a segment file in bytes
+     * @param retentionMillis time segments are kept after their last line
+     * @param bufferSize      size of the ring buffer between the reader and the writer in bytes, rounded up to a power of two
+     * @param counters        counters of the feed, for captured and dropped lines
+     */
+    public CaptureJournal(Path directory, int segmentSize, long retentionMillis, int bufferSize, FeedCounters counters) {
+        if (segmentSize < RECORD_HEADER_LENGTH + NmeaFramer.MAX_LINE_LENGTH || bufferSize < RECORD_HEADER_LENGTH + NmeaFramer.MAX_LINE_LENGTH) {
+            throw new IllegalArgumentException("Segment and buffer size must hold a line of " + NmeaFramer.MAX_LINE_LENGTH + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retentionMillis = retentionMillis;
+        this.counters = counters;
+        this.ring = new byte[Integer.highestOneBit(bufferSize - 1) << 1];
+        this.mask = ring.length - 1;
+    }
+
+    /**
+     * Starts the writer on the executor, once.
+     */
+    void start(ReaderExecutor executor, String name) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        running = true;
+        try {
+            executor.execute(name, this, this::stop);
+        } catch (Exception e) {
+            LOG.warning("Failed to start the AIS capture journal " + directory + ": " + e);
+            running = false;
+            started.set(false);
+        }
+    }
+
+    /**
+     * Stops the writer after the buffered lines have been written.
+     */
+    void stop() {
+        running = false;
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void line(byte[] bytes, int length) {
+        line(bytes, length, System.currentTimeMillis());
+    }
+
+    void line(byte[] bytes, int length, long nowMillis) {
+        long timestamp = Math.max(nowMillis, lastTimestamp);
+        lastTimestamp = timestamp;
+
+        int recordLength = RECORD_HEADER_LENGTH + length;
+        long t = tail.get();
+        if (ring.length - (t - head.get()) < recordLength) {
+            counters.captureDropped();
+            return;
+        }
+        putInt(t, length);
+        putLong(t + Integer.BYTES, timestamp);
+        int from = (int) (t + RECORD_HEADER_LENGTH) & mask;
+        int firstPart = Math.min(length, ring.length - from);
+        System.arraycopy(bytes, 0, ring, from, firstPart);
+        System.arraycopy(bytes, firstPart, ring, 0, length - firstPart);
+        tail.lazySet(t + recordLength);
+    }
+
+    @Override
+    public void run() {
+        writerThread = Thread.currentThread();
+        try {
+            while (running) {
+                if (!drain()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+            drain();
+        } finally {
+            closeSegment();
+            writerThread = null;
+            started.set(false);
+        }
+    }
+
+    /**
+     * Writes the buffered lines to the current segment.
+     *
+     * @return false if there was nothing to write
+     */
+    boolean drain() {
+        long h = head.get();
+        long t = tail.get();
+        if (h == t) {
+            return false;
+        }
+        while (h < t) {
+            int length = getInt(h);
+            long timestamp = getLong(h + Integer.BYTES);
+            try {
+                write(timestamp, (int) (h + RECORD_HEADER_LENGTH) & mask, length);
+                counters.captured();
+                failing = false;
+            } catch (IOException e) {
+                // logged once until a line is written again, e.g. while the disk is full
+                if (!failing) {
+                    LOG.warning("Failed to write to AIS capture journal " + directory + ": " + e);
+                    failing = true;
+                }
+                counters.captureDropped();
+                closeSegment();
+            }
+            h += RECORD_HEADER_LENGTH + length;
+        }
+        head.lazySet(h);
+        return true;
+    }
+
+    private void write(long timestamp, int from, int length) throws IOException {
+        int recordLength = RECORD_HEADER_LENGTH + length;
+        if (segment == null || segment.remaining() < recordLength) {
+            startSegment(timestamp);
+        }
+        int offset = segment.position();
+        if (lastIndexed < 0 || timestamp - lastIndexed >= INDEX_INTERVAL_MS) {
+            indexEntry.clear();
+            indexEntry.putLong(timestamp).putInt(offset).flip();
+            while (indexEntry.hasRemaining()) {
+                indexChannel.write(indexEntry);
+            }
+            lastIndexed = timestamp;
+        }
+        segment.position(offset + Integer.BYTES);
+        segment.putLong(timestamp);
+        int firstPart = Math.min(length, ring.length - from);
+        segment.put(ring, from, firstPart);
+        segment.put(ring, 0, length - firstPart);
+        // the length goes in last, a reader of the file stops at a zero length
+        segment.putInt(offset, length);
+    }
+
+    private void startSegment(long timestamp) throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        deleteExpiredSegments(timestamp);
+        String name = String.format("%019d", timestamp);
+        try (FileChannel channel = FileChannel.open(directory.resolve(name + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        indexChannel = FileChannel.open(directory.resolve(name + INDEX_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        lastIndexed = -1;
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (indexChannel != null) {
+            try {
+                indexChannel.close();
+            } catch (IOException e) {
+                LOG.warning("Failed to close AIS capture index: " + e);
+            }
+            indexChannel = null;
+        }
+    }
+
+    /**
+     * Deletes the segments whose last line is older than the retention. A segment ends where the next one starts.
+     */
+    private void deleteExpiredSegments(long nowMillis) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        for (int i = 0; i < starts.size(); i++) {
+            long end = i + 1 < starts.size() ? starts.get(i + 1) : nowMillis;
+            if (end >= nowMillis - retentionMillis) {
+                break;
+            }
+            String name = String.format("%019d", starts.get(i));
+            Files.deleteIfExists(directory.resolve(name + SEGMENT_SUFFIX));
+            Files.deleteIfExists(directory.resolve(name + INDEX_SUFFIX));
+        }
+    }
+
+    private void putInt(long position, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            ring[(int) (position + i) & mask] = (byte) (value >>> (8 * (Integer.BYTES - 1 - i)));
+        }
+    }
+
+    private void putLong(long position, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            ring[(int) (position + i) & mask] = (byte) (value >>> (8 * (Long.BYTES - 1 - i)));
+        }
+    }
+
+    private int getInt(long position) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (ring[(int) (position + i) & mask] & 0xff);
+        }
+        return value;
+    }
+
+    private long getLong(long position) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (ring[(int) (position + i) & mask] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Writes the captured lines received from {@code fromMillis} (inclusive) to {@code toMillis} (exclusive), one per line.
+     *
+     * Without timestamps the output can be replayed with {@link FileReplay}. With timestamps it cannot, as the
+     * lines then no longer start with the TAG block or the sentence. See {@link CaptureJournalExtract} for the
+     * command line tool.
+     *
+     * @param directory  directory of the journal of a feed
+     * @param timestamps whether to start each line with the receive time and a tab
+     */
+    public static void extract(Path directory, long fromMillis, long toMillis, OutputStream out, boolean timestamps) throws IOException {
+        List<Long> starts = segmentStarts(directory);
+        byte[] line = new byte[NmeaFramer.MAX_LINE_LENGTH];
+        for (int i = 0; i < starts.size(); i++) {
+            long start = starts.get(i);
+            long end = i + 1 < starts.size() ? starts.get(i + 1) : Long.MAX_VALUE;
+            if (end <= fromMillis || start >= toMillis) {
+                continue;
+            }
+            String name = String.format("%019d", start);
+            int offset = indexedOffset(directory.resolve(name + INDEX_SUFFIX), fromMillis);
+            try (FileChannel channel = FileChannel.open(directory.resolve(name + SEGMENT_SUFFIX), StandardOpenOption.READ)) {
+                MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                records.position(offset);
+                while (records.remaining() >= RECORD_HEADER_LENGTH) {
+                    int length = records.getInt();
+                    if (length <= 0 || length > line.length || length > records.remaining() - Long.BYTES) {
+                        break;
+                    }
+                    long timestamp = records.getLong();
+                    if (timestamp >= toMillis) {
+                        return;
+                    }
+                    records.get(line, 0, length);
+                    if (timestamp >= fromMillis) {
+                        if (timestamps) {
+                            out.write((Instant.ofEpochMilli(timestamp) + "\t").getBytes(StandardCharsets.US_ASCII));
+                        }
+                        out.write(line, 0, length);
+                        out.write('\n');
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return offset of the last indexed line received at or before the time, 0 if there is none
+     */
+    private static int indexedOffset(Path index, long fromMillis) throws IOException {
+        if (!Files.exists(index)) {
+            return 0;
+        }
+        ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(index));
+        int offset = 0;
+        while (entries.remaining() >= INDEX_ENTRY_LENGTH) {
+            long timestamp = entries.getLong();
+            int entryOffset = entries.getInt();
+            if (timestamp > fromMillis) {
+                break;
+            }
+            offset = entryOffset;
+        }
+        return offset;
+    }
+
+    static List<Long> segmentStarts(Path directory) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return starts;
+        }
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path segmentFile : segments) {
+                String name = segmentFile.getFileName().toString();
+                try {
+                    starts.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOG.warning("Ignoring unexpected file in AIS capture journal: " + segmentFile);
+                }
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+}
@@ -0,0 +1,33 @@
+package fish.focus.uvms.ais;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.time.Instant;
+
+/**
+ * Command line tool that extracts a time range from the {@link CaptureJournal} of a feed to standard output. It is
+ * not used by the resource adapter, run it with the ais-ra jar on the class path:
+ * <p>
+ * {@code java -cp ais-ra-<version>.jar fish.focus.uvms.ais.CaptureJournalExtract <directory> <from> <to> [--timestamps]}
+ * <p>
+ * Times are ISO-8601 instants, e.g. 2024-05-11T00:00:00Z. With {@code --timestamps} each line starts with its
+ * receive time and a tab, such output is for reading and cannot be replayed with {@link FileReplay}.
+ */
+public final class CaptureJournalExtract {
+
+    private CaptureJournalExtract() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: CaptureJournalExtract <directory> <from> <to> [--timestamps]");
+            System.exit(1);
+        }
+        OutputStream out = new BufferedOutputStream(System.out);
+        CaptureJournal.extract(Paths.get(args[0]), Instant.parse(args[1]).toEpochMilli(), Instant.parse(args[2]).toEpochMilli(), out,
+                args.length > 3 && "--timestamps".equals(args[3]));
+        out.flush();
+    }
+}
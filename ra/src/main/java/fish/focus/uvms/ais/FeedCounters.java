@@ -0,0 +1,342 @@
+package fish.focus.uvms.ais;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of what the reader of a feed has discarded, and how fresh its data is. Updated from the reader
+ * thread, read from any thread.
+ */
+public class FeedCounters {
+
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder discardedFragmentGroups = new LongAdder();
+    private final LongAdder badChecksums = new LongAdder();
+    private final LongAdder watchdogReconnects = new LongAdder();
+    private final LongAdder idleTimeouts = new LongAdder();
+    private final LongAdder framedSentences = new LongAdder();
+    private final LongAdder datagrams = new LongAdder();
+    private final LongAdder datagramBytes = new LongAdder();
+    private final LongAdder capturedLines = new LongAdder();
+    private final LongAdder captureDroppedLines = new LongAdder();
+    private final LongAdder replayedLines = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder receivedLines = new LongAdder();
+    private final LongAdder rejectedLines = new LongAdder();
+    private final LongAdder reassembledMessages = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder rejectedMmsis = new LongAdder();
+    private final LongAdder[] filteredByType = new LongAdder[MessageTypes.COUNT];
+
+    /**
+     * Wall clock start and end of the current file replay, 0 when there is none or it has not ended
+     */
+    private volatile long replayStartMillis;
+    private volatile long replayEndMillis;
+
+    /**
+     * Local port of the datagram socket, 0 when the feed is not received over UDP
+     */
+    private volatile int boundPort;
+
+    /**
+     * Wall clock time of the last received byte, 0 before the first read
+     */
+    private volatile long lastReadMillis;
+    /**
+     * Newest TAG block timestamp received on the current connection, 0 when there is none
+     */
+    private volatile long newestSourceTimestampMillis;
+
+    public FeedCounters() {
+        for (int i = 0; i < filteredByType.length; i++) {
+            filteredByType[i] = new LongAdder();
+        }
+    }
+
+    void filtered(int messageType) {
+        filteredByType[messageType].increment();
+    }
+
+    void rejectedMmsi() {
+        rejectedMmsis.increment();
+    }
+
+    void received(int bytes) {
+        receivedBytes.add(bytes);
+    }
+
+    void line() {
+        receivedLines.increment();
+    }
+
+    void rejectedLine() {
+        rejectedLines.increment();
+    }
+
+    void reassembled() {
+        reassembledMessages.increment();
+    }
+
+    void duplicate() {
+        duplicates.increment();
+    }
+
+    void discardedFragmentGroup() {
+        discardedFragmentGroups.increment();
+    }
+
+    void badChecksum() {
+        badChecksums.increment();
+    }
+
+    void framed() {
+        framedSentences.increment();
+    }
+
+    void datagram(int bytes) {
+        datagrams.increment();
+        datagramBytes.add(bytes);
+    }
+
+    void captured() {
+        capturedLines.increment();
+    }
+
+    void captureDropped() {
+        captureDroppedLines.increment();
+    }
+
+    void replayStarted(long nowMillis) {
+        replayedLines.reset();
+        replayEndMillis = 0;
+        replayStartMillis = nowMillis;
+    }
+
+    void replayed() {
+        replayedLines.increment();
+    }
+
+    void replayFinished(long nowMillis) {
+        replayEndMillis = nowMillis;
+    }
+
+    void bound(int port) {
+        boundPort = port;
+    }
+
+    void unbound() {
+        boundPort = 0;
+    }
+
+    void watchdogReconnect() {
+        watchdogReconnects.increment();
+    }
+
+    void idleTimeout() {
+        idleTimeouts.increment();
+    }
+
+    void read(long nowMillis) {
+        lastReadMillis = nowMillis;
+    }
+
+    void sourceTimestamp(long timestampMillis) {
+        // single writer, the reader thread
+        if (timestampMillis > newestSourceTimestampMillis) {
+            newestSourceTimestampMillis = timestampMillis;
+        }
+    }
+
+    /**
+     * Counts a new connection and forgets the source timestamps of the previous one.
+     */
+    void connected() {
+        connects.increment();
+        newestSourceTimestampMillis = 0;
+    }
+
+    /**
+     * @return number of bytes received from the socket, before decompression, or read from the replayed file
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    /**
+     * @return number of complete lines received, valid or not
+     */
+    public long getReceivedLines() {
+        return receivedLines.sum();
+    }
+
+    /**
+     * @return number of lines dropped because they were too long, had too few fields or could not be parsed
+     */
+    public long getRejectedLines() {
+        return rejectedLines.sum();
+    }
+
+    /**
+     * @return number of multi-sentence messages put together from their fragments
+     */
+    public long getReassembledMessages() {
+        return reassembledMessages.sum();
+    }
+
+    /**
+     * @param messageType AIS message type, 0 to 63
+     * @return number of messages of the type dropped by the message type filter
+     */
+    public long getFilteredMessages(int messageType) {
+        return filteredByType[messageType].sum();
+    }
+
+    /**
+     * @return number of messages of all types dropped by the message type filter
+     */
+    public long getFilteredMessages() {
+        long sum = 0;
+        for (LongAdder filtered : filteredByType) {
+            sum += filtered.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * @return number of messages dropped because of their source MMSI
+     */
+    public long getRejectedMmsis() {
+        return rejectedMmsis.sum();
+    }
+
+    /**
+     * @return number of times the feed was connected, or its datagram socket bound
+     */
+    public long getConnects() {
+        return connects.sum();
+    }
+
+    /**
+     * @return number of sentences dropped because the same payload was received shortly before
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return number of multi-sentence messages dropped because fragments were missing, repeated or invalid
+     */
+    public long getDiscardedFragmentGroups() {
+        return discardedFragmentGroups.sum();
+    }
+
+    /**
+     * @return number of lines dropped because the checksum was missing or wrong
+     */
+    public long getBadChecksums() {
+        return badChecksums.sum();
+    }
+
+    /**
+     * @return number of complete sentences the reader has framed, before duplicates are dropped
+     */
+    public long getFramedSentences() {
+        return framedSentences.sum();
+    }
+
+    /**
+     * @return number of UDP datagrams received
+     */
+    public long getDatagrams() {
+        return datagrams.sum();
+    }
+
+    /**
+     * @return number of bytes received in UDP datagrams
+     */
+    public long getDatagramBytes() {
+        return datagramBytes.sum();
+    }
+
+    /**
+     * @return number of raw lines written to the capture journal
+     */
+    public long getCapturedLines() {
+        return capturedLines.sum();
+    }
+
+    /**
+     * @return number of raw lines left out of the capture journal because its writer fell behind or failed
+     */
+    public long getCaptureDroppedLines() {
+        return captureDroppedLines.sum();
+    }
+
+    /**
+     * @return number of lines read from the replayed file so far
+     */
+    public long getReplayedLines() {
+        return replayedLines.sum();
+    }
+
+    /**
+     * @param nowMillis current wall clock time
+     * @return lines per second the file replay has achieved, up to now or to its end, 0 without a replay
+     */
+    public double getReplayLinesPerSecond(long nowMillis) {
+        long start = replayStartMillis;
+        if (start == 0) {
+            return 0;
+        }
+        long end = replayEndMillis;
+        long elapsed = (end == 0 ? nowMillis : end) - start;
+        return elapsed <= 0 ? 0 : replayedLines.sum() * 1000.0 / elapsed;
+    }
+
+    /**
+     * @return local port of the datagram socket, 0 if the feed is not received over UDP
+     */
+    public int getBoundPort() {
+        return boundPort;
+    }
+
+    /**
+     * @return number of times the reader reconnected because the feed was idle or lagging
+     */
+    public long getWatchdogReconnects() {
+        return watchdogReconnects.sum();
+    }
+
+    /**
+     * @return number of idle read timeouts of a datagram feed, during which no datagram was received
+     */
+    public long getIdleTimeouts() {
+        return idleTimeouts.sum();
+    }
+
+    /**
+     * @return wall clock time in milliseconds of the last received byte, 0 if nothing has been received
+     */
+    public long getLastReadMillis() {
+        return lastReadMillis;
+    }
+
+    /**
+     * @param nowMillis current wall clock time
+     * @return milliseconds since the last received byte, or -1 if nothing has been received
+     */
+    public long getLastReadAgeMillis(long nowMillis) {
+        long last = lastReadMillis;
+        return last == 0 ? -1 : Math.max(0, nowMillis - last);
+    }
+
+    /**
+     * @param nowMillis current wall clock time
+     * @return age in milliseconds of the newest TAG block {@code c:} timestamp received on the current
+     * connection, or -1 if the feed sends no timestamps
+     */
+    public long getFeedLagMillis(long nowMillis) {
+        long newest = newestSourceTimestampMillis;
+        return newest == 0 ? -1 : Math.max(0, nowMillis - newest);
+    }
+}
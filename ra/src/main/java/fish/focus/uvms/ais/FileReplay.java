@@ -0,0 +1,159 @@
+package fish.focus.uvms.ais;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Replays a recorded NMEA file, plain or gzip, through a {@link NmeaFramer} as if it was received from a feed,
+ * for load tests and for backfilling after an outage. The output of {@link CaptureJournal#extract} can be replayed
+ * when it is extracted without timestamps.
+ * <p>
+ * Lines are paced by their TAG block {@code c:} timestamps: a line is passed on when the recorded time since the
+ * first timestamp, divided by the speed, has passed. Lines without a timestamp are passed on right away. At
+ * maximum speed nothing is paced. Lines are never dropped, the replay waits while the sentence buffer is full.
+ * <p>
+ * Not thread safe, an instance is run by a single reader thread.
+ */
+class FileReplay {
+
+    private static final Logger LOG = Logger.getLogger(FileReplay.class.getName());
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final long FULL_BUFFER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // a stopped replay leaves a long pause within this time
+    private static final long MAX_PACING_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path file;
+    private final double speed;
+    private final NmeaFramer framer;
+    private final FeedCounters counters;
+    private final BooleanSupplier bufferFull;
+    private final BooleanSupplier running;
+
+    private long firstTimestamp = -1;
+    private long firstTimestampNanos;
+
+    /**
+     * @param file       file to replay
+     * @param speed      multiple of the recorded pace, 0 or less for maximum speed
+     * @param framer     framer the lines are fed to
+     * @param counters   counters of the feed, for the replay throughput
+     * @param bufferFull tells whether the sentence buffer is full
+     * @param running    tells whether the replay should go on
+     */
+    FileReplay(Path file, double speed, NmeaFramer framer, FeedCounters counters, BooleanSupplier bufferFull, BooleanSupplier running) {
+        this.file = file;
+        this.speed = speed;
+        this.framer = framer;
+        this.counters = counters;
+        this.bufferFull = bufferFull;
+        this.running = running;
+    }
+
+    /**
+     * Replays the file to its end, or until stopped.
+     *
+     * @return number of lines replayed
+     * @throws IOException if the file cannot be read
+     */
+    long replay() throws IOException {
+        long start = System.currentTimeMillis();
+        counters.replayStarted(start);
+        framer.reset();
+        LOG.info("Replaying " + file + (speed > 0 ? " at " + speed + "x" : " at maximum speed"));
+
+        long lines = 0;
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int lineStart = 0;
+        int limit = 0;
+        try (InputStream in = open(file)) {
+            int read;
+            while (running.getAsBoolean() && (read = in.read(buffer, limit, buffer.length - limit)) >= 0) {
+                counters.read(System.currentTimeMillis());
+                counters.received(read);
+                int scanFrom = limit;
+                limit += read;
+                for (int i = scanFrom; i < limit && running.getAsBoolean(); i++) {
+                    if (buffer[i] == '\n' || buffer[i] == '\r') {
+                        if (i > lineStart) {
+                            replayLine(buffer, lineStart, i);
+                            lines++;
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart == 0 && limit == buffer.length) {
+                    // no line end in the whole buffer, the framer drops the overlong line
+                    framer.feed(buffer, 0, limit);
+                    limit = 0;
+                } else {
+                    System.arraycopy(buffer, lineStart, buffer, 0, limit - lineStart);
+                    limit -= lineStart;
+                    lineStart = 0;
+                }
+            }
+            if (running.getAsBoolean() && limit > 0) {
+                replayLine(buffer, 0, limit);
+                lines++;
+            }
+        } finally {
+            long end = System.currentTimeMillis();
+            counters.replayFinished(end);
+            LOG.info("Replayed " + lines + " lines of " + file + " in " + (end - start) + " ms, "
+                    + Math.round(counters.getReplayLinesPerSecond(end)) + " lines/s");
+        }
+        return lines;
+    }
+
+    private void replayLine(byte[] bytes, int from, int to) {
+        TagBlock tagBlock = TagBlock.find(bytes, from, to);
+        pace(tagBlock == null ? -1 : tagBlock.getTimestampMillis());
+        while (bufferFull.getAsBoolean() && running.getAsBoolean()) {
+            LockSupport.parkNanos(this, FULL_BUFFER_PARK_NANOS);
+        }
+        // the framer takes the TAG block as it is instead of parsing it again
+        framer.feedLine(bytes, from, to, tagBlock);
+        counters.replayed();
+    }
+
+    private void pace(long timestamp) {
+        if (speed <= 0 || timestamp <= 0) {
+            return;
+        }
+        if (firstTimestamp < 0) {
+            firstTimestamp = timestamp;
+            firstTimestampNanos = System.nanoTime();
+            return;
+        }
+        long due = firstTimestampNanos + (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed);
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0 && running.getAsBoolean()) {
+            LockSupport.parkNanos(this, Math.min(remaining, MAX_PACING_PARK_NANOS));
+        }
+    }
+
+    /**
+     * Opens the file, decompressing it if it starts with the gzip magic number.
+     */
+    static InputStream open(Path file) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), READ_BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+            return magic == GZIP_MAGIC ? new GZIPInputStream(in, READ_BUFFER_SIZE) : in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package fish.focus.uvms.ais;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Puts together AIS messages that are split over 2 to 9 sentences.
+ * <p>
+ * Fragments are grouped by the TAG block group id when they have one, otherwise by sequential message id and
+ * radio channel, so fragments of different messages may arrive interleaved. Feeds often put the source only in
+ * the TAG block of the first fragment, so the source is part of the key only for fragments that have one.
+ * <p>
+ * A group is discarded, and counted, when it is not complete within the timeout, when a fragment is repeated or
+ * does not fit the group, or when too many groups are pending.
+ * <p>
+ * Not thread safe, used by the {@link NmeaFramer} of a single reader thread.
+ */
+class FragmentReassembler {
+
+    static final int MAX_FRAGMENTS = 9;
+    static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int MAX_PENDING_GROUPS = 64;
+
+    private final Consumer<Sentence> sink;
+    private final FeedCounters counters;
+    private final long timeoutNanos;
+    private IngestFilter filter;
+
+    // few groups are pending at any time, a list is faster to search than a map with composite keys
+    private final List<Group> pending = new ArrayList<>();
+
+    FragmentReassembler(Consumer<Sentence> sink, FeedCounters counters) {
+        this(sink, counters, DEFAULT_TIMEOUT_NANOS);
+    }
+
+    FragmentReassembler(Consumer<Sentence> sink, FeedCounters counters, long timeoutNanos) {
+        this.sink = sink;
+        this.counters = counters;
+        this.timeoutNanos = timeoutNanos;
+        this.filter = IngestFilter.acceptAll(counters);
+    }
+
+    /**
+     * @param filter checks the first fragment of a complete message
+     */
+    void setFilter(IngestFilter filter) {
+        this.filter = filter;
+    }
+
+    void add(int count, int number, int sequenceId, byte channel, TagBlock tagBlock,
+             byte[] payload, int payloadFrom, int payloadTo, long receivedNanos) {
+        add(count, number, sequenceId, channel, tagBlock, payload, payloadFrom, payloadTo, receivedNanos, System.nanoTime());
+    }
+
+    /**
+     * Adds a fragment and emits the message when it is the last missing one.
+     *
+     * @param count         number of fragments of the message
+     * @param number        number of this fragment, starting at 1
+     * @param sequenceId    sequential message id, -1 if not set
+     * @param channel       radio channel, 0 if not set
+     * @param tagBlock      TAG block of the fragment, or null
+     * @param payload       array holding the payload of the fragment
+     * @param receivedNanos receive time of the fragment in nanoseconds since the epoch, a message gets that of its last fragment
+     * @param now           current {@link System#nanoTime()}
+     */
+    void add(int count, int number, int sequenceId, byte channel, TagBlock tagBlock,
+             byte[] payload, int payloadFrom, int payloadTo, long receivedNanos, long now) {
+        expire(now);
+        if (count < 2 || count > MAX_FRAGMENTS || number < 1 || number > count) {
+            counters.discardedFragmentGroup();
+            return;
+        }
+
+        long groupId = tagBlock == null ? -1 : tagBlock.getGroupId();
+        String source = tagBlock == null ? null : tagBlock.getSource();
+        Group group = find(sequenceId, channel, groupId, source);
+        if (group != null && (group.fragments.length != count || group.fragments[number - 1] != null)) {
+            // a new message reusing the sequential id before the old one was complete
+            discard(group);
+            group = null;
+        }
+        if (group == null) {
+            if (pending.size() >= MAX_PENDING_GROUPS) {
+                discard(pending.get(0));
+            }
+            group = new Group(count, sequenceId, channel, groupId, now);
+            pending.add(group);
+        }
+        if (group.source == null) {
+            group.source = source;
+        }
+
+        group.fragments[number - 1] = Arrays.copyOfRange(payload, payloadFrom, payloadTo);
+        group.received++;
+        if (tagBlock != null && (group.tagBlock == null || number == 1)) {
+            group.tagBlock = tagBlock;
+        }
+
+        if (group.received == count) {
+            pending.remove(group);
+            counters.reassembled();
+            // the message type and MMSI are at the start of the first fragment
+            byte[] first = group.fragments[0];
+            if (!filter.accept(first, 0, first.length)) {
+                return;
+            }
+            sink.accept(new Sentence(group.tagBlock, group.join(), receivedNanos));
+        }
+    }
+
+    int getPendingGroups() {
+        return pending.size();
+    }
+
+    private Group find(int sequenceId, byte channel, long groupId, String source) {
+        for (Group group : pending) {
+            boolean sameMessage = groupId >= 0
+                    ? group.groupId == groupId
+                    : group.groupId < 0 && group.sequenceId == sequenceId && group.channel == channel;
+            if (sameMessage && (source == null || group.source == null || group.source.equals(source))) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    private void expire(long now) {
+        // groups are in creation order
+        while (!pending.isEmpty() && now - pending.get(0).created > timeoutNanos) {
+            discard(pending.get(0));
+        }
+    }
+
+    private void discard(Group group) {
+        pending.remove(group);
+        counters.discardedFragmentGroup();
+    }
+
+    private static final class Group {
+        private final int sequenceId;
+        private final byte channel;
+        private final long groupId;
+        private final long created;
+        private final byte[][] fragments;
+        private String source;
+        private int received;
+        private TagBlock tagBlock;
+
+        Group(int count, int sequenceId, byte channel, long groupId, long created) {
+            this.fragments = new byte[count][];
+            this.sequenceId = sequenceId;
+            this.channel = channel;
+            this.groupId = groupId;
+            this.created = created;
+        }
+
+        byte[] join() {
+            int length = 0;
+            for (byte[] fragment : fragments) {
+                length += fragment.length;
+            }
+            byte[] joined = new byte[length];
+            int offset = 0;
+            for (byte[] fragment : fragments) {
+                System.arraycopy(fragment, 0, joined, offset, fragment.length);
+                offset += fragment.length;
+            }
+            return joined;
+        }
+    }
+}
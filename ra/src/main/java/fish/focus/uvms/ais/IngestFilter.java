@@ -0,0 +1,74 @@
+package fish.focus.uvms.ais;
+
+/**
+ * Drops messages by message type and source MMSI before a {@link Sentence} is created for them, and counts them.
+ * Both are read straight from the armored payload: the type from the first character, the 30-bit MMSI from the
+ * second to the seventh. Messages whose type or MMSI cannot be read are let through, the plugin rejects them
+ * when decoding.
+ */
+class IngestFilter {
+
+    private static final int MMSI_END = 7;
+
+    private final long allowedTypes;
+    private final MmsiRanges allowedMmsis;
+    private final MmsiRanges deniedMmsis;
+    private final FeedCounters counters;
+
+    /**
+     * @param allowedTypes message types passed on, see {@link MessageTypes}
+     * @param allowedMmsis MMSIs passed on, empty for all
+     * @param deniedMmsis  MMSIs dropped, also when allowed
+     * @param counters     counters of the feed, for the dropped messages
+     */
+    IngestFilter(long allowedTypes, MmsiRanges allowedMmsis, MmsiRanges deniedMmsis, FeedCounters counters) {
+        this.allowedTypes = allowedTypes;
+        this.allowedMmsis = allowedMmsis;
+        this.deniedMmsis = deniedMmsis;
+        this.counters = counters;
+    }
+
+    static IngestFilter acceptAll(FeedCounters counters) {
+        return new IngestFilter(MessageTypes.ALL, MmsiRanges.EMPTY, MmsiRanges.EMPTY, counters);
+    }
+
+    /**
+     * @param payload array holding the armored payload, of a whole message or its first fragment
+     * @return false if the message is dropped
+     */
+    boolean accept(byte[] payload, int from, int to) {
+        int type = from < to ? MessageTypes.type(payload[from]) : -1;
+        if (!MessageTypes.allows(allowedTypes, type)) {
+            counters.filtered(type);
+            return false;
+        }
+        if (allowedMmsis.isEmpty() && deniedMmsis.isEmpty()) {
+            return true;
+        }
+        int mmsi = mmsi(payload, from, to);
+        if (mmsi >= 0 && (deniedMmsis.contains(mmsi) || (!allowedMmsis.isEmpty() && !allowedMmsis.contains(mmsi)))) {
+            counters.rejectedMmsi();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the source MMSI, bits 8 to 37 of the payload, or -1 if the payload is too short or not armored
+     */
+    static int mmsi(byte[] payload, int from, int to) {
+        if (to - from < MMSI_END) {
+            return -1;
+        }
+        long bits = 0;
+        for (int i = from + 1; i < from + MMSI_END; i++) {
+            int sixBits = MessageTypes.dearmor(payload[i]);
+            if (sixBits < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | sixBits;
+        }
+        // 36 bits read, the 2 repeat indicator bits on top and 4 bits of the next field below
+        return (int) (bits >>> 4) & MmsiRanges.MAX_MMSI;
+    }
+}
@@ -0,0 +1,86 @@
+package fish.focus.uvms.ais;
+
+/**
+ * AIS message types as read from the first character of an armored payload, and sets of them as a {@code long}
+ * bit mask with bit n set for message type n.
+ */
+final class MessageTypes {
+
+    /**
+     * Number of values a 6-bit message type field can take
+     */
+    static final int COUNT = 64;
+
+    /**
+     * Every message type
+     */
+    static final long ALL = -1L;
+
+    private MessageTypes() {
+    }
+
+    /**
+     * @param armored first character of the payload
+     * @return the message type, or -1 if the character is not a payload character
+     */
+    static int type(byte armored) {
+        return dearmor(armored);
+    }
+
+    /**
+     * @param armored payload character
+     * @return the 6 bits the character stands for, or -1 if it is not a payload character
+     */
+    static int dearmor(byte armored) {
+        // '0'..'W' are 0..39, '`'..'w' are 40..63
+        int value = armored - '0';
+        if (value < 0 || value > 71 || (value >= 40 && value < 48)) {
+            return -1;
+        }
+        return value >= 48 ? value - 8 : value;
+    }
+
+    /**
+     * @param types comma separated message types and ranges, e.g. {@code 1-3,5,18,24}, null or blank for all
+     * @return the bit mask
+     */
+    static long parse(String types) {
+        if (types == null || types.isBlank()) {
+            return ALL;
+        }
+        long mask = 0;
+        for (String part : types.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            int from = parseType(dash < 0 ? range : range.substring(0, dash), types);
+            int to = dash < 0 ? from : parseType(range.substring(dash + 1), types);
+            for (int type = from; type <= to; type++) {
+                mask |= 1L << type;
+            }
+        }
+        return mask;
+    }
+
+    private static int parseType(String value, String types) {
+        int type;
+        try {
+            type = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid message types: " + types, e);
+        }
+        if (type < 0 || type >= COUNT) {
+            throw new IllegalArgumentException("Message type " + type + " out of range in " + types);
+        }
+        return type;
+    }
+
+    /**
+     * @return true if the type is in the mask, or is not known
+     */
+    static boolean allows(long mask, int type) {
+        return type < 0 || (mask & (1L << type)) != 0;
+    }
+}
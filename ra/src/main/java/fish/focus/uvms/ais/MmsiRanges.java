@@ -0,0 +1,95 @@
+package fish.focus.uvms.ais;
+
+import java.util.Arrays;
+
+/**
+ * A set of MMSIs held as sorted, disjoint ranges in two {@code int} arrays, looked up with a binary search.
+ */
+final class MmsiRanges {
+
+    static final MmsiRanges EMPTY = new MmsiRanges(new int[0], new int[0]);
+
+    /**
+     * Largest value of the 30-bit MMSI field
+     */
+    static final int MAX_MMSI = (1 << 30) - 1;
+
+    private final int[] from;
+    private final int[] to;
+
+    private MmsiRanges(int[] from, int[] to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @param mmsis comma separated MMSIs and ranges, e.g. {@code 0,123456789,970000000-979999999}, null or blank for none
+     * @return the set
+     */
+    static MmsiRanges parse(String mmsis) {
+        if (mmsis == null || mmsis.isBlank()) {
+            return EMPTY;
+        }
+        String[] parts = mmsis.split(",");
+        long[] ranges = new long[parts.length];
+        int count = 0;
+        for (String part : parts) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-');
+            int rangeFrom = parseMmsi(dash < 0 ? range : range.substring(0, dash), mmsis);
+            int rangeTo = dash < 0 ? rangeFrom : parseMmsi(range.substring(dash + 1), mmsis);
+            if (rangeTo < rangeFrom) {
+                throw new IllegalArgumentException("Empty MMSI range " + range + " in " + mmsis);
+            }
+            // both fit in 31 bits, sorting the packed values sorts by range start
+            ranges[count++] = ((long) rangeFrom << 32) | rangeTo;
+        }
+        Arrays.sort(ranges, 0, count);
+
+        int[] mergedFrom = new int[count];
+        int[] mergedTo = new int[count];
+        int merged = 0;
+        for (int i = 0; i < count; i++) {
+            int rangeFrom = (int) (ranges[i] >>> 32);
+            int rangeTo = (int) ranges[i];
+            if (merged > 0 && rangeFrom <= mergedTo[merged - 1] + 1) {
+                mergedTo[merged - 1] = Math.max(mergedTo[merged - 1], rangeTo);
+            } else {
+                mergedFrom[merged] = rangeFrom;
+                mergedTo[merged] = rangeTo;
+                merged++;
+            }
+        }
+        return new MmsiRanges(Arrays.copyOf(mergedFrom, merged), Arrays.copyOf(mergedTo, merged));
+    }
+
+    private static int parseMmsi(String value, String mmsis) {
+        int mmsi;
+        try {
+            mmsi = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid MMSIs: " + mmsis, e);
+        }
+        if (mmsi < 0 || mmsi > MAX_MMSI) {
+            throw new IllegalArgumentException("MMSI " + mmsi + " out of range in " + mmsis);
+        }
+        return mmsi;
+    }
+
+    boolean isEmpty() {
+        return from.length == 0;
+    }
+
+    boolean contains(int mmsi) {
+        int index = Arrays.binarySearch(from, mmsi);
+        if (index >= 0) {
+            return true;
+        }
+        // the range starting before the MMSI
+        int before = -index - 2;
+        return before >= 0 && mmsi <= to[before];
+    }
+}
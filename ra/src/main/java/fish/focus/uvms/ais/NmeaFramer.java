@@ -0,0 +1,335 @@
+package fish.focus.uvms.ais;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Splits a raw NMEA byte stream into lines and turns the AIVDM/AIVDO lines into {@link Sentence}s.
+ * <p>
+ * The framer works directly on the received bytes. It scans for the TAG block delimiters, the field
+ * separators and the line ends without decoding the line into a String, and only the payload (and the
+ * TAG block, when present) is copied out of the line buffer.
+ * <p>
+ * Lines with a missing or wrong {@code *hh} checksum are dropped, and counted, before anything is copied
+ * out of them.
+ * <p>
+ * Messages split over several sentences are put together in a {@link FragmentReassembler}.
+ * <p>
+ * Not thread safe, an instance is meant to be fed by one reader thread at a time.
+ */
+public class NmeaFramer {
+
+    /**
+     * Receives every complete raw line, before it is checked or parsed.
+     */
+    interface LineSink {
+        /**
+         * @param bytes  line without the line end, only valid during the call
+         * @param length length of the line
+         */
+        void line(byte[] bytes, int length);
+    }
+
+    private static final Logger LOG = Logger.getLogger(NmeaFramer.class.getName());
+
+    static final int MAX_LINE_LENGTH = 1024;
+
+    private static final byte[] ABVSI = "$ABVSI".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int FIELD_FRAGMENT_COUNT = 1;
+    private static final int FIELD_FRAGMENT_NUMBER = 2;
+    private static final int FIELD_SEQUENCE_ID = 3;
+    private static final int FIELD_CHANNEL = 4;
+    private static final int FIELD_PAYLOAD = 5;
+    private static final int TRACKED_FIELDS = FIELD_PAYLOAD + 1;
+
+    private final Consumer<Sentence> sink;
+    private final FeedCounters counters;
+    private final FragmentReassembler reassembler;
+
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int lineLength;
+    private boolean lineOverflow;
+    private LineSink lineSink;
+    private IngestFilter filter;
+    // receive time of the bytes being fed, taken once per read
+    private long receivedNanos;
+
+    // field start (inclusive) and end (exclusive) offsets of the current line
+    private final int[] fieldStart = new int[TRACKED_FIELDS];
+    private final int[] fieldEnd = new int[TRACKED_FIELDS];
+
+    // TAG block of the line fed with feedLine, already parsed by the caller
+    private TagBlock parsedTagBlock;
+
+    public NmeaFramer(Consumer<Sentence> sink) {
+        this(sink, new FeedCounters());
+    }
+
+    /**
+     * @param sink     receives the framed sentences
+     * @param counters counters of the feed the framer reads
+     */
+    public NmeaFramer(Consumer<Sentence> sink, FeedCounters counters) {
+        this.sink = sink;
+        this.counters = counters;
+        this.reassembler = new FragmentReassembler(sink, counters);
+        this.filter = IngestFilter.acceptAll(counters);
+    }
+
+    /**
+     * Consumes all remaining bytes of the buffer. Incomplete lines are kept until the rest of the line arrives.
+     *
+     * @param buffer buffer in read mode
+     */
+    public void feed(ByteBuffer buffer) {
+        receivedNanos = Sentence.epochNanos();
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            feedBytes(array, offset + buffer.position(), offset + buffer.limit());
+            buffer.position(buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                accept(buffer.get());
+            }
+        }
+    }
+
+    /**
+     * Consumes the bytes from {@code from} (inclusive) to {@code to} (exclusive).
+     */
+    public void feed(byte[] bytes, int from, int to) {
+        receivedNanos = Sentence.epochNanos();
+        feedBytes(bytes, from, to);
+    }
+
+    /**
+     * Consumes a whole line whose TAG block has already been parsed, so it is not parsed again.
+     *
+     * @param tagBlock TAG block of the line as found by {@link TagBlock#find}, or null to have the framer look for one
+     */
+    void feedLine(byte[] bytes, int from, int to, TagBlock tagBlock) {
+        receivedNanos = Sentence.epochNanos();
+        parsedTagBlock = tagBlock;
+        try {
+            feedBytes(bytes, from, to);
+            endLine();
+        } finally {
+            parsedTagBlock = null;
+        }
+    }
+
+    private void feedBytes(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            accept(bytes[i]);
+        }
+    }
+
+    /**
+     * Drops messages by type and MMSI before a {@link Sentence} is created for them. Single sentence messages are
+     * checked right away, multi-sentence messages once they are put together.
+     *
+     * @param filter the filter
+     */
+    void setFilter(IngestFilter filter) {
+        this.filter = filter;
+        reassembler.setFilter(filter);
+    }
+
+    /**
+     * @param lineSink receives the raw lines, or null
+     */
+    void setLineSink(LineSink lineSink) {
+        this.lineSink = lineSink;
+    }
+
+    /**
+     * Drops the partly received line, e.g. when the connection it came from is lost. Incomplete
+     * multi-sentence messages are kept, the rest may arrive on the next connection.
+     */
+    public void reset() {
+        lineLength = 0;
+        lineOverflow = false;
+    }
+
+    /**
+     * Ends the current line, for input that is not terminated by a line end, e.g. a datagram.
+     */
+    public void endLine() {
+        accept((byte) '\n');
+    }
+
+    private void accept(byte b) {
+        if (b == '\n' || b == '\r') {
+            if (lineOverflow) {
+                LOG.warning("Dropping line longer than " + MAX_LINE_LENGTH + " bytes");
+                counters.line();
+                counters.rejectedLine();
+            } else if (lineLength > 0) {
+                counters.line();
+                if (lineSink != null) {
+                    lineSink.line(line, lineLength);
+                }
+                onLine();
+            }
+            lineLength = 0;
+            lineOverflow = false;
+        } else if (lineLength < line.length) {
+            line[lineLength++] = b;
+        } else {
+            lineOverflow = true;
+        }
+    }
+
+    private void onLine() {
+        try {
+            int start = 0;
+            int tagBlockEnd = -1;
+            if (line[0] == '\\') {
+                tagBlockEnd = indexOf(line, (byte) '\\', 1, lineLength);
+                if (tagBlockEnd > 0) {
+                    start = tagBlockEnd + 1;
+                }
+            }
+
+            if (!hasValidChecksum(start)) {
+                counters.badChecksum();
+                return;
+            }
+
+            TagBlock tagBlock = null;
+            if (tagBlockEnd > 0) {
+                tagBlock = parsedTagBlock != null ? parsedTagBlock : TagBlock.parse(line, 1, tagBlockEnd);
+                if (tagBlock.getTimestampMillis() > 0) {
+                    counters.sourceTimestamp(tagBlock.getTimestampMillis());
+                }
+            }
+
+            int fieldCount = splitFields(start);
+            if (fieldCount <= 4) {
+                counters.rejectedLine();
+                return;
+            }
+            if (equals(ABVSI, fieldStart[0], fieldEnd[0])) {
+                return;
+            }
+
+            int payload = payloadField(fieldCount);
+            int fragmentCount = parseInt(FIELD_FRAGMENT_COUNT);
+            if (fragmentCount == 1) {
+                if (!filter.accept(line, fieldStart[payload], fieldEnd[payload])) {
+                    return;
+                }
+                // This is a single sentence message, cache it
+                sink.accept(new Sentence(tagBlock, Arrays.copyOfRange(line, fieldStart[payload], fieldEnd[payload]), receivedNanos));
+            } else {
+                int sequenceId = fieldStart[FIELD_SEQUENCE_ID] == fieldEnd[FIELD_SEQUENCE_ID] ? -1 : parseInt(FIELD_SEQUENCE_ID);
+                byte channel = fieldStart[FIELD_CHANNEL] == fieldEnd[FIELD_CHANNEL] ? 0 : line[fieldStart[FIELD_CHANNEL]];
+                reassembler.add(fragmentCount, parseInt(FIELD_FRAGMENT_NUMBER), sequenceId, channel, tagBlock,
+                        line, fieldStart[payload], fieldEnd[payload], receivedNanos);
+            }
+        } catch (RuntimeException e) {
+            counters.rejectedLine();
+            LOG.warning("Input:" + new String(line, 0, lineLength, StandardCharsets.ISO_8859_1));
+            LOG.warning("Exception: " + e);
+        }
+    }
+
+    /**
+     * Checks the XOR checksum of the sentence, the characters between the leading '!' or '$' and the '*'
+     * compared with the two hex digits after the '*'.
+     */
+    private boolean hasValidChecksum(int start) {
+        int end = lineLength;
+        // tolerate trailing spaces and tabs
+        while (end > start && (line[end - 1] == ' ' || line[end - 1] == '\t')) {
+            end--;
+        }
+        int star = end - 3;
+        if (star <= start || line[star] != '*') {
+            return false;
+        }
+        int expected = (TagBlock.hexValue(line[star + 1]) << 4) | TagBlock.hexValue(line[star + 2]);
+        if (expected < 0) {
+            return false;
+        }
+        int checksum = 0;
+        for (int i = start + 1; i < star; i++) {
+            checksum ^= line[i];
+        }
+        return (checksum & 0xff) == expected;
+    }
+
+    /**
+     * Records the offsets of the leading fields and returns the number of fields, not counting trailing
+     * empty fields (same count as {@code String.split(",")} would give).
+     */
+    private int splitFields(int start) {
+        int field = 0;
+        int lastNonEmpty = -1;
+        int fieldBegin = start;
+        for (int i = start; i <= lineLength; i++) {
+            if (i == lineLength || line[i] == ',') {
+                if (field < TRACKED_FIELDS) {
+                    fieldStart[field] = fieldBegin;
+                    fieldEnd[field] = i;
+                }
+                if (i > fieldBegin) {
+                    lastNonEmpty = field;
+                }
+                field++;
+                fieldBegin = i + 1;
+            }
+        }
+        return lastNonEmpty + 1;
+    }
+
+    private static int payloadField(int fieldCount) {
+        if (fieldCount <= FIELD_PAYLOAD) {
+            throw new ArrayIndexOutOfBoundsException("Payload field missing, only " + fieldCount + " fields");
+        }
+        return FIELD_PAYLOAD;
+    }
+
+    private int parseInt(int field) {
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        if (from == to) {
+            throw new NumberFormatException("Empty field " + field);
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9 || value > 100_000_000) {
+                throw new NumberFormatException("Field " + field + " is not a number");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private boolean equals(byte[] expected, int from, int to) {
+        if (to - from != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (line[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,135 @@
+package fish.focus.uvms.ais;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the armored payloads seen within a sliding time window, so copies of the same AIS message
+ * received by several base stations, satellites or feeds can be dropped before they are decoded.
+ * <p>
+ * A payload is represented by a 64-bit FNV-1a hash only, with an extra mixing step. The window is split into time buckets, each
+ * an open addressing {@code long} hash set, and a bucket is cleared when it is reused for a new time
+ * slice. The sets are striped on the hash so reader threads of different feeds seldom share a lock.
+ * When a bucket is full new payloads are let through rather than remembered.
+ */
+public class PayloadDeduplicator {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int BUCKETS = 4;
+    private static final int STRIPES = 16;
+    private static final int MAX_PROBES = 16;
+
+    private final long bucketMillis;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param windowMillis time a payload is remembered, at least
+     * @param capacity     number of distinct payloads expected within one window
+     */
+    public PayloadDeduplicator(long windowMillis, int capacity) {
+        if (windowMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Window and capacity must be positive, was " + windowMillis + " ms and " + capacity);
+        }
+        // one extra bucket so a full window is still covered right after a bucket has been cleared
+        this.bucketMillis = Math.max(1, windowMillis / (BUCKETS - 1));
+        // a bucket can take the whole capacity, traffic is bursty
+        int slots = Integer.highestOneBit(Math.max(8, 2 * capacity / STRIPES) - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(slots);
+        }
+    }
+
+    /**
+     * Records the payload and tells whether it has been seen within the window.
+     *
+     * @param payload armored payload
+     * @return true if the payload is a duplicate
+     */
+    public boolean isDuplicate(byte[] payload) {
+        return isDuplicate(payload, System.currentTimeMillis());
+    }
+
+    boolean isDuplicate(byte[] payload, long nowMillis) {
+        long hash = hash(payload);
+        Stripe stripe = stripes[(int) (hash >>> 60) & (STRIPES - 1)];
+        return stripe.addIfAbsent(hash, nowMillis / bucketMillis);
+    }
+
+    static long hash(byte[] payload) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : payload) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // FNV leaves the high bits poorly mixed for payloads that only differ at the end, they pick the stripe
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        // 0 marks an empty slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static final class Stripe {
+
+        private final long[][] tables = new long[BUCKETS][];
+        private final long[] epochs = new long[BUCKETS];
+        private final int[] sizes = new int[BUCKETS];
+        private final int mask;
+        private final int maxSize;
+
+        Stripe(int slots) {
+            for (int i = 0; i < BUCKETS; i++) {
+                tables[i] = new long[slots];
+                epochs[i] = -1;
+            }
+            mask = slots - 1;
+            maxSize = slots - (slots >>> 2);
+        }
+
+        synchronized boolean addIfAbsent(long hash, long epoch) {
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epoch - epochs[i] < BUCKETS && contains(tables[i], hash)) {
+                    return true;
+                }
+            }
+
+            int current = (int) (epoch % BUCKETS);
+            if (epochs[current] != epoch) {
+                Arrays.fill(tables[current], 0L);
+                sizes[current] = 0;
+                epochs[current] = epoch;
+            }
+            if (sizes[current] < maxSize) {
+                insert(tables[current], hash);
+                sizes[current]++;
+            }
+            return false;
+        }
+
+        private boolean contains(long[] table, long hash) {
+            int index = (int) hash & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long slot = table[(index + probe) & mask];
+                if (slot == hash) {
+                    return true;
+                }
+                if (slot == 0) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private void insert(long[] table, long hash) {
+            int index = (int) hash & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int i = (index + probe) & mask;
+                if (table[i] == 0) {
+                    table[i] = hash;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package fish.focus.uvms.ais;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.work.HintsContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkContext;
+import javax.resource.spi.work.WorkContextProvider;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs the long-lived reader and dispatch tasks of the managed connections.
+ * <p>
+ * Tasks are scheduled as {@link Work} on the {@link WorkManager} of the resource adapter, with the
+ * {@link HintsContext#LONGRUNNING_HINT}, so the container knows about the threads and does not take them from
+ * the pool for short work. When virtual threads are requested and the JDK supports them (21+) the tasks run on
+ * virtual threads instead. Without a work manager, e.g. in unit tests, a plain thread is started.
+ * <p>
+ * The container only releases its own work threads, so the executor keeps track of the running tasks and
+ * releases all of them in {@link #stop()}, whatever thread they run on.
+ */
+class ReaderExecutor {
+
+    private static final Logger LOG = Logger.getLogger(ReaderExecutor.class.getName());
+
+    private static final Method START_VIRTUAL_THREAD = findStartVirtualThread();
+
+    private final WorkManager workManager;
+    private final boolean virtualThreads;
+
+    private final AtomicInteger liveReaders = new AtomicInteger();
+    /**
+     * Release callbacks of the tasks that are scheduled or running
+     */
+    private final Set<Runnable> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
+
+    ReaderExecutor(WorkManager workManager, boolean virtualThreads) {
+        this.workManager = workManager;
+        this.virtualThreads = virtualThreads && START_VIRTUAL_THREAD != null;
+        if (virtualThreads && START_VIRTUAL_THREAD == null) {
+            LOG.warning("Virtual threads are not supported by this JVM, using the work manager for AIS readers");
+        }
+    }
+
+    /**
+     * Starts the task on a new thread.
+     *
+     * @param name    thread name, set for the time the task runs
+     * @param task    the task
+     * @param release called when the container or {@link #stop()} wants the task to stop
+     * @throws ResourceException if the executor is stopped or the work manager rejected the task
+     */
+    void execute(String name, Runnable task, Runnable release) throws ResourceException {
+        if (stopped) {
+            throw new ResourceException("Could not start " + name + ", the resource adapter is stopped");
+        }
+        Runnable named = () -> {
+            Thread current = Thread.currentThread();
+            String oldName = current.getName();
+            current.setName(name);
+            try {
+                task.run();
+            } finally {
+                running.remove(release);
+                current.setName(oldName);
+                // do not hand a pooled thread back with the interrupt used to stop the task
+                Thread.interrupted();
+            }
+        };
+        running.add(release);
+
+        if (virtualThreads) {
+            try {
+                START_VIRTUAL_THREAD.invoke(null, named);
+                return;
+            } catch (ReflectiveOperationException e) {
+                LOG.warning("Could not start virtual thread " + name + ": " + e);
+            }
+        }
+
+        if (workManager != null) {
+            try {
+                workManager.scheduleWork(new LongRunningWork(name, named, release), WorkManager.INDEFINITE, null, null);
+            } catch (WorkException e) {
+                running.remove(release);
+                throw new ResourceException("Could not schedule " + name, e);
+            }
+        } else {
+            new Thread(named, name).start();
+        }
+    }
+
+    /**
+     * Releases the running tasks and refuses new ones, called when the resource adapter is stopped.
+     */
+    void stop() {
+        stopped = true;
+        for (Runnable release : running) {
+            release.run();
+        }
+    }
+
+    /**
+     * @return number of tasks that are scheduled or running
+     */
+    int getRunningTasks() {
+        return running.size();
+    }
+
+    void readerStarted() {
+        liveReaders.incrementAndGet();
+    }
+
+    void readerStopped() {
+        liveReaders.decrementAndGet();
+    }
+
+    /**
+     * @return number of reader tasks currently running on this executor
+     */
+    int getLiveReaders() {
+        return liveReaders.get();
+    }
+
+    private static Method findStartVirtualThread() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Work that occupies its thread until it is released, the container is told with the long-running hint.
+     */
+    private static final class LongRunningWork implements Work, WorkContextProvider {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final transient Runnable task;
+        private final transient Runnable release;
+
+        LongRunningWork(String name, Runnable task, Runnable release) {
+            this.name = name;
+            this.task = task;
+            this.release = release;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public void release() {
+            release.run();
+        }
+
+        @Override
+        public List<WorkContext> getWorkContexts() {
+            HintsContext hints = new HintsContext();
+            hints.setName(name);
+            hints.setHint(HintsContext.LONGRUNNING_HINT, Boolean.TRUE);
+            return Collections.singletonList(hints);
+        }
+    }
+}
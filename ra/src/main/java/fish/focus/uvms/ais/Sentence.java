@@ -1,45 +1,181 @@
 package fish.focus.uvms.ais;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.Arrays;
-import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * An AIS message as received: the armored payload and the TAG block of its first sentence.
+ * <p>
+ * The message type and source MMSI are read from the armored payload when the sentence is created, so messages
+ * can be routed and filtered without decoding the whole payload.
+ * <p>
+ * The TAG block is parsed once, before the sentence is created, see {@link TagBlock}.
+ */
 public class Sentence {
 
-    private final String commentBlock;
-    private final String payload;
+    private final TagBlock tagBlock;
+    private final byte[] payload;
+    private String sentence;
+
+    /**
+     * Message type, -1 if the payload is empty or not armored
+     */
+    private final int messageType;
+    /**
+     * Source MMSI, -1 if the payload is too short or not armored
+     */
+    private final int mmsi;
+    /**
+     * Receive time in nanoseconds since the epoch
+     */
+    private final long receivedNanos;
 
     public Sentence(String commentBlock, String payload) {
-        this.commentBlock = commentBlock;
+        this(commentBlock, payload == null ? null : payload.getBytes(StandardCharsets.ISO_8859_1));
+        this.sentence = payload;
+    }
+
+    /**
+     * @param commentBlock the TAG block without the surrounding backslashes, or null
+     * @param payload      the armored payload, the array is kept as is and must not be modified afterwards
+     */
+    public Sentence(String commentBlock, byte[] payload) {
+        this(commentBlock, payload, epochNanos());
+    }
+
+    /**
+     * @param commentBlock  the TAG block without the surrounding backslashes, or null
+     * @param payload       the armored payload, the array is kept as is and must not be modified afterwards
+     * @param receivedNanos receive time in nanoseconds since the epoch
+     */
+    public Sentence(String commentBlock, byte[] payload, long receivedNanos) {
+        this(TagBlock.parse(commentBlock), payload, receivedNanos);
+    }
+
+    /**
+     * @param tagBlock      the parsed TAG block, or null
+     * @param payload       the armored payload, the array is kept as is and must not be modified afterwards
+     * @param receivedNanos receive time in nanoseconds since the epoch
+     */
+    Sentence(TagBlock tagBlock, byte[] payload, long receivedNanos) {
+        this.tagBlock = tagBlock;
         this.payload = payload;
+        this.receivedNanos = receivedNanos;
+        this.messageType = payload == null || payload.length == 0 ? -1 : MessageTypes.type(payload[0]);
+        this.mmsi = payload == null ? -1 : IngestFilter.mmsi(payload, 0, payload.length);
     }
 
     public String getSentence() {
+        if (sentence == null && payload != null) {
+            sentence = new String(payload, StandardCharsets.ISO_8859_1);
+        }
+        return sentence;
+    }
+
+    /**
+     * @return the armored payload, one byte per character. The returned array is shared and must not be modified.
+     */
+    public byte[] getPayload() {
         return payload;
     }
 
+    /**
+     * @return the AIS message type, or -1 if it cannot be read
+     */
+    public int getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return the source MMSI, or -1 if it cannot be read
+     */
+    public int getMmsi() {
+        return mmsi;
+    }
+
+    /**
+     * @return the time the message was received by the RA, in nanoseconds since the epoch
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    /**
+     * @return the TAG block without the surrounding backslashes, or null
+     */
+    public String getCommentBlock() {
+        return tagBlock == null ? null : tagBlock.getText();
+    }
+
+    /**
+     * @return true if there is a TAG block and its checksum is right
+     */
     public boolean hasValidCommentBlock() {
-        if (commentBlock == null) {
-            return false;
-        }
-        String[] commentBlockAndChecksum = commentBlock.split("\\*");
-        int calculatedSum = commentBlockAndChecksum[0].chars().boxed().reduce(0, (a, b) -> a ^= b);
-        return Integer.parseInt(commentBlockAndChecksum[1], 16) == calculatedSum;
+        return tagBlock != null && tagBlock.hasValidChecksum();
     }
 
+    /**
+     * @return the {@code c:} time of the TAG block, or null if there is none
+     */
     public Instant getCommentBlockLesTimestamp() {
-        if (commentBlock == null) {
-            return null;
-        }
-        String[] commentBlockAndChecksum = commentBlock.split("\\*");
-        Map<String, String> commentBlockProperties = Arrays.asList(commentBlockAndChecksum[0].split(","))
-                .stream()
-                .map(pair -> pair.split(":"))
-                .collect(Collectors.toMap(pair -> pair[0], pair -> pair[1]));
-        if (!commentBlockProperties.containsKey("c")) {
-            return null;
-        }
-        return Instant.ofEpochSecond(Long.parseLong(commentBlockProperties.get("c")));
+        long timestampMillis = getCommentBlockTimestampMillis();
+        return timestampMillis < 0 ? null : Instant.ofEpochMilli(timestampMillis);
+    }
+
+    /**
+     * @return the {@code c:} time of the TAG block in UNIX milliseconds, or -1 if there is none
+     */
+    public long getCommentBlockTimestampMillis() {
+        return tagBlock == null ? -1 : tagBlock.getTimestampMillis();
+    }
+
+    /**
+     * @return the {@code s:} source station of the TAG block, or null if there is none
+     */
+    public String getSourceStation() {
+        return tagBlock == null ? null : tagBlock.getSource();
+    }
+
+    /**
+     * @return the {@code t:} text of the TAG block, or null if there is none
+     */
+    public String getCommentBlockText() {
+        return tagBlock == null ? null : tagBlock.getCommentText();
+    }
+
+    /**
+     * @return number of the sentence within its TAG block group, starting at 1, or -1 if there is no group
+     */
+    public int getGroupSentence() {
+        return tagBlock == null ? -1 : tagBlock.getGroupSentence();
+    }
+
+    /**
+     * @return number of sentences in the TAG block group, or -1 if there is no group
+     */
+    public int getGroupSize() {
+        return tagBlock == null ? -1 : tagBlock.getGroupSize();
+    }
+
+    /**
+     * @return id of the TAG block group, or -1 if there is no group
+     */
+    public long getGroupId() {
+        return tagBlock == null ? -1 : tagBlock.getGroupId();
+    }
+
+    /**
+     * @return the {@code n:} line count of the TAG block, or -1 if there is none
+     */
+    public long getLineCount() {
+        return tagBlock == null ? -1 : tagBlock.getLineCount();
+    }
+
+    /**
+     * @return the current time in nanoseconds since the epoch, with the precision of the system clock
+     */
+    static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
     }
 }
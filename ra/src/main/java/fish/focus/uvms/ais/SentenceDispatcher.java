@@ -0,0 +1,94 @@
+package fish.focus.uvms.ais;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Drains the sentence buffer of a connection and delivers the sentences to a {@link SentenceListener}
+ * in micro-batches. A batch is delivered when it is full or when its oldest sentence has waited for the
+ * batch timeout, whichever comes first.
+ */
+class SentenceDispatcher implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(SentenceDispatcher.class.getName());
+
+    private static final long IDLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SentenceRingBuffer sentences;
+    private final SentenceListener listener;
+    private final int batchSize;
+    private final long batchTimeoutNanos;
+
+    private volatile boolean running = true;
+    private volatile Thread thread;
+
+    SentenceDispatcher(SentenceRingBuffer sentences, SentenceListener listener, int batchSize, long batchTimeoutMillis) {
+        this.sentences = sentences;
+        this.listener = listener;
+        this.batchSize = batchSize;
+        this.batchTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(batchTimeoutMillis);
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        LOG.finest("AIS dispatch thread started");
+        try {
+            while (running) {
+                List<Sentence> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                }
+            }
+        } finally {
+            thread = null;
+            LOG.finest("Stopping AIS dispatch thread");
+        }
+    }
+
+    private List<Sentence> nextBatch() {
+        List<Sentence> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        while (running && batch.size() < batchSize) {
+            sentences.drainTo(batch, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                sentences.awaitNotEmpty(IDLE_WAIT_NANOS);
+                continue;
+            }
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + batchTimeoutNanos;
+            }
+            if (batch.size() >= batchSize || now - deadline >= 0) {
+                break;
+            }
+            sentences.awaitNotEmpty(deadline - now);
+        }
+        return batch;
+    }
+
+    private void deliver(List<Sentence> batch) {
+        try {
+            listener.onSentences(batch);
+        } catch (RuntimeException e) {
+            LOG.warning("Sentence listener failed on a batch of " + batch.size() + " sentences: " + e);
+        }
+    }
+
+    SentenceListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Stops the dispatcher after the batch in progress, sentences not yet drained stay in the buffer.
+     */
+    void stop() {
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+}
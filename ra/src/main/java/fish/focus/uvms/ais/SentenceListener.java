@@ -0,0 +1,18 @@
+package fish.focus.uvms.ais;
+
+import java.util.List;
+
+/**
+ * Receives sentences pushed by the resource adapter as they are read from the feed.
+ */
+public interface SentenceListener {
+
+    /**
+     * Called from a resource adapter thread with a batch of sentences in the order they were read.
+     * Implementations should hand the batch over to their own threads and return quickly, the next
+     * batch is not delivered until this call returns.
+     *
+     * @param sentences non empty batch, owned by the listener
+     */
+    void onSentences(List<Sentence> sentences);
+}
@@ -0,0 +1,228 @@
+package fish.focus.uvms.ais;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed capacity, lock-free ring buffer between the reader thread (single producer) and the
+ * thread(s) draining sentences.
+ * <p>
+ * What happens when the buffer is full is decided by the {@link OverflowPolicy}. With
+ * {@link OverflowPolicy#BLOCK} the producer waits for free space, which stops the reader from
+ * reading the socket and lets TCP flow control push back on the feed. A blocked producer gives up,
+ * and drops the sentence, when its thread is interrupted.
+ */
+public class SentenceRingBuffer {
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the oldest buffered sentence to make room for the new one
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the new sentence
+         */
+        DROP_NEWEST,
+        /**
+         * Wait until there is room for the new sentence
+         */
+        BLOCK
+    }
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicReferenceArray<Sentence> slots;
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Index of the next slot to read. Moved by the consumer, and by the producer when dropping the oldest sentence.
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * Index of the next slot to write. Only moved by the producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    private final LongAdder dropped = new LongAdder();
+    /**
+     * Buffered sentences dropped to make room, also counted in {@link #dropped}
+     */
+    private final LongAdder evicted = new LongAdder();
+    private volatile int highWatermark;
+
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param capacity       requested capacity, rounded up to the next power of two
+     * @param overflowPolicy what to do with new sentences when the buffer is full
+     */
+    public SentenceRingBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds a sentence. Must only be called from one thread at a time.
+     *
+     * @return false if the sentence was dropped
+     */
+    public boolean offer(Sentence sentence) {
+        long t = tail.get();
+        while (t - head.get() >= capacity) {
+            if (!makeRoom(t)) {
+                dropped.increment();
+                return false;
+            }
+        }
+        slots.set(index(t), sentence);
+        tail.set(t + 1);
+
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+
+        int size = (int) (t + 1 - head.get());
+        if (size > highWatermark) {
+            highWatermark = size;
+        }
+        return true;
+    }
+
+    private boolean makeRoom(long t) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                long h = head.get();
+                if (t - h >= capacity && head.compareAndSet(h, h + 1)) {
+                    dropped.increment();
+                    evicted.increment();
+                }
+                return true;
+            case BLOCK:
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                return true;
+            case DROP_NEWEST:
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the oldest sentence, or null if the buffer is empty
+     */
+    public Sentence poll() {
+        while (true) {
+            long h = head.get();
+            if (h >= tail.get()) {
+                return null;
+            }
+            int index = index(h);
+            Sentence sentence = slots.get(index);
+            if (head.compareAndSet(h, h + 1)) {
+                // let go of the reference unless the producer has already reused the slot
+                slots.compareAndSet(index, sentence, null);
+                return sentence;
+            }
+        }
+    }
+
+    /**
+     * Moves at most {@code maxElements} sentences to the target collection, oldest first.
+     *
+     * @return the number of moved sentences
+     */
+    public int drainTo(Collection<? super Sentence> target, int maxElements) {
+        int drained = 0;
+        Sentence sentence;
+        while (drained < maxElements && (sentence = poll()) != null) {
+            target.add(sentence);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Waits until the buffer is not empty, the timeout has elapsed or the thread is interrupted.
+     * Only one thread at a time should wait.
+     *
+     * @param timeoutNanos maximum time to wait
+     */
+    public void awaitNotEmpty(long timeoutNanos) {
+        if (!isEmpty() || timeoutNanos <= 0) {
+            return;
+        }
+        waitingConsumer = Thread.currentThread();
+        try {
+            // re-check after publishing the waiter, an offer in between would otherwise be missed
+            if (isEmpty()) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    public int size() {
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(capacity, t - h));
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the largest number of buffered sentences seen so far
+     */
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * @return the number of sentences discarded because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of sentences added to the buffer so far
+     */
+    public long getEnqueuedCount() {
+        return tail.get();
+    }
+
+    /**
+     * @return the number of sentences taken out of the buffer by consumers so far
+     */
+    public long getDequeuedCount() {
+        return head.get() - evicted.sum();
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+}
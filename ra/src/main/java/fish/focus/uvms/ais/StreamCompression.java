@@ -0,0 +1,27 @@
+package fish.focus.uvms.ais;
+
+/**
+ * Compression of the data an upstream AIS feed sends after the login.
+ */
+public enum StreamCompression {
+    /**
+     * Plain NMEA lines
+     */
+    NONE,
+    /**
+     * zlib stream (RFC 1950), as written by {@link java.util.zip.DeflaterOutputStream}
+     */
+    DEFLATE,
+    /**
+     * gzip stream (RFC 1952), one or more members
+     */
+    GZIP;
+
+    /**
+     * @param value name of the compression, case insensitive, null or blank for none
+     * @return the compression
+     */
+    public static StreamCompression parse(String value) {
+        return value == null || value.isBlank() ? NONE : valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,184 @@
+package fish.focus.uvms.ais;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a deflate or gzip stream as it arrives and passes the plain bytes on to a {@link NmeaFramer}.
+ * <p>
+ * Input can be split anywhere, also inside a gzip header or trailer. The gzip header and trailer are
+ * skipped without checking the CRC, each NMEA line has its own checksum. A new zlib stream or gzip member
+ * may follow the end of the previous one.
+ * <p>
+ * Not thread safe, an instance is meant to be fed by a single reader thread.
+ */
+class StreamInflater {
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int GZIP_ID1 = 0x1f;
+    private static final int GZIP_ID2 = 0x8b;
+    private static final int GZIP_DEFLATE = 8;
+    private static final int GZIP_FIXED_HEADER_LENGTH = 10;
+    private static final int GZIP_TRAILER_LENGTH = 8;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    // gzip parts, in stream order
+    private static final int FIXED_HEADER = 0;
+    private static final int EXTRA_LENGTH = 1;
+    private static final int EXTRA = 2;
+    private static final int NAME = 3;
+    private static final int COMMENT = 4;
+    private static final int HEADER_CRC = 5;
+    private static final int BODY = 6;
+    private static final int TRAILER = 7;
+
+    private final StreamCompression compression;
+    private final Inflater inflater;
+    private final byte[] output = new byte[OUTPUT_BUFFER_SIZE];
+
+    private int part;
+    // bytes of the current gzip header or trailer part consumed so far
+    private int partBytes;
+    private int flags;
+    private int extraLength;
+
+    StreamInflater(StreamCompression compression) {
+        if (compression == StreamCompression.NONE) {
+            throw new IllegalArgumentException("Nothing to inflate for " + compression);
+        }
+        this.compression = compression;
+        boolean gzip = compression == StreamCompression.GZIP;
+        this.inflater = new Inflater(gzip);
+        this.part = gzip ? FIXED_HEADER : BODY;
+    }
+
+    /**
+     * Decompresses the bytes from {@code from} (inclusive) to {@code to} (exclusive).
+     *
+     * @throws IOException if the data is not a valid stream
+     */
+    void feed(byte[] bytes, int from, int to, NmeaFramer framer) throws IOException {
+        int i = from;
+        while (i < to) {
+            if (part == BODY) {
+                i = inflate(bytes, i, to, framer);
+            } else {
+                gzipByte(bytes[i++] & 0xff);
+            }
+        }
+    }
+
+    void end() {
+        inflater.end();
+    }
+
+    private int inflate(byte[] bytes, int from, int to, NmeaFramer framer) throws IOException {
+        inflater.setInput(bytes, from, to - from);
+        try {
+            while (true) {
+                int inflated = inflater.inflate(output);
+                if (inflated > 0) {
+                    framer.feed(output, 0, inflated);
+                }
+                if (inflater.finished()) {
+                    int next = to - inflater.getRemaining();
+                    inflater.reset();
+                    if (compression == StreamCompression.GZIP) {
+                        startPart(TRAILER);
+                    }
+                    return next;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException("Preset dictionaries are not supported in the " + compression + " stream");
+                }
+                if (inflated == 0 && inflater.needsInput()) {
+                    return to;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt " + compression + " stream: " + e.getMessage(), e);
+        }
+    }
+
+    private void gzipByte(int b) throws IOException {
+        switch (part) {
+            case FIXED_HEADER:
+                if ((partBytes == 0 && b != GZIP_ID1) || (partBytes == 1 && b != GZIP_ID2) || (partBytes == 2 && b != GZIP_DEFLATE)) {
+                    throw new IOException("Not a gzip stream");
+                }
+                if (partBytes == 3) {
+                    flags = b;
+                    extraLength = 0;
+                }
+                if (++partBytes == GZIP_FIXED_HEADER_LENGTH) {
+                    nextHeaderPart();
+                }
+                break;
+            case EXTRA_LENGTH:
+                extraLength |= b << (8 * partBytes);
+                if (++partBytes == 2) {
+                    nextHeaderPart();
+                }
+                break;
+            case EXTRA:
+                if (++partBytes == extraLength) {
+                    nextHeaderPart();
+                }
+                break;
+            case NAME:
+            case COMMENT:
+                if (b == 0) {
+                    nextHeaderPart();
+                }
+                break;
+            case HEADER_CRC:
+                if (++partBytes == 2) {
+                    nextHeaderPart();
+                }
+                break;
+            case TRAILER:
+                if (++partBytes == GZIP_TRAILER_LENGTH) {
+                    startPart(FIXED_HEADER);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected gzip part " + part);
+        }
+    }
+
+    private void nextHeaderPart() {
+        int next = part + 1;
+        while (next < BODY && !isPresent(next)) {
+            next++;
+        }
+        startPart(next);
+    }
+
+    private boolean isPresent(int headerPart) {
+        switch (headerPart) {
+            case EXTRA_LENGTH:
+                return (flags & FEXTRA) != 0;
+            case EXTRA:
+                return (flags & FEXTRA) != 0 && extraLength > 0;
+            case NAME:
+                return (flags & FNAME) != 0;
+            case COMMENT:
+                return (flags & FCOMMENT) != 0;
+            case HEADER_CRC:
+                return (flags & FHCRC) != 0;
+            default:
+                return false;
+        }
+    }
+
+    private void startPart(int nextPart) {
+        part = nextPart;
+        partBytes = 0;
+    }
+}
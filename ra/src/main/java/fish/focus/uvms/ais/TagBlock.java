@@ -0,0 +1,256 @@
+package fish.focus.uvms.ais;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A parsed NMEA 4 TAG block, the parameters between the backslashes in front of a sentence.
+ * <p>
+ * A TAG block is parsed once, in a single pass without boxing, by the {@link NmeaFramer} that frames the line, or
+ * by the {@link FileReplay} that paces it, and is handed on to the {@link Sentence}. The checksum result and the
+ * {@code c:}, {@code s:}, {@code g:}, {@code n:} and {@code t:} parameters are kept in fields.
+ */
+final class TagBlock {
+
+    // TAG block timestamps from this value on are taken as milliseconds, in seconds it is in the year 5138
+    private static final long MILLIS_TIMESTAMP_THRESHOLD = 100_000_000_000L;
+
+    private final String text;
+    private final boolean validChecksum;
+    /**
+     * {@code c:} UNIX time in milliseconds, -1 if not present
+     */
+    private final long timestampMillis;
+    /**
+     * Offsets in the text of the {@code s:} source station and {@code t:} text values, -1 if not present
+     */
+    private final int sourceFrom;
+    private final int sourceTo;
+    private final int textFrom;
+    private final int textTo;
+    /**
+     * {@code g:} or IEC 61162-450 group of a multi-sentence message, -1 if not present
+     */
+    private final int groupSentence;
+    private final int groupSize;
+    private final long groupId;
+    /**
+     * {@code n:} line count, -1 if not present
+     */
+    private final long lineCount;
+
+    private TagBlock(byte[] bytes, int from, int to) {
+        this.text = new String(bytes, from, to - from, StandardCharsets.ISO_8859_1);
+
+        boolean valid = false;
+        long timestamp = -1;
+        int source = -1;
+        int sourceEnd = -1;
+        int textStart = -1;
+        int textEnd = -1;
+        int gSentence = -1;
+        int gSize = -1;
+        long gId = -1;
+        long count = -1;
+        int checksum = 0;
+        int paramStart = from;
+        int colon = -1;
+        int i = from;
+        for (; i <= to; i++) {
+            byte c = i < to ? bytes[i] : (byte) '*';
+            if (c == ',' || c == '*') {
+                // end of a parameter, the name is the part before the colon
+                if (colon == paramStart + 1) {
+                    byte name = bytes[paramStart];
+                    int valueFrom = colon + 1;
+                    if (name == 'c') {
+                        timestamp = parseLong(bytes, valueFrom, i);
+                        if (timestamp >= 0 && timestamp < MILLIS_TIMESTAMP_THRESHOLD) {
+                            // UNIX time in seconds, some providers send milliseconds
+                            timestamp *= 1000;
+                        }
+                    } else if (name == 's') {
+                        source = valueFrom - from;
+                        sourceEnd = i - from;
+                    } else if (name == 't') {
+                        textStart = valueFrom - from;
+                        textEnd = i - from;
+                    } else if (name == 'n') {
+                        count = parseLong(bytes, valueFrom, i);
+                    } else if (name == 'g') {
+                        // NMEA 4 group, g:<sentence>-<total>-<id>
+                        int firstDash = indexOf(bytes, (byte) '-', valueFrom, i);
+                        int secondDash = firstDash < 0 ? -1 : indexOf(bytes, (byte) '-', firstDash + 1, i);
+                        if (secondDash > 0) {
+                            gSentence = (int) parseLong(bytes, valueFrom, firstDash);
+                            gSize = (int) parseLong(bytes, firstDash + 1, secondDash);
+                            gId = parseLong(bytes, secondDash + 1, i);
+                        }
+                    }
+                } else if (colon > paramStart) {
+                    // IEC 61162-450 group, <sentence>G<total>:<id>
+                    int g = indexOf(bytes, (byte) 'G', paramStart, colon);
+                    if (g > paramStart) {
+                        gSentence = (int) parseLong(bytes, paramStart, g);
+                        gSize = (int) parseLong(bytes, g + 1, colon);
+                        gId = parseLong(bytes, colon + 1, i);
+                    }
+                }
+                if (c == '*') {
+                    break;
+                }
+                paramStart = i + 1;
+                colon = -1;
+            } else if (c == ':' && colon < 0) {
+                colon = i;
+            }
+            checksum ^= c;
+        }
+        if (i < to && to - i == 3) {
+            int expected = (hexValue(bytes[i + 1]) << 4) | hexValue(bytes[i + 2]);
+            valid = expected == (checksum & 0xff);
+        }
+        this.validChecksum = valid;
+        this.timestampMillis = timestamp;
+        this.sourceFrom = source;
+        this.sourceTo = sourceEnd;
+        this.textFrom = textStart;
+        this.textTo = textEnd;
+        this.groupSentence = gSentence;
+        this.groupSize = gSize;
+        this.groupId = gId;
+        this.lineCount = count;
+    }
+
+    /**
+     * @param bytes array holding the TAG block
+     * @param from  start of the TAG block, after the leading backslash
+     * @param to    end of the TAG block, the index of the closing backslash
+     * @return the parsed TAG block
+     */
+    static TagBlock parse(byte[] bytes, int from, int to) {
+        return new TagBlock(bytes, from, to);
+    }
+
+    /**
+     * @param text the TAG block without the surrounding backslashes, or null
+     * @return the parsed TAG block, or null if the text is null
+     */
+    static TagBlock parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        return new TagBlock(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Finds and parses the TAG block at the start of a raw line.
+     *
+     * @param bytes line without the line end
+     * @param from  start of the line
+     * @param to    end of the line, exclusive
+     * @return the parsed TAG block, or null if the line has none
+     */
+    static TagBlock find(byte[] bytes, int from, int to) {
+        if (from == to || bytes[from] != '\\') {
+            return null;
+        }
+        int end = indexOf(bytes, (byte) '\\', from + 1, to);
+        return end < 0 ? null : new TagBlock(bytes, from + 1, end);
+    }
+
+    /**
+     * @return the TAG block without the surrounding backslashes
+     */
+    String getText() {
+        return text;
+    }
+
+    boolean hasValidChecksum() {
+        return validChecksum;
+    }
+
+    /**
+     * @return the {@code c:} time in UNIX milliseconds, or -1 if there is none
+     */
+    long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * @return the {@code s:} source station, or null if there is none
+     */
+    String getSource() {
+        return sourceFrom < 0 ? null : text.substring(sourceFrom, sourceTo);
+    }
+
+    /**
+     * @return the {@code t:} text, or null if there is none
+     */
+    String getCommentText() {
+        return textFrom < 0 ? null : text.substring(textFrom, textTo);
+    }
+
+    int getGroupSentence() {
+        return groupSentence;
+    }
+
+    int getGroupSize() {
+        return groupSize;
+    }
+
+    /**
+     * @return id of the multi-sentence group, -1 if there is none
+     */
+    long getGroupId() {
+        return groupId;
+    }
+
+    long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return value of a hex digit, or a value that makes a combined two digit value negative
+     */
+    static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        // makes the combined value negative
+        return -0x100;
+    }
+
+    /**
+     * @return the number, or -1 if the range is empty, too long or not all digits
+     */
+    private static long parseLong(byte[] bytes, int from, int to) {
+        if (from >= to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,59 @@
+package fish.focus.uvms.ais;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads the datagrams the kernel dropped for a UDP socket from {@code /proc/net/udp} and {@code /proc/net/udp6}.
+ * Java has no socket option for the drop count, the files are only there on Linux.
+ */
+class UdpSocketStats {
+
+    private static final Path[] SOCKET_TABLES = {Paths.get("/proc/net/udp"), Paths.get("/proc/net/udp6")};
+
+    // columns of a socket line: sl local_address rem_address st ... drops
+    private static final int LOCAL_ADDRESS_COLUMN = 1;
+
+    private UdpSocketStats() {
+    }
+
+    /**
+     * @param port local port of the socket
+     * @return the drops of the sockets bound to the port, or -1 if they cannot be read
+     */
+    static long getDrops(int port) {
+        long drops = -1;
+        for (Path table : SOCKET_TABLES) {
+            if (!Files.isReadable(table)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(table, StandardCharsets.US_ASCII)) {
+                long tableDrops = getDrops(reader, port);
+                drops = Math.max(drops, 0) + tableDrops;
+            } catch (IOException | RuntimeException e) {
+                // the metric is best effort
+            }
+        }
+        return drops;
+    }
+
+    static long getDrops(BufferedReader socketTable, int port) throws IOException {
+        long drops = 0;
+        // header line
+        socketTable.readLine();
+        String line;
+        while ((line = socketTable.readLine()) != null) {
+            String[] columns = line.trim().split("\\s+");
+            String localAddress = columns[LOCAL_ADDRESS_COLUMN];
+            int localPort = Integer.parseInt(localAddress.substring(localAddress.indexOf(':') + 1), 16);
+            if (localPort == port) {
+                drops += Long.parseLong(columns[columns.length - 1]);
+            }
+        }
+        return drops;
+    }
+}
@@ -0,0 +1,38 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.ManagedConnection;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AISManagedConnectionFactoryTest {
+
+    private final AISManagedConnectionFactory mcf = new AISManagedConnectionFactory();
+
+    @Test
+    public void createManagedConnectionForFeedTest() throws ResourceException {
+        AISManagedConnection satellite = (AISManagedConnection) mcf.createManagedConnection(null, new AISConnectionRequestInfo("satellite"));
+        AISManagedConnection defaultFeed = (AISManagedConnection) mcf.createManagedConnection(null, null);
+
+        assertThat(satellite.getFeed(), is("satellite"));
+        assertThat(defaultFeed.getFeed(), is(AISConnectionRequestInfo.DEFAULT_FEED));
+    }
+
+    @Test
+    public void matchManagedConnectionsByFeedTest() throws ResourceException {
+        ManagedConnection terrestrial = mcf.createManagedConnection(null, new AISConnectionRequestInfo("terrestrial"));
+        ManagedConnection satellite = mcf.createManagedConnection(null, new AISConnectionRequestInfo("satellite"));
+        Set<ManagedConnection> connections = Set.of(terrestrial, satellite);
+
+        assertThat(mcf.matchManagedConnections(connections, null, new AISConnectionRequestInfo("satellite")), sameInstance(satellite));
+        assertThat(mcf.matchManagedConnections(connections, null, new AISConnectionRequestInfo("terrestrial")), sameInstance(terrestrial));
+        assertThat(mcf.matchManagedConnections(connections, null, new AISConnectionRequestInfo("other")), nullValue());
+        assertThat(mcf.matchManagedConnections(connections, null, null), nullValue());
+    }
+}
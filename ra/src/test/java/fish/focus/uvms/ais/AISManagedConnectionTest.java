@@ -3,10 +3,23 @@ package fish.focus.uvms.ais;
 import org.junit.Test;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -22,7 +35,7 @@ public class AISManagedConnectionTest {
         AISManagedConnection aisManagedConnection = new AISManagedConnection(null);
         aisManagedConnection.getSentences();
         BufferedReader bufferMock = mock(BufferedReader.class);
-        when(bufferMock.readLine()).thenReturn("!ABVDM,1,1,0,B," + payload + ",0*7D", null);
+        when(bufferMock.readLine()).thenReturn(nmea("!ABVDM,1,1,0,B," + payload + ",0"), (String) null);
         aisManagedConnection.read(bufferMock);
         List<Sentence> sentences = aisManagedConnection.getSentences();
         assertThat(sentences.size(), is(1));
@@ -37,7 +50,7 @@ public class AISManagedConnectionTest {
         AISManagedConnection aisManagedConnection = new AISManagedConnection(null);
         aisManagedConnection.getSentences();
         BufferedReader bufferMock = mock(BufferedReader.class);
-        when(bufferMock.readLine()).thenReturn("\\1G1:32,s:516,c:1652227200*5B\\!ABVDM,1,1,0,B," + payload + ",0*7D", null);
+        when(bufferMock.readLine()).thenReturn("\\1G1:32,s:516,c:1652227200*5B\\" + nmea("!ABVDM,1,1,0,B," + payload + ",0"), (String) null);
         aisManagedConnection.read(bufferMock);
         List<Sentence> sentences = aisManagedConnection.getSentences();
         assertThat(sentences.size(), is(1));
@@ -53,8 +66,8 @@ public class AISManagedConnectionTest {
         AISManagedConnection aisManagedConnection = new AISManagedConnection(null);
         aisManagedConnection.getSentences();
         BufferedReader bufferMock = mock(BufferedReader.class);
-        when(bufferMock.readLine()).thenReturn("\\1G1:32,s:516,c:1652227200*5B\\!ABVDM,1,1,0,B," + payload + ",0*7D",
-                "\\1G1:441,s:1184,c:1652227202*57\\!ABVDM,1,1,0,B," + payload2 + ",0*7D", null);
+        when(bufferMock.readLine()).thenReturn("\\1G1:32,s:516,c:1652227200*5B\\" + nmea("!ABVDM,1,1,0,B," + payload + ",0"),
+                "\\1G1:441,s:1184,c:1652227202*57\\" + nmea("!ABVDM,1,1,0,B," + payload2 + ",0"), null);
         aisManagedConnection.read(bufferMock);
         List<Sentence> sentences = aisManagedConnection.getSentences();
         assertThat(sentences.size(), is(2));
@@ -73,8 +86,8 @@ public class AISManagedConnectionTest {
         AISManagedConnection aisManagedConnection = new AISManagedConnection(null);
         aisManagedConnection.getSentences();
         BufferedReader bufferMock = mock(BufferedReader.class);
-        when(bufferMock.readLine()).thenReturn("\\1G2:310,s:452,c:1652227201*6B\\!ABVDM,2,1,1,A," + payload + ",0*1A",
-                "\\2G2:310*4F\\!ABVDM,2,2,1,A," + payload2 + ",2*26", null);
+        when(bufferMock.readLine()).thenReturn("\\1G2:310,s:452,c:1652227201*6B\\" + nmea("!ABVDM,2,1,1,A," + payload + ",0"),
+                "\\2G2:310*4F\\" + nmea("!ABVDM,2,2,1,A," + payload2 + ",2"), null);
         aisManagedConnection.read(bufferMock);
         List<Sentence> sentences = aisManagedConnection.getSentences();
         assertThat(sentences.size(), is(1));
@@ -91,9 +104,9 @@ public class AISManagedConnectionTest {
         AISManagedConnection aisManagedConnection = new AISManagedConnection(null);
         aisManagedConnection.getSentences();
         BufferedReader bufferMock = mock(BufferedReader.class);
-        when(bufferMock.readLine()).thenReturn("\\1G2:310,s:452,c:1652227201*6B\\!ABVDM,2,1,1,A," + payload + ",0*1A",
-                "\\2G2:310*4F\\!ABVDM,2,2,1,A," + payload2 + ",2*26",
-                "\\1G1:32,s:516,c:1652227200*5B\\!ABVDM,1,1,0,B," + payload3 + ",0*7D", null);
+        when(bufferMock.readLine()).thenReturn("\\1G2:310,s:452,c:1652227201*6B\\" + nmea("!ABVDM,2,1,1,A," + payload + ",0"),
+                "\\2G2:310*4F\\" + nmea("!ABVDM,2,2,1,A," + payload2 + ",2"),
+                "\\1G1:32,s:516,c:1652227200*5B\\" + nmea("!ABVDM,1,1,0,B," + payload3 + ",0"), null);
         aisManagedConnection.read(bufferMock);
         List<Sentence> sentences = aisManagedConnection.getSentences();
         assertThat(sentences.size(), is(2));
@@ -104,4 +117,345 @@ public class AISManagedConnectionTest {
         assertThat(sentences.get(1).getCommentBlockLesTimestamp(), is(Instant.ofEpochSecond(1652227200)));
         assertThat(sentences.get(1).getSentence(), is(payload3));
     }
+
+    @Test
+    public void duplicateFromOtherFeedIsDroppedTest() throws IOException {
+        String payload = UUID.randomUUID().toString();
+        AISManagedConnectionFactory mcf = new AISManagedConnectionFactory();
+        AISManagedConnection terrestrial = new AISManagedConnection(mcf, "terrestrial");
+        AISManagedConnection satellite = new AISManagedConnection(mcf, "satellite");
+        BufferedReader terrestrialInput = mock(BufferedReader.class);
+        when(terrestrialInput.readLine()).thenReturn("\\1G1:32,s:516,c:1652227200*5B\\" + nmea("!ABVDM,1,1,0,B," + payload + ",0"), (String) null);
+        BufferedReader satelliteInput = mock(BufferedReader.class);
+        when(satelliteInput.readLine()).thenReturn("\\s:sat1,c:1652227201*00\\" + nmea("!AIVDM,1,1,,A," + payload + ",0"), (String) null);
+
+        terrestrial.read(terrestrialInput);
+        satellite.read(satelliteInput);
+
+        assertThat(terrestrial.getSentences().size(), is(1));
+        assertThat(satellite.getSentences().size(), is(0));
+        assertThat(terrestrial.getMetrics().getDuplicateSentences(), is(0L));
+        assertThat(satellite.getMetrics().getDuplicateSentences(), is(1L));
+    }
+
+    @Test
+    public void reopenReplacesReaderTest() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // nothing listens on the port afterwards, the readers end up waiting to retry
+            port = serverSocket.getLocalPort();
+        }
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(null);
+        ReaderExecutor readers = aisManagedConnection.getReaderExecutor();
+
+        aisManagedConnection.open("localhost", port, "user", "password");
+        aisManagedConnection.open("localhost", port, "user", "password");
+        waitFor(() -> readers.getLiveReaders() == 1);
+        assertThat(aisManagedConnection.isOpen(), is(true));
+
+        aisManagedConnection.closeSocket();
+        waitFor(() -> readers.getLiveReaders() == 0 && !aisManagedConnection.isOpen());
+        assertThat(readers.getLiveReaders(), is(0));
+        assertThat(aisManagedConnection.isOpen(), is(false));
+    }
+
+    @Test
+    public void idleConnectionIsReconnectedTest() throws Exception {
+        AISManagedConnectionFactory mcf = new AISManagedConnectionFactory();
+        mcf.setIdleReadTimeout(100);
+        mcf.setReconnectDelay(10);
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(mcf, "idle");
+        AtomicInteger accepted = new AtomicInteger();
+        List<Socket> clients = new CopyOnWriteArrayList<>();
+
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // accepts connections but never sends anything
+            Thread server = new Thread(() -> {
+                try {
+                    while (true) {
+                        clients.add(serverSocket.accept());
+                        accepted.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            });
+            server.start();
+
+            aisManagedConnection.open("localhost", serverSocket.getLocalPort(), "user", "password");
+            waitFor(() -> accepted.get() >= 2);
+            aisManagedConnection.closeSocket();
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+
+        assertThat(accepted.get() >= 2, is(true));
+        assertThat(aisManagedConnection.getMetrics().getWatchdogReconnects() >= 1, is(true));
+        assertThat(aisManagedConnection.getMetrics().getLastReadAgeMillis(), is(-1L));
+    }
+
+    @Test
+    public void queuedSentencesSurviveReconnectTest() throws Exception {
+        AISManagedConnectionFactory mcf = new AISManagedConnectionFactory();
+        mcf.setReconnectDelay(10);
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(mcf, "standin");
+        String fragment1 = UUID.randomUUID().toString();
+        String fragment2 = UUID.randomUUID().toString();
+        StringBuilder firstConnection = new StringBuilder();
+        StringBuilder secondConnection = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            firstConnection.append(nmea("!AIVDM,1,1,,A,first" + i + ",0")).append("\r\n");
+            secondConnection.append(nmea("!AIVDM,1,1,,A,second" + i + ",0")).append("\r\n");
+        }
+        // the connection is dropped in the middle of a multi-sentence message and of a line
+        firstConnection.append(nmea("!AIVDM,2,1,3,B," + fragment1 + ",0")).append("\r\n").append("!AIVDM,1,1,,A,partial");
+        secondConnection.insert(0, nmea("!AIVDM,2,2,3,B," + fragment2 + ",2") + "\r\n");
+
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread server = new Thread(() -> {
+                for (StringBuilder output : List.of(firstConnection, secondConnection)) {
+                    try (Socket client = serverSocket.accept()) {
+                        client.getOutputStream().write(output.toString().getBytes(StandardCharsets.US_ASCII));
+                        client.getOutputStream().flush();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            server.start();
+
+            aisManagedConnection.open("localhost", serverSocket.getLocalPort(), "user", "password");
+            waitFor(() -> aisManagedConnection.getMetrics().getFramedSentences() == 201);
+            aisManagedConnection.closeSocket();
+            server.join(2000);
+        }
+
+        List<Sentence> sentences = aisManagedConnection.getSentences();
+        AISConnectionMetrics metrics = aisManagedConnection.getMetrics();
+        assertThat(sentences.size(), is(201));
+        assertThat(sentences.get(0).getSentence(), is("first0"));
+        assertThat(sentences.get(100).getSentence(), is(fragment1 + fragment2));
+        assertThat(sentences.get(200).getSentence(), is("second99"));
+        assertThat(metrics.getDeliveredSentences(), is(201L));
+        assertThat(metrics.getUnaccountedSentences(), is(0L));
+    }
+
+    @Test
+    public void makeBeforeBreakReconnectDropsOverlapTest() throws Exception {
+        AISManagedConnectionFactory mcf = new AISManagedConnectionFactory();
+        mcf.setMakeBeforeBreakReconnect(true);
+        mcf.setDuplicateWindow(0);
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(mcf, "overlap");
+        ReaderExecutor readers = aisManagedConnection.getReaderExecutor();
+        List<Socket> clients = new CopyOnWriteArrayList<>();
+
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // both sessions stay open, the second one starts with the last lines of the first
+            Thread server = new Thread(() -> {
+                try {
+                    for (int from : new int[]{0, 40}) {
+                        Socket client = serverSocket.accept();
+                        clients.add(client);
+                        StringBuilder output = new StringBuilder();
+                        for (int i = from; i < from + 50; i++) {
+                            output.append(nmea("!AIVDM,1,1,,A,line" + i + ",0")).append("\r\n");
+                        }
+                        client.getOutputStream().write(output.toString().getBytes(StandardCharsets.US_ASCII));
+                        client.getOutputStream().flush();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            });
+            server.start();
+
+            aisManagedConnection.open("localhost", serverSocket.getLocalPort(), "user", "password");
+            waitFor(() -> aisManagedConnection.getMetrics().getFramedSentences() == 50);
+            assertThat(aisManagedConnection.reconnect(), is(true));
+            waitFor(() -> aisManagedConnection.getMetrics().getFramedSentences() == 100);
+            waitFor(() -> readers.getLiveReaders() == 1);
+
+            assertThat(aisManagedConnection.isOpen(), is(true));
+            assertThat(readers.getLiveReaders(), is(1));
+            assertThat(clients.get(0).getInputStream().read(new byte[64]) > 0, is(true)); // login
+            aisManagedConnection.closeSocket();
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+
+        List<Sentence> sentences = aisManagedConnection.getSentences();
+        assertThat(sentences.size(), is(90));
+        assertThat(sentences.get(49).getSentence(), is("line49"));
+        assertThat(sentences.get(50).getSentence(), is("line50"));
+        assertThat(sentences.get(89).getSentence(), is("line89"));
+        assertThat(aisManagedConnection.getMetrics().getDuplicateSentences(), is(10L));
+        assertThat(aisManagedConnection.getMetrics().getUnaccountedSentences(), is(0L));
+    }
+
+    @Test
+    public void reconnectWithoutMakeBeforeBreakDoesNothingTest() {
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(new AISManagedConnectionFactory());
+        assertThat(aisManagedConnection.reconnect(), is(false));
+    }
+
+    @Test
+    public void gzipCompressedFeedTest() throws Exception {
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(new AISManagedConnectionFactory(), "compressed");
+        byte[] login = new byte["\u0001user\u0000password\u0000".length()];
+
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread server = new Thread(() -> {
+                try (Socket client = serverSocket.accept()) {
+                    // the login is sent uncompressed
+                    new DataInputStream(client.getInputStream()).readFully(login);
+                    GZIPOutputStream out = new GZIPOutputStream(client.getOutputStream(), true);
+                    for (int i = 0; i < 100; i++) {
+                        out.write((nmea("!AIVDM,1,1,,A,line" + i + ",0") + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                        if (i % 10 == 0) {
+                            out.flush();
+                        }
+                    }
+                    out.finish();
+                    out.flush();
+                    Thread.sleep(2000);
+                } catch (IOException | InterruptedException e) {
+                    // connection closed by the test
+                }
+            });
+            server.start();
+
+            aisManagedConnection.open("localhost", serverSocket.getLocalPort(), "user", "password", StreamCompression.GZIP);
+            waitFor(() -> aisManagedConnection.getMetrics().getFramedSentences() == 100);
+            aisManagedConnection.closeSocket();
+        }
+
+        assertThat(new String(login, StandardCharsets.US_ASCII), is("\u0001user\u0000password\u0000"));
+        List<Sentence> sentences = aisManagedConnection.getSentences();
+        assertThat(sentences.size(), is(100));
+        assertThat(sentences.get(0).getSentence(), is("line0"));
+        assertThat(sentences.get(99).getSentence(), is("line99"));
+    }
+
+    @Test
+    public void datagramFeedTest() throws Exception {
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(new AISManagedConnectionFactory(), "udp");
+        String fragment1 = UUID.randomUUID().toString();
+        String fragment2 = UUID.randomUUID().toString();
+        int port;
+        try (DatagramSocket free = new DatagramSocket(0)) {
+            port = free.getLocalPort();
+        }
+
+        aisManagedConnection.listen("127.0.0.1", port);
+        try (DatagramSocket receiver = new DatagramSocket()) {
+            InetSocketAddress target = new InetSocketAddress("127.0.0.1", port);
+            // several lines in one datagram, the last without line end, and a message split over two datagrams
+            String[] datagrams = {
+                    nmea("!AIVDM,1,1,,A,line0,0") + "\r\n" + nmea("!AIVDM,1,1,,A,line1,0"),
+                    "\\g:1-2-7,s:rx1*00\\" + nmea("!AIVDM,2,1,7,B," + fragment1 + ",0") + "\r\n",
+                    "\\g:2-2-7*6A\\" + nmea("!AIVDM,2,2,7,B," + fragment2 + ",2") + "\r\n"};
+            // the reader may not be bound yet when the first datagrams are sent
+            for (int attempt = 0; attempt < 20 && aisManagedConnection.getMetrics().getReceivedDatagrams() == 0; attempt++) {
+                byte[] bytes = datagrams[0].getBytes(StandardCharsets.US_ASCII);
+                receiver.send(new DatagramPacket(bytes, bytes.length, target));
+                Thread.sleep(50);
+            }
+            for (int i = 1; i < datagrams.length; i++) {
+                byte[] bytes = datagrams[i].getBytes(StandardCharsets.US_ASCII);
+                receiver.send(new DatagramPacket(bytes, bytes.length, target));
+            }
+            waitFor(() -> aisManagedConnection.getMetrics().getFramedSentences() >= 3);
+        } finally {
+            aisManagedConnection.closeSocket();
+        }
+
+        List<Sentence> sentences = aisManagedConnection.getSentences();
+        AISConnectionMetrics metrics = aisManagedConnection.getMetrics();
+        assertThat(sentences.size(), is(3));
+        assertThat(sentences.get(0).getSentence(), is("line0"));
+        assertThat(sentences.get(1).getSentence(), is("line1"));
+        assertThat(sentences.get(2).getSentence(), is(fragment1 + fragment2));
+        assertThat(metrics.getReceivedDatagrams(), is(3L));
+        assertThat(metrics.getReceivedDatagramBytes() > 0, is(true));
+        assertThat(aisManagedConnection.reconnect(), is(false));
+    }
+
+    @Test
+    public void idleDatagramFeedKeepsSocketBoundTest() throws Exception {
+        AISManagedConnectionFactory mcf = new AISManagedConnectionFactory();
+        mcf.setIdleReadTimeout(50);
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(mcf, "udp");
+        int port;
+        try (DatagramSocket free = new DatagramSocket(0)) {
+            port = free.getLocalPort();
+        }
+
+        aisManagedConnection.listen("127.0.0.1", port);
+        try (DatagramSocket receiver = new DatagramSocket()) {
+            waitFor(() -> aisManagedConnection.getMetrics().getIdleTimeouts() >= 2);
+            byte[] bytes = nmea("!AIVDM,1,1,,A,line0,0").getBytes(StandardCharsets.US_ASCII);
+            receiver.send(new DatagramPacket(bytes, bytes.length, new InetSocketAddress("127.0.0.1", port)));
+            waitFor(() -> aisManagedConnection.getMetrics().getQueueSize() == 1);
+        } finally {
+            aisManagedConnection.closeSocket();
+        }
+
+        AISConnectionMetrics metrics = aisManagedConnection.getMetrics();
+        assertThat(metrics.getConnects(), is(1L));
+        assertThat(metrics.getWatchdogReconnects(), is(0L));
+        assertThat(aisManagedConnection.getSentences().get(0).getSentence(), is("line0"));
+    }
+
+    @Test
+    public void reconnectDelayBackOffTest() {
+        for (int attempt = 0; attempt < 40; attempt++) {
+            long max = Math.min(60_000, 1000L << Math.min(attempt, 20));
+            long delay = AISManagedConnection.reconnectDelay(1000, 60_000, attempt);
+            assertThat(delay >= max / 2 && delay <= max, is(true));
+        }
+    }
+
+    @Test
+    public void replayedFileStaysOpenTest() throws Exception {
+        AISManagedConnection aisManagedConnection = new AISManagedConnection(new AISManagedConnectionFactory(), "replay");
+        Path file = Files.createTempFile("replay", ".nmea");
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                lines.append(nmea("!AIVDM,1,1,,A,line" + i + ",0")).append("\r\n");
+            }
+            Files.write(file, lines.toString().getBytes(StandardCharsets.US_ASCII));
+
+            aisManagedConnection.replay(file.toString(), 0);
+            waitFor(() -> aisManagedConnection.getMetrics().getReplayedLines() == 100);
+            assertThat(aisManagedConnection.isOpen(), is(true));
+            assertThat(aisManagedConnection.reconnect(), is(false));
+            aisManagedConnection.closeSocket();
+        } finally {
+            Files.delete(file);
+        }
+
+        List<Sentence> sentences = aisManagedConnection.getSentences();
+        assertThat(sentences.size(), is(100));
+        assertThat(sentences.get(99).getSentence(), is("line99"));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static String nmea(String sentence) {
+        int checksum = 0;
+        for (int i = 1; i < sentence.length(); i++) {
+            checksum ^= sentence.charAt(i);
+        }
+        return String.format("%s*%02X", sentence, checksum);
+    }
 }
@@ -0,0 +1,94 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CaptureJournalTest {
+
+    private static final long START = 1652227200000L;
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FeedCounters counters = new FeedCounters();
+
+    @Test
+    public void extractExactTimeRangeOverSegmentsTest() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("feed");
+        CaptureJournal journal = new CaptureJournal(directory, SEGMENT_SIZE, Long.MAX_VALUE, 64 * 1024, counters);
+        for (int i = 0; i < 1000; i++) {
+            capture(journal, "line " + i, START + 100L * i);
+        }
+        journal.drain();
+        journal.run();
+
+        assertThat(counters.getCapturedLines(), is(1000L));
+        assertThat(CaptureJournal.segmentStarts(directory).size() > 1, is(true));
+        assertThat(extract(directory, START + 12345, START + 12800), is("line 124\nline 125\nline 126\nline 127\n"));
+        assertThat(extract(directory, START - 1000, START + 100), is("line 0\n"));
+        assertThat(extract(directory, START + 99_900, Long.MAX_VALUE), is("line 999\n"));
+    }
+
+    @Test
+    public void receiveTimeNeverGoesBackwardsTest() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        CaptureJournal journal = new CaptureJournal(directory, SEGMENT_SIZE, Long.MAX_VALUE, 64 * 1024, counters);
+        capture(journal, "first", START + 1000);
+        capture(journal, "second", START);
+        journal.drain();
+        journal.run();
+
+        assertThat(extract(directory, START + 1000, START + 1001), is("first\nsecond\n"));
+    }
+
+    @Test
+    public void fullBufferDropsLinesTest() throws IOException {
+        CaptureJournal journal = new CaptureJournal(folder.getRoot().toPath(), SEGMENT_SIZE, Long.MAX_VALUE, 2048, counters);
+        byte[] line = new byte[100];
+        for (int i = 0; i < 30; i++) {
+            journal.line(line, line.length, START);
+        }
+        journal.drain();
+
+        // 2048 bytes hold 18 records of 112 bytes
+        assertThat(counters.getCapturedLines(), is(18L));
+        assertThat(counters.getCaptureDroppedLines(), is(12L));
+    }
+
+    @Test
+    public void expiredSegmentsAreDeletedTest() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        long retention = 30 * 60_000L;
+        CaptureJournal journal = new CaptureJournal(directory, SEGMENT_SIZE, retention, 64 * 1024, counters);
+        byte[] line = new byte[1000];
+        for (int i = 0; i < 12; i++) {
+            journal.line(line, line.length, START + i * 10 * 60_000L);
+            journal.drain();
+        }
+        journal.run();
+
+        // four lines per segment, a new segment every 40 minutes, the first has ended more than 30 minutes before the third starts
+        assertThat(CaptureJournal.segmentStarts(directory).get(0), is(START + 40 * 60_000L));
+    }
+
+    private static void capture(CaptureJournal journal, String line, long timestamp) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        journal.line(bytes, bytes.length, timestamp);
+    }
+
+    private static String extract(Path directory, long from, long to) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CaptureJournal.extract(directory, from, to, out, false);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+}
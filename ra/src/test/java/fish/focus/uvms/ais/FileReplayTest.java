@@ -0,0 +1,100 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FileReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Sentence> sentences = new ArrayList<>();
+    private final FeedCounters counters = new FeedCounters();
+    private final NmeaFramer framer = new NmeaFramer(sentences::add, counters);
+
+    @Test
+    public void gzipFileAtMaximumSpeedTest() throws IOException {
+        Path file = folder.newFile("feed.nmea.gz").toPath();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < 1000; i++) {
+                out.write(("\\c:" + (1652227200 + i * 60) + "*00\\" + nmea("!AIVDM,1,1,,A,line" + i + ",0") + "\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+
+        long lines = new FileReplay(file, 0, framer, counters, () -> false, () -> true).replay();
+
+        assertThat(lines, is(1000L));
+        assertThat(sentences.size(), is(1000));
+        assertThat(sentences.get(999).getSentence(), is("line999"));
+        assertThat(counters.getReplayedLines(), is(1000L));
+    }
+
+    @Test
+    public void pacedByTagTimestampsTest() throws IOException {
+        // three lines 1.5 s apart, the last without a line end, at 10x
+        Path file = folder.newFile("feed.nmea").toPath();
+        Files.write(file, ("\\c:1652227200000*00\\" + nmea("!AIVDM,1,1,,A,line0,0") + "\n"
+                + nmea("!AIVDM,1,1,,A,untimed,0") + "\n"
+                + "\\s:rx1,c:1652227201500*00\\" + nmea("!AIVDM,1,1,,A,line1,0") + "\n"
+                + "\\c:1652227203*00\\" + nmea("!AIVDM,1,1,,A,line2,0")).getBytes(StandardCharsets.US_ASCII));
+
+        long start = System.nanoTime();
+        new FileReplay(file, 10, framer, counters, () -> false, () -> true).replay();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(sentences.size(), is(4));
+        assertThat(sentences.get(3).getSentence(), is("line2"));
+        assertThat(elapsedMillis >= 300, is(true));
+        assertThat(elapsedMillis < 3000, is(true));
+    }
+
+    @Test
+    public void waitsWhileBufferIsFullTest() throws IOException {
+        Path file = folder.newFile("feed.nmea").toPath();
+        Files.write(file, (nmea("!AIVDM,1,1,,A,line0,0") + "\n").getBytes(StandardCharsets.US_ASCII));
+        AtomicInteger fullChecks = new AtomicInteger();
+
+        new FileReplay(file, 1, framer, counters, () -> fullChecks.incrementAndGet() < 5, () -> true).replay();
+
+        assertThat(fullChecks.get(), is(5));
+        assertThat(sentences.size(), is(1));
+    }
+
+    @Test
+    public void tagTimestampTest() {
+        assertThat(timestamp("\\s:rx1,c:1652227200*00\\!AIVDM"), is(1652227200000L));
+        assertThat(timestamp("\\c:1652227200123\\!AIVDM"), is(1652227200123L));
+        assertThat(timestamp("!AIVDM,1,1,,A,c:1,0*00"), is(-1L));
+        assertThat(timestamp("\\s:rx1*00\\!AIVDM"), is(-1L));
+        assertThat(timestamp("\\c:12x*00\\!AIVDM"), is(-1L));
+    }
+
+    private static long timestamp(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        TagBlock tagBlock = TagBlock.find(bytes, 0, bytes.length);
+        return tagBlock == null ? -1 : tagBlock.getTimestampMillis();
+    }
+
+    private static String nmea(String sentence) {
+        int checksum = 0;
+        for (int i = 1; i < sentence.length(); i++) {
+            checksum ^= sentence.charAt(i);
+        }
+        return String.format("%s*%02X", sentence, checksum);
+    }
+}
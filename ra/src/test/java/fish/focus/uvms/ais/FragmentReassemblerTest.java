@@ -0,0 +1,46 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FragmentReassemblerTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Sentence> sentences = new ArrayList<>();
+    private final FeedCounters counters = new FeedCounters();
+    private final FragmentReassembler reassembler = new FragmentReassembler(sentences::add, counters, TIMEOUT);
+
+    @Test
+    public void incompleteGroupExpiresTest() {
+        add(1, "AAA", 0);
+        add(2, "BBB", TIMEOUT + 1);
+
+        assertThat(sentences.size(), is(0));
+        assertThat(counters.getDiscardedFragmentGroups(), is(1L));
+        assertThat(reassembler.getPendingGroups(), is(1));
+    }
+
+    @Test
+    public void groupCompletedWithinTimeoutTest() {
+        add(1, "AAA", 0);
+        add(2, "BBB", TIMEOUT);
+
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getSentence(), is("AAABBB"));
+        assertThat(counters.getDiscardedFragmentGroups(), is(0L));
+        assertThat(reassembler.getPendingGroups(), is(0));
+    }
+
+    private void add(int number, String payload, long now) {
+        byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        reassembler.add(2, number, 4, (byte) 'A', null, bytes, 0, bytes.length, 0, now);
+    }
+}
@@ -0,0 +1,56 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class IngestFilterTest {
+
+    private final FeedCounters counters = new FeedCounters();
+
+    @Test
+    public void mmsiFromPayloadTest() {
+        assertThat(mmsi("13@p;@P0020hrRFPqG5EQUHHP00"), is(219024194));
+        assertThat(mmsi("15RTgt0PAso;90TKcjM8h6g208CQ"), is(371798000));
+        assertThat(mmsi("403OviQuMGCqWrRO9>E6fE700@GO"), is(3669702));
+        assertThat(mmsi("1?wwwwh000000000000000000000"), is(MmsiRanges.MAX_MMSI));
+        assertThat(mmsi("13@p;@"), is(-1));
+        assertThat(mmsi("13@p;xP0020"), is(-1));
+    }
+
+    @Test
+    public void deniedMmsiWinsOverAllowedTest() {
+        IngestFilter filter = new IngestFilter(MessageTypes.ALL, MmsiRanges.parse("200000000-399999999,123456789"),
+                MmsiRanges.parse("0,123456789,219024194"), counters);
+
+        assertThat(accept(filter, "15RTgt0PAso;90TKcjM8h6g208CQ"), is(true));
+        assertThat(accept(filter, "13@p;@P0020hrRFPqG5EQUHHP00"), is(false));
+        assertThat(accept(filter, "11mg=5@000000000000000000000"), is(false));
+        assertThat(accept(filter, "403OviQuMGCqWrRO9>E6fE700@GO"), is(false));
+        // too short to hold an MMSI
+        assertThat(accept(filter, "line0"), is(true));
+        assertThat(counters.getRejectedMmsis(), is(3L));
+    }
+
+    @Test
+    public void messageTypeIsCheckedFirstTest() {
+        IngestFilter filter = new IngestFilter(MessageTypes.parse("1"), MmsiRanges.EMPTY, MmsiRanges.parse("3669702"), counters);
+
+        assertThat(accept(filter, "403OviQuMGCqWrRO9>E6fE700@GO"), is(false));
+        assertThat(counters.getFilteredMessages(4), is(1L));
+        assertThat(counters.getRejectedMmsis(), is(0L));
+    }
+
+    private static int mmsi(String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        return IngestFilter.mmsi(bytes, 0, bytes.length);
+    }
+
+    private static boolean accept(IngestFilter filter, String payload) {
+        byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        return filter.accept(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,42 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MessageTypesTest {
+
+    @Test
+    public void typeFromArmoredCharacterTest() {
+        assertThat(MessageTypes.type((byte) '0'), is(0));
+        assertThat(MessageTypes.type((byte) '1'), is(1));
+        assertThat(MessageTypes.type((byte) '5'), is(5));
+        assertThat(MessageTypes.type((byte) 'B'), is(18));
+        assertThat(MessageTypes.type((byte) 'H'), is(24));
+        assertThat(MessageTypes.type((byte) 'K'), is(27));
+        assertThat(MessageTypes.type((byte) 'W'), is(39));
+        assertThat(MessageTypes.type((byte) '`'), is(40));
+        assertThat(MessageTypes.type((byte) 'w'), is(63));
+        assertThat(MessageTypes.type((byte) 'X'), is(-1));
+        assertThat(MessageTypes.type((byte) 'x'), is(-1));
+        assertThat(MessageTypes.type((byte) ','), is(-1));
+    }
+
+    @Test
+    public void parseTypesAndRangesTest() {
+        long mask = MessageTypes.parse(" 1-3, 5,18,24 ");
+
+        assertThat(mask, is((1L << 1) | (1L << 2) | (1L << 3) | (1L << 5) | (1L << 18) | (1L << 24)));
+        assertThat(MessageTypes.allows(mask, 4), is(false));
+        assertThat(MessageTypes.allows(mask, 24), is(true));
+        assertThat(MessageTypes.allows(mask, -1), is(true));
+        assertThat(MessageTypes.parse(""), is(MessageTypes.ALL));
+        assertThat(MessageTypes.parse(null), is(MessageTypes.ALL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void typeOutOfRangeTest() {
+        MessageTypes.parse("1,64");
+    }
+}
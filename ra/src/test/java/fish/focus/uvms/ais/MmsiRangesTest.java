@@ -0,0 +1,37 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MmsiRangesTest {
+
+    @Test
+    public void valuesAndOverlappingRangesTest() {
+        MmsiRanges ranges = MmsiRanges.parse("970000000-979999999, 0, 123456789, 975000000-980000000, 1");
+
+        assertThat(ranges.contains(0), is(true));
+        assertThat(ranges.contains(1), is(true));
+        assertThat(ranges.contains(2), is(false));
+        assertThat(ranges.contains(123456789), is(true));
+        assertThat(ranges.contains(123456790), is(false));
+        assertThat(ranges.contains(969999999), is(false));
+        assertThat(ranges.contains(970000000), is(true));
+        assertThat(ranges.contains(979999999), is(true));
+        assertThat(ranges.contains(980000000), is(true));
+        assertThat(ranges.contains(980000001), is(false));
+        assertThat(ranges.contains(MmsiRanges.MAX_MMSI), is(false));
+    }
+
+    @Test
+    public void blankIsEmptyTest() {
+        assertThat(MmsiRanges.parse(" ").isEmpty(), is(true));
+        assertThat(MmsiRanges.parse(null).contains(0), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reversedRangeTest() {
+        MmsiRanges.parse("300000000-200000000");
+    }
+}
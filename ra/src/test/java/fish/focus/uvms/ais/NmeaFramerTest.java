@@ -0,0 +1,206 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class NmeaFramerTest {
+
+    private final List<Sentence> sentences = new ArrayList<>();
+    private final FeedCounters counters = new FeedCounters();
+    private final NmeaFramer framer = new NmeaFramer(sentences::add, counters);
+
+    @Test
+    public void lineSplitOverSeveralReadsTest() {
+        String input = "\\1G1:32,s:516,c:1652227200*5B\\!ABVDM,1,1,0,B,15RTgt0PAso;90TKcjM8h6g208CQ,0*72\r\n";
+        for (int i = 0; i < input.length(); i += 7) {
+            feed(input.substring(i, Math.min(input.length(), i + 7)));
+        }
+
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getSentence(), is("15RTgt0PAso;90TKcjM8h6g208CQ"));
+        assertThat(sentences.get(0).getCommentBlockLesTimestamp(), is(Instant.ofEpochSecond(1652227200)));
+    }
+
+    @Test
+    public void incompleteLineIsKeptUntilLineEndTest() {
+        feed("!ABVDM,1,1,0,B,15RTgt0PAso;90TKcjM8h6g208CQ,0*72");
+        assertThat(sentences.size(), is(0));
+
+        feed("\n");
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getCommentBlockLesTimestamp(), nullValue());
+    }
+
+    @Test
+    public void directBufferTest() {
+        byte[] bytes = "!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*49\n".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+
+        framer.feed(buffer);
+
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getSentence(), is("13@p;@P0020hrRFPqG5EQUHHP00"));
+    }
+
+    @Test
+    public void ignoredLinesTest() {
+        feed("$ABVSI,r3669961,1,013536.96326433,1386,-98,,*14\n");
+        feed("!ABVDM,1\n");
+        feed("garbage\n");
+        feed("!ABVDM,x,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*00\n");
+        feed("\n\r\n");
+
+        assertThat(sentences.size(), is(0));
+    }
+
+    @Test
+    public void tooLongLineIsDroppedTest() {
+        StringBuilder longLine = new StringBuilder("!ABVDM,1,1,0,B,");
+        while (longLine.length() <= NmeaFramer.MAX_LINE_LENGTH) {
+            longLine.append('0');
+        }
+        feed(longLine + ",0*00\n");
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*49\n");
+
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getSentence(), is("13@p;@P0020hrRFPqG5EQUHHP00"));
+        assertThat(counters.getReceivedLines(), is(2L));
+        assertThat(counters.getRejectedLines(), is(1L));
+    }
+
+    @Test
+    public void messageTypeFilterTest() {
+        framer.setFilter(new IngestFilter(MessageTypes.parse("1-3,18"), MmsiRanges.EMPTY, MmsiRanges.EMPTY, counters));
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*49\n");
+        feed("!ABVDM,1,1,0,B,403OviQuMGCqWrRO9>E6fE700@GO,0*75\n");
+        feed("!AIVDM,2,1,2,A,5XXX,0*7A\n");
+        feed("!AIVDM,2,2,2,A,YYY,0*4D\n");
+
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getSentence(), is("13@p;@P0020hrRFPqG5EQUHHP00"));
+        assertThat(counters.getFilteredMessages(4), is(1L));
+        assertThat(counters.getFilteredMessages(5), is(1L));
+        assertThat(counters.getFilteredMessages(), is(2L));
+    }
+
+    @Test
+    public void badChecksumIsDroppedTest() {
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*4A\n");
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP01,0*49\n");
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0\n");
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*4\n");
+        feed("!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*4G\n");
+
+        assertThat(sentences.size(), is(0));
+        assertThat(counters.getBadChecksums(), is(5L));
+    }
+
+    @Test
+    public void checksumIsCaseInsensitiveAndIgnoresTrailingSpaceTest() {
+        feed("!AIVDM,2,1,2,A,XXX,0*4F \n");
+        feed("!AIVDM,2,2,2,A,YYY,0*4d\n");
+
+        assertThat(sentences.size(), is(1));
+        assertThat(counters.getBadChecksums(), is(0L));
+        assertThat(counters.getReassembledMessages(), is(1L));
+    }
+
+    @Test
+    public void threeFragmentMessageTest() {
+        feed("!AIVDM,3,1,7,A,AAA,0*52\n");
+        feed("!AIVDM,3,2,7,A,BBB,0*52\n");
+        assertThat(sentences.size(), is(0));
+
+        feed("!AIVDM,3,3,7,A,CCC,2*50\n");
+        assertThat(sentences.size(), is(1));
+        assertThat(sentences.get(0).getSentence(), is("AAABBBCCC"));
+    }
+
+    @Test
+    public void interleavedFragmentsTest() {
+        feed("!AIVDM,2,1,1,A,AAA,0*55\n");
+        feed("!AIVDM,2,1,2,A,XXX,0*4F\n");
+        feed("!AIVDM,2,1,1,B,MMM,0*5A\n");
+        feed("!AIVDM,2,2,2,A,YYY,0*4D\n");
+        feed("!AIVDM,2,2,1,A,BBB,0*55\n");
+        feed("!AIVDM,2,2,1,B,NNN,0*5A\n");
+
+        assertThat(payloads(), is(List.of("XXXYYY", "AAABBB", "MMMNNN")));
+        assertThat(counters.getDiscardedFragmentGroups(), is(0L));
+    }
+
+    @Test
+    public void fragmentsFromDifferentSourcesTest() {
+        feed("\\g:1-2-10,s:station1*00\\!AIVDM,2,1,1,A,AAA,0*55\n");
+        feed("\\g:1-2-20,s:station2*00\\!AIVDM,2,1,1,A,XXX,0*4C\n");
+        feed("\\g:2-2-20*00\\!AIVDM,2,2,1,A,YYY,0*4E\n");
+        feed("\\g:2-2-10*00\\!AIVDM,2,2,1,A,BBB,0*55\n");
+
+        assertThat(payloads(), is(List.of("XXXYYY", "AAABBB")));
+        assertThat(sentences.get(0).getCommentBlockLesTimestamp(), nullValue());
+    }
+
+    @Test
+    public void sourceOnlyOnFirstFragmentTest() {
+        feed("\\g:1-2-1234,s:r1,c:1652227200*00\\!AIVDM,2,1,1,A,AAA,0*55\n");
+        feed("\\g:2-2-1234*00\\!AIVDM,2,2,1,A,BBB,0*55\n");
+        feed("\\s:r1,c:1652227200*00\\!AIVDM,2,1,1,A,XXX,0*4C\n");
+        feed("!AIVDM,2,2,1,A,YYY,0*4E\n");
+
+        assertThat(payloads(), is(List.of("AAABBB", "XXXYYY")));
+        assertThat(sentences.get(0).getCommentBlockLesTimestamp(), is(Instant.ofEpochSecond(1652227200)));
+        assertThat(sentences.get(1).getCommentBlockLesTimestamp(), is(Instant.ofEpochSecond(1652227200)));
+        assertThat(counters.getDiscardedFragmentGroups(), is(0L));
+    }
+
+    @Test
+    public void repeatedFragmentDiscardsGroupTest() {
+        feed("!AIVDM,2,1,3,A,AAA,0*57\n");
+        feed("!AIVDM,2,1,3,A,CCC,0*55\n");
+        feed("!AIVDM,2,2,3,A,DDD,0*51\n");
+
+        assertThat(payloads(), is(List.of("CCCDDD")));
+        assertThat(counters.getDiscardedFragmentGroups(), is(1L));
+    }
+
+    @Test
+    public void invalidFragmentNumberTest() {
+        feed("!AIVDM,2,3,3,A,AAA,0*55\n");
+        feed("!AIVDM,10,1,3,A,AAA,0*64\n");
+
+        assertThat(sentences.size(), is(0));
+        assertThat(counters.getDiscardedFragmentGroups(), is(2L));
+    }
+
+    private List<String> payloads() {
+        List<String> payloads = new ArrayList<>();
+        sentences.forEach(sentence -> payloads.add(sentence.getSentence()));
+        return payloads;
+    }
+
+    @Test
+    public void feedLagFromTagTimestampTest() {
+        assertThat(counters.getFeedLagMillis(1652227205000L), is(-1L));
+
+        feed("\\1G1:32,s:516,c:1652227200*5B\\!ABVDM,1,1,0,B,15RTgt0PAso;90TKcjM8h6g208CQ,0*72\n");
+        assertThat(counters.getFeedLagMillis(1652227205000L), is(5000L));
+
+        // an older timestamp does not make the feed look more behind than it is
+        feed("\\s:2573145,c:1652227100*09\\!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*49\n");
+        assertThat(counters.getFeedLagMillis(1652227205000L), is(5000L));
+    }
+
+    private void feed(String input) {
+        framer.feed(ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,43 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PayloadDeduplicatorTest {
+
+    private static final long WINDOW = 3000;
+
+    private final PayloadDeduplicator deduplicator = new PayloadDeduplicator(WINDOW, 1024);
+
+    @Test
+    public void duplicateWithinWindowTest() {
+        assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPqG5EQUHHP00"), 10_000), is(false));
+        assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPqG5EQUHHP00"), 10_001), is(true));
+        assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPqG5EQUHHP00"), 10_000 + WINDOW), is(true));
+        assertThat(deduplicator.isDuplicate(payload("15RTgt0PAso;90TKcjM8h6g208CQ"), 10_001), is(false));
+    }
+
+    @Test
+    public void payloadIsForgottenAfterWindowTest() {
+        assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPqG5EQUHHP00"), 10_000), is(false));
+        assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPqG5EQUHHP00"), 10_000 + 2 * WINDOW), is(false));
+    }
+
+    @Test
+    public void distinctPayloadsAreNotDuplicatesTest() {
+        for (int i = 0; i < 1024; i++) {
+            assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPq" + i), 10_000 + i), is(false));
+        }
+        for (int i = 0; i < 1024; i++) {
+            assertThat(deduplicator.isDuplicate(payload("13@p;@P0020hrRFPq" + i), 11_100), is(true));
+        }
+    }
+
+    private static byte[] payload(String payload) {
+        return payload.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,80 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.resource.ResourceException;
+import javax.resource.spi.work.HintsContext;
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkContextProvider;
+import javax.resource.spi.work.WorkManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ReaderExecutorTest {
+
+    @Test
+    public void workIsScheduledAsLongRunningTest() throws Exception {
+        WorkManager workManager = mock(WorkManager.class);
+        ReaderExecutor executor = new ReaderExecutor(workManager, false);
+
+        executor.execute("reader", () -> {
+        }, () -> {
+        });
+
+        ArgumentCaptor<Work> work = ArgumentCaptor.forClass(Work.class);
+        verify(workManager).scheduleWork(work.capture(), anyLong(), isNull(), isNull());
+        assertThat(work.getValue(), instanceOf(WorkContextProvider.class));
+        HintsContext hints = (HintsContext) ((WorkContextProvider) work.getValue()).getWorkContexts().get(0);
+        assertThat(hints.getName(), is("reader"));
+        assertThat(hints.getHints().get(HintsContext.LONGRUNNING_HINT), is(Boolean.TRUE));
+    }
+
+    @Test
+    public void stopReleasesRunningTasksTest() throws Exception {
+        ReaderExecutor executor = new ReaderExecutor(null, false);
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        executor.execute("reader", () -> {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        }, released::countDown);
+        assertThat(executor.getRunningTasks(), is(1));
+
+        executor.stop();
+
+        assertThat(finished.await(5, TimeUnit.SECONDS), is(true));
+        waitForNoRunningTasks(executor);
+        assertThat(executor.getRunningTasks(), is(0));
+    }
+
+    @Test(expected = ResourceException.class)
+    public void stoppedExecutorRefusesTasksTest() throws Exception {
+        ReaderExecutor executor = new ReaderExecutor(mock(WorkManager.class), false);
+        executor.stop();
+
+        executor.execute("reader", () -> {
+        }, () -> {
+        });
+    }
+
+    private static void waitForNoRunningTasks(ReaderExecutor executor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getRunningTasks() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fish.focus.uvms.ais;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SentenceDispatcherTest {
+
+    private final SentenceRingBuffer buffer = new SentenceRingBuffer(1024, SentenceRingBuffer.OverflowPolicy.DROP_OLDEST);
+    private final BlockingQueue<List<Sentence>> batches = new LinkedBlockingQueue<>();
+    private SentenceDispatcher dispatcher;
+
+    @After
+    public void stopDispatcher() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void fullBatchIsDeliveredTest() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(sentence(i));
+        }
+        start(5, TimeUnit.MINUTES.toMillis(1));
+
+        assertThat(payloads(batches.poll(5, TimeUnit.SECONDS)), is(List.of("0", "1", "2", "3", "4")));
+        assertThat(payloads(batches.poll(5, TimeUnit.SECONDS)), is(List.of("5", "6", "7", "8", "9")));
+    }
+
+    @Test
+    public void partialBatchIsDeliveredAfterTimeoutTest() throws InterruptedException {
+        start(100, 50);
+        buffer.offer(sentence(0));
+        buffer.offer(sentence(1));
+
+        List<Sentence> batch = batches.poll(5, TimeUnit.SECONDS);
+        assertThat(batch, notNullValue());
+        assertThat(payloads(batch), is(List.of("0", "1")));
+        assertThat(batches.poll(200, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    @Test
+    public void failingListenerDoesNotStopDeliveryTest() throws InterruptedException {
+        dispatcher = new SentenceDispatcher(buffer, sentences -> {
+            batches.add(sentences);
+            throw new IllegalStateException("test");
+        }, 1, 10);
+        new Thread(dispatcher).start();
+        buffer.offer(sentence(0));
+        buffer.offer(sentence(1));
+
+        assertThat(payloads(batches.poll(5, TimeUnit.SECONDS)), is(List.of("0")));
+        assertThat(payloads(batches.poll(5, TimeUnit.SECONDS)), is(List.of("1")));
+    }
+
+    private void start(int batchSize, long batchTimeoutMillis) {
+        dispatcher = new SentenceDispatcher(buffer, batches::add, batchSize, batchTimeoutMillis);
+        new Thread(dispatcher).start();
+    }
+
+    private static List<String> payloads(List<Sentence> sentences) {
+        List<String> payloads = new ArrayList<>();
+        sentences.forEach(sentence -> payloads.add(sentence.getSentence()));
+        return payloads;
+    }
+
+    private static Sentence sentence(int i) {
+        return new Sentence(null, String.valueOf(i));
+    }
+}
@@ -0,0 +1,127 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static fish.focus.uvms.ais.SentenceRingBuffer.OverflowPolicy.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SentenceRingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwoTest() {
+        assertThat(new SentenceRingBuffer(1, DROP_NEWEST).getCapacity(), is(1));
+        assertThat(new SentenceRingBuffer(5, DROP_NEWEST).getCapacity(), is(8));
+        assertThat(new SentenceRingBuffer(8, DROP_NEWEST).getCapacity(), is(8));
+    }
+
+    @Test
+    public void dropNewestTest() {
+        SentenceRingBuffer buffer = new SentenceRingBuffer(4, DROP_NEWEST);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(sentence(i));
+        }
+
+        assertThat(drain(buffer), is(List.of("0", "1", "2", "3")));
+        assertThat(buffer.getDroppedCount(), is(2L));
+        assertThat(buffer.getHighWatermark(), is(4));
+    }
+
+    @Test
+    public void dropOldestTest() {
+        SentenceRingBuffer buffer = new SentenceRingBuffer(4, DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(sentence(i));
+        }
+
+        assertThat(drain(buffer), is(List.of("2", "3", "4", "5")));
+        assertThat(buffer.getDroppedCount(), is(2L));
+        assertThat(buffer.getHighWatermark(), is(4));
+        assertThat(buffer.poll(), nullValue());
+    }
+
+    @Test
+    public void blockWaitsForConsumerTest() throws InterruptedException {
+        SentenceRingBuffer buffer = new SentenceRingBuffer(2, BLOCK);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                buffer.offer(sentence(i));
+            }
+            done.countDown();
+        });
+        producer.start();
+
+        List<String> received = new ArrayList<>();
+        while (received.size() < 1000) {
+            Sentence sentence = buffer.poll();
+            if (sentence != null) {
+                received.add(sentence.getSentence());
+            }
+        }
+
+        assertThat(done.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(buffer.getDroppedCount(), is(0L));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(received.get(i), is(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void blockedProducerGivesUpWhenInterruptedTest() throws InterruptedException {
+        SentenceRingBuffer buffer = new SentenceRingBuffer(1, BLOCK);
+        buffer.offer(sentence(0));
+        Thread producer = new Thread(() -> buffer.offer(sentence(1)));
+        producer.start();
+        producer.interrupt();
+        producer.join(1000);
+
+        assertThat(producer.isAlive(), is(false));
+        assertThat(buffer.getDroppedCount(), is(1L));
+        assertThat(drain(buffer), is(List.of("0")));
+    }
+
+    @Test
+    public void concurrentDropOldestKeepsOrderTest() throws InterruptedException {
+        SentenceRingBuffer buffer = new SentenceRingBuffer(16, DROP_OLDEST);
+        int count = 100_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                buffer.offer(sentence(i));
+            }
+        });
+        producer.start();
+
+        int last = -1;
+        long received = 0;
+        while (producer.isAlive() || !buffer.isEmpty()) {
+            Sentence sentence = buffer.poll();
+            if (sentence != null) {
+                int value = Integer.parseInt(sentence.getSentence());
+                assertThat(value > last, is(true));
+                last = value;
+                received++;
+            }
+        }
+
+        assertThat(received + buffer.getDroppedCount(), is((long) count));
+    }
+
+    private static List<String> drain(SentenceRingBuffer buffer) {
+        List<Sentence> sentences = new ArrayList<>();
+        buffer.drainTo(sentences, Integer.MAX_VALUE);
+        List<String> payloads = new ArrayList<>();
+        sentences.forEach(sentence -> payloads.add(sentence.getSentence()));
+        return payloads;
+    }
+
+    private static Sentence sentence(int i) {
+        return new Sentence(null, String.valueOf(i));
+    }
+}
@@ -0,0 +1,84 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SentenceTest {
+
+    private static final String PAYLOAD = "13u?etPv2;0n:dDPwUM1U1Cb069D";
+
+    @Test
+    public void parseTagBlockTest() {
+        Sentence sentence = new Sentence("g:1-2-73874,n:157036,s:r003669945,c:1241544035,t:hello*4A", PAYLOAD);
+
+        assertThat(sentence.hasValidCommentBlock(), is(true));
+        assertThat(sentence.getCommentBlockLesTimestamp(), is(Instant.ofEpochSecond(1241544035)));
+        assertThat(sentence.getCommentBlockTimestampMillis(), is(1241544035000L));
+        assertThat(sentence.getSourceStation(), is("r003669945"));
+        assertThat(sentence.getCommentBlockText(), is("hello"));
+        assertThat(sentence.getGroupSentence(), is(1));
+        assertThat(sentence.getGroupSize(), is(2));
+        assertThat(sentence.getGroupId(), is(73874L));
+        assertThat(sentence.getLineCount(), is(157036L));
+    }
+
+    @Test
+    public void parseIecGroupTest() {
+        Sentence sentence = new Sentence("1G2:353911,s:Goteborg,c:1653900489*4E", PAYLOAD);
+
+        assertThat(sentence.hasValidCommentBlock(), is(true));
+        assertThat(sentence.getSourceStation(), is("Goteborg"));
+        assertThat(sentence.getGroupSentence(), is(1));
+        assertThat(sentence.getGroupSize(), is(2));
+        assertThat(sentence.getGroupId(), is(353911L));
+        assertThat(sentence.getCommentBlockLesTimestamp(), is(Instant.ofEpochSecond(1653900489)));
+    }
+
+    @Test
+    public void headerFieldsTest() {
+        Sentence sentence = new Sentence((String) null, PAYLOAD.getBytes(StandardCharsets.US_ASCII), 1652227200123456789L);
+
+        assertThat(sentence.getMessageType(), is(1));
+        assertThat(sentence.getMmsi(), is(265547250));
+        assertThat(sentence.getReceivedNanos(), is(1652227200123456789L));
+    }
+
+    @Test
+    public void unreadableHeaderFieldsTest() {
+        assertThat(new Sentence(null, "").getMessageType(), is(-1));
+        assertThat(new Sentence(null, "13u?").getMmsi(), is(-1));
+        assertThat(new Sentence(null, "1~u?etPv2").getMmsi(), is(-1));
+    }
+
+    @Test
+    public void millisecondTimestampTest() {
+        Sentence sentence = new Sentence("c:1652227200123*00", PAYLOAD);
+
+        assertThat(sentence.getCommentBlockLesTimestamp(), is(Instant.ofEpochMilli(1652227200123L)));
+    }
+
+    @Test
+    public void invalidChecksumTest() {
+        assertThat(new Sentence("s:516,c:1652227200*00", PAYLOAD).hasValidCommentBlock(), is(false));
+        assertThat(new Sentence("s:516,c:1652227200", PAYLOAD).hasValidCommentBlock(), is(false));
+        assertThat(new Sentence("s:516,c:1652227200*ZZ", PAYLOAD).hasValidCommentBlock(), is(false));
+    }
+
+    @Test
+    public void noTagBlockTest() {
+        Sentence sentence = new Sentence(null, PAYLOAD);
+
+        assertThat(sentence.hasValidCommentBlock(), is(false));
+        assertThat(sentence.getCommentBlockLesTimestamp(), is(nullValue()));
+        assertThat(sentence.getSourceStation(), is(nullValue()));
+        assertThat(sentence.getGroupSentence(), is(-1));
+        assertThat(sentence.getLineCount(), is(-1L));
+        assertThat(sentence.getSentence(), is(PAYLOAD));
+    }
+}
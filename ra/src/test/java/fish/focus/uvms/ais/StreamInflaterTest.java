@@ -0,0 +1,110 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StreamInflaterTest {
+
+    private static final String LINES = "!ABVDM,1,1,0,B,13@p;@P0020hrRFPqG5EQUHHP00,0*49\r\n"
+            + "\\1G1:32,s:516,c:1652227200*5B\\!ABVDM,1,1,0,B,15RTgt0PAso;90TKcjM8h6g208CQ,0*72\r\n";
+
+    private final List<Sentence> sentences = new ArrayList<>();
+    private final NmeaFramer framer = new NmeaFramer(sentences::add);
+
+    @Test
+    public void deflateSplitOverReadsTest() throws IOException {
+        byte[] compressed = deflate(LINES);
+        StreamInflater inflater = new StreamInflater(StreamCompression.DEFLATE);
+        for (int i = 0; i < compressed.length; i++) {
+            inflater.feed(compressed, i, i + 1, framer);
+        }
+        assertSentences();
+    }
+
+    @Test
+    public void gzipSplitOverReadsTest() throws IOException {
+        byte[] compressed = gzip(LINES);
+        StreamInflater inflater = new StreamInflater(StreamCompression.GZIP);
+        for (int i = 0; i < compressed.length; i += 3) {
+            inflater.feed(compressed, i, Math.min(i + 3, compressed.length), framer);
+        }
+        assertSentences();
+    }
+
+    @Test
+    public void gzipMembersWithOptionalHeaderFieldsTest() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] first = LINES.substring(0, 60).getBytes(StandardCharsets.US_ASCII);
+        byte[] second = LINES.substring(60).getBytes(StandardCharsets.US_ASCII);
+        // FEXTRA, FNAME and FCOMMENT
+        stream.write(new byte[]{0x1f, (byte) 0x8b, 8, 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 0xff, 3, 0, 'x', 'y', 'z'});
+        stream.write("feed.nmea\0first part\0".getBytes(StandardCharsets.US_ASCII));
+        stream.write(rawDeflate(first));
+        stream.write(new byte[8]);
+        stream.write(gzip(new String(second, StandardCharsets.US_ASCII)));
+        byte[] compressed = stream.toByteArray();
+
+        new StreamInflater(StreamCompression.GZIP).feed(compressed, 0, compressed.length, framer);
+
+        assertSentences();
+    }
+
+    @Test(expected = IOException.class)
+    public void notGzipTest() throws IOException {
+        byte[] plain = LINES.getBytes(StandardCharsets.US_ASCII);
+        new StreamInflater(StreamCompression.GZIP).feed(plain, 0, plain.length, framer);
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptDeflateTest() throws IOException {
+        byte[] compressed = deflate(LINES);
+        compressed[compressed.length / 2] ^= 0x55;
+        compressed[compressed.length / 2 + 1] ^= 0x55;
+        new StreamInflater(StreamCompression.DEFLATE).feed(compressed, 0, compressed.length, framer);
+    }
+
+    private void assertSentences() {
+        assertThat(sentences.size(), is(2));
+        assertThat(sentences.get(0).getSentence(), is("13@p;@P0020hrRFPqG5EQUHHP00"));
+        assertThat(sentences.get(1).getSentence(), is("15RTgt0PAso;90TKcjM8h6g208CQ"));
+    }
+
+    static byte[] deflate(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] rawDeflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] buffer = new byte[input.length + 64];
+        int length = deflater.deflate(buffer);
+        deflater.end();
+        return Arrays.copyOf(buffer, length);
+    }
+}
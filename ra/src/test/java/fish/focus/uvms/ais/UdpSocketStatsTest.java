@@ -0,0 +1,25 @@
+package fish.focus.uvms.ais;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class UdpSocketStatsTest {
+
+    private static final String SOCKET_TABLE =
+            "   sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops\n"
+                    + "  521: 00000000:1F90 00000000:0000 07 00000000:00000000 00:00000000 00000000  1000        0 39281 2 0000000000000000 17\n"
+                    + "  933: 0100007F:0035 00000000:0000 07 00000000:00000000 00:00000000 00000000   101        0 16020 2 0000000000000000 0\n";
+
+    @Test
+    public void dropsOfBoundPortTest() throws IOException {
+        assertThat(UdpSocketStats.getDrops(new BufferedReader(new StringReader(SOCKET_TABLE)), 8080), is(17L));
+        assertThat(UdpSocketStats.getDrops(new BufferedReader(new StringReader(SOCKET_TABLE)), 53), is(0L));
+        assertThat(UdpSocketStats.getDrops(new BufferedReader(new StringReader(SOCKET_TABLE)), 4001), is(0L));
+    }
+}
@@ -16,12 +16,16 @@ import fish.focus.schema.exchange.registry.v1.ExchangeRegistryMethod;
 import fish.focus.schema.exchange.service.v1.CapabilityListType;
 import fish.focus.schema.exchange.service.v1.ServiceType;
 import fish.focus.schema.exchange.service.v1.SettingListType;
+import fish.focus.uvms.ais.AISConnectionMetrics;
 import fish.focus.uvms.exchange.model.constant.ExchangeModelConstants;
 import fish.focus.uvms.exchange.model.mapper.ExchangeModuleRequestMapper;
 import fish.focus.uvms.plugins.ais.mapper.ServiceMapper;
 import fish.focus.uvms.plugins.ais.producer.PluginMessageProducer;
 import fish.focus.uvms.plugins.ais.service.FileHandlerBean;
 import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
 import org.eclipse.microprofile.metrics.annotation.Metric;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +35,15 @@ import javax.annotation.PreDestroy;
 import javax.ejb.*;
 import javax.inject.Inject;
 import javax.jms.JMSException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 @Singleton
 @Startup
@@ -41,6 +53,8 @@ public class StartupBean extends PluginDataHolder {
     private static final Logger LOG = LoggerFactory.getLogger(StartupBean.class);
 
     private static final int MAX_NUMBER_OF_TRIES = 10;
+    // the defined AIS message types, each may get a gauge of the messages dropped by the RA message type filter
+    private static final int MAX_FILTERED_MESSAGE_TYPE = 27;
 
     @EJB
     PluginMessageProducer messageProducer;
@@ -56,6 +70,18 @@ public class StartupBean extends PluginDataHolder {
     @Metric(name = "ais_incoming_all", absolute = true)
     private Counter aisIncomingAll;
 
+    @Inject
+    @Metric(name = "ais_incoming_dropped", absolute = true)
+    private Counter aisIncomingDropped;
+
+    @Inject
+    private MetricRegistry metricRegistry;
+
+    /**
+     * The registered gauges of each feed, by feed name
+     */
+    private final Map<String, Set<MetricID>> feedMetrics = new ConcurrentHashMap<>();
+
     private boolean registered = false;
     private boolean enabled = false;
     private boolean waitingForResponse = false;
@@ -182,6 +208,22 @@ public class StartupBean extends PluginDataHolder {
         }
     }
 
+    /**
+     * @return the comma separated values of the setting, or an empty list if it is not set
+     */
+    public List<String> getSettingAsList(String key) {
+        List<String> values = new ArrayList<>();
+        String setting = getSetting(key);
+        if (setting != null) {
+            for (String value : setting.split(",")) {
+                if (!value.isBlank()) {
+                    values.add(value.trim());
+                }
+            }
+        }
+        return values;
+    }
+
     public boolean isWaitingForResponse() {
         return waitingForResponse;
     }
@@ -213,4 +255,110 @@ public class StartupBean extends PluginDataHolder {
     public void incrementAisIncomingAll(long number) {
         aisIncomingAll.inc(number);
     }
+
+    public void incrementAisIncomingDropped(long number) {
+        aisIncomingDropped.inc(number);
+    }
+
+    /**
+     * Registers the gauge of the reader threads of the RA, which are counted for all feeds together.
+     *
+     * @param liveReaders reader threads currently running in the RA
+     */
+    public void registerLiveReadersMetric(IntSupplier liveReaders) {
+        if (metricRegistry == null) {
+            return;
+        }
+        metricRegistry.gauge(new MetricID("ais_live_readers"), liveReaders::getAsInt);
+    }
+
+    /**
+     * Registers the gauges of the RA counters of a feed, tagged with the feed name.
+     *
+     * @param feed              name of the feed
+     * @param receivedSentences sentences the plugin received from the feed
+     * @param metrics           metrics of the current connection of the feed, null while there is none
+     */
+    public void registerFeedMetrics(String feed, LongSupplier receivedSentences, Supplier<AISConnectionMetrics> metrics) {
+        if (metricRegistry == null) {
+            return;
+        }
+        Tag tag = new Tag("feed", feed);
+        registerFeedGauge(feed, new MetricID("ais_feed_sentences", tag), receivedSentences::getAsLong);
+        registerFeedGauge(feed, "ais_feed_queue_size", metrics, AISConnectionMetrics::getQueueSize, tag);
+        registerFeedGauge(feed, "ais_feed_queue_high_watermark", metrics, AISConnectionMetrics::getQueueHighWatermark, tag);
+        registerFeedGauge(feed, "ais_feed_queue_dropped", metrics, AISConnectionMetrics::getDroppedSentences, tag);
+        registerFeedGauge(feed, "ais_feed_duplicates", metrics, AISConnectionMetrics::getDuplicateSentences, tag);
+        registerFeedGauge(feed, "ais_feed_fragment_groups_discarded", metrics, AISConnectionMetrics::getDiscardedFragmentGroups, tag);
+        registerFeedGauge(feed, "ais_feed_bad_checksums", metrics, AISConnectionMetrics::getBadChecksums, tag);
+        registerFeedGauge(feed, "ais_feed_last_read_age_millis", metrics, AISConnectionMetrics::getLastReadAgeMillis, tag);
+        registerFeedGauge(feed, "ais_feed_lag_millis", metrics, AISConnectionMetrics::getFeedLagMillis, tag);
+        registerFeedGauge(feed, "ais_feed_watchdog_reconnects", metrics, AISConnectionMetrics::getWatchdogReconnects, tag);
+        registerFeedGauge(feed, "ais_feed_idle_timeouts", metrics, AISConnectionMetrics::getIdleTimeouts, tag);
+        registerFeedGauge(feed, "ais_feed_unaccounted_sentences", metrics, AISConnectionMetrics::getUnaccountedSentences, tag);
+        registerFeedGauge(feed, "ais_feed_datagrams", metrics, AISConnectionMetrics::getReceivedDatagrams, tag);
+        registerFeedGauge(feed, "ais_feed_datagram_bytes", metrics, AISConnectionMetrics::getReceivedDatagramBytes, tag);
+        registerFeedGauge(feed, "ais_feed_datagrams_dropped", metrics, AISConnectionMetrics::getDroppedDatagrams, tag);
+        registerFeedGauge(feed, "ais_feed_captured_lines", metrics, AISConnectionMetrics::getCapturedLines, tag);
+        registerFeedGauge(feed, "ais_feed_capture_dropped", metrics, AISConnectionMetrics::getCaptureDroppedLines, tag);
+        registerFeedGauge(feed, "ais_feed_received_bytes", metrics, AISConnectionMetrics::getReceivedBytes, tag);
+        registerFeedGauge(feed, "ais_feed_received_lines", metrics, AISConnectionMetrics::getReceivedLines, tag);
+        registerFeedGauge(feed, "ais_feed_rejected_lines", metrics, AISConnectionMetrics::getRejectedLines, tag);
+        registerFeedGauge(feed, "ais_feed_reassembled_messages", metrics, AISConnectionMetrics::getReassembledMessages, tag);
+        registerFeedGauge(feed, "ais_feed_connects", metrics, AISConnectionMetrics::getConnects, tag);
+        registerFeedGauge(feed, "ais_feed_mmsi_rejected", metrics, AISConnectionMetrics::getRejectedMmsis, tag);
+        registerFeedGauge(feed, "ais_feed_replayed_lines", metrics, AISConnectionMetrics::getReplayedLines, tag);
+        registerFeedGauge(feed, new MetricID("ais_feed_replay_lines_per_second", tag), () -> {
+            AISConnectionMetrics current = metrics.get();
+            return current == null ? 0 : current.getReplayLinesPerSecond();
+        });
+    }
+
+    /**
+     * Registers a gauge of the messages dropped by the RA message type filter for each type that has been dropped
+     * since the last call. Types the filter passes never get a gauge.
+     *
+     * @param feed    name of the feed
+     * @param metrics metrics of the current connection of the feed, null while there is none
+     */
+    public void registerFilteredMessageMetrics(String feed, Supplier<AISConnectionMetrics> metrics) {
+        AISConnectionMetrics current = metrics.get();
+        if (metricRegistry == null || current == null || current.getFilteredMessages() == 0) {
+            return;
+        }
+        Tag tag = new Tag("feed", feed);
+        for (int type = 1; type <= MAX_FILTERED_MESSAGE_TYPE; type++) {
+            int messageType = type;
+            if (current.getFilteredMessages(messageType) > 0) {
+                registerFeedGauge(feed, "ais_feed_filtered_messages", metrics, connection -> connection.getFilteredMessages(messageType),
+                        tag, new Tag("message_type", Integer.toString(messageType)));
+            }
+        }
+    }
+
+    /**
+     * Removes all gauges of a feed
+     */
+    public void removeFeedMetrics(String feed) {
+        Set<MetricID> metricIds = feedMetrics.remove(feed);
+        if (metricRegistry == null || metricIds == null) {
+            return;
+        }
+        metricIds.forEach(metricRegistry::remove);
+    }
+
+    private void registerFeedGauge(String feed, String name, Supplier<AISConnectionMetrics> metrics,
+                                   ToLongFunction<AISConnectionMetrics> metric, Tag... tags) {
+        registerFeedGauge(feed, new MetricID(name, tags), () -> {
+            AISConnectionMetrics current = metrics.get();
+            return current == null ? 0 : metric.applyAsLong(current);
+        });
+    }
+
+    private <T extends Number> void registerFeedGauge(String feed, MetricID metricId, Supplier<T> gauge) {
+        Set<MetricID> metricIds = feedMetrics.computeIfAbsent(feed, name -> ConcurrentHashMap.newKeySet());
+        if (metricIds.add(metricId)) {
+            metricRegistry.gauge(metricId, gauge);
+        }
+    }
 }
\ No newline at end of file
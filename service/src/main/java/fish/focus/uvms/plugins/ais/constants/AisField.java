@@ -23,9 +23,13 @@ public enum AisField {
     LATITUDE(8),
     COURSE_OVER_GROUND(9),
     TRUE_HEADING(10),
-    UTC_SECOND(11);
+    UTC_SECOND(11),
+    PART_NUMBER(12),
+    SHIP_TYPE(13),
+    CALL_SIGN(14),
+    VESSEL_NAME(15);
 
-    private int index;
+    private final int index;
 
     private AisField(int index) {
         this.index = index;
@@ -0,0 +1,213 @@
+package fish.focus.uvms.plugins.ais.mapper;
+
+import fish.focus.uvms.plugins.ais.constants.AisField;
+
+import static fish.focus.uvms.plugins.ais.constants.AisField.*;
+
+/**
+ * Where the {@link AisField}s of a message type are in the payload: bit offset, width, signedness, scale and the
+ * value that means "not available", as in http://catb.org/gpsd/AIVDM.html. A layout is a table indexed by
+ * {@link AisField#getIndex()}, decoding a field reads it straight from the {@link AisPayload}.
+ * <p>
+ * Adding a message type is adding its layout here and its {@link AisParser.AisType}.
+ */
+public final class AisMessageLayout {
+
+    private static final int FIELD_COUNT = AisField.values().length;
+    private static final int MESSAGE_TYPES = 64;
+    /**
+     * Returned by {@link #fixedPoint} for fields that are not available
+     */
+    public static final long NOT_AVAILABLE = Long.MIN_VALUE;
+    //according to: http://emsa.europa.eu/cise-documentation/cise-data-model-1.5.3/model/guidelines/687507181.html
+    private static final long AIS_SPEED_ERROR_CODE = 1023;
+
+    private static final AisMessageLayout[] LAYOUTS = new AisMessageLayout[MESSAGE_TYPES];
+    /**
+     * Type 24 is sent in two parts with different layouts, parts 2 and 3 are not defined
+     */
+    private static final AisMessageLayout[] TYPE24_PARTS = new AisMessageLayout[4];
+
+    static {
+        AisMessageLayout positionReport = header()
+                .unsigned(NAVIGATIONAL_STATUS, 38, 4)
+                .signed(RATE_OF_TURN, 42, 8)
+                .scaled(SPEED_OVER_GROUND, 50, 10, false, 10, AIS_SPEED_ERROR_CODE)
+                .unsigned(POSITION_ACCURACY, 60, 1)
+                .scaled(LONGITUDE, 61, 28, true, 10000, NOT_AVAILABLE)
+                .scaled(LATITUDE, 89, 27, true, 10000, NOT_AVAILABLE)
+                .scaled(COURSE_OVER_GROUND, 116, 12, false, 10, NOT_AVAILABLE)
+                .unsigned(TRUE_HEADING, 128, 9)
+                .unsigned(UTC_SECOND, 137, 6);
+        LAYOUTS[1] = positionReport;
+        LAYOUTS[2] = positionReport;
+        LAYOUTS[3] = positionReport;
+
+        LAYOUTS[5] = header()
+                .sixBitText(CALL_SIGN, 70, 42)
+                .sixBitText(VESSEL_NAME, 112, 120)
+                .unsigned(SHIP_TYPE, 232, 8);
+
+        AisMessageLayout classBPositionReport = header()
+                .scaled(SPEED_OVER_GROUND, 46, 10, false, 10, AIS_SPEED_ERROR_CODE)
+                .unsigned(POSITION_ACCURACY, 56, 1)
+                .scaled(LONGITUDE, 57, 28, true, 10000, NOT_AVAILABLE)
+                .scaled(LATITUDE, 85, 27, true, 10000, NOT_AVAILABLE)
+                .scaled(COURSE_OVER_GROUND, 112, 12, false, 10, NOT_AVAILABLE)
+                .unsigned(TRUE_HEADING, 124, 9)
+                .unsigned(UTC_SECOND, 133, 6);
+        LAYOUTS[18] = classBPositionReport;
+        LAYOUTS[19] = classBPositionReport.copy()
+                .sixBitText(VESSEL_NAME, 143, 120)
+                .unsigned(SHIP_TYPE, 263, 8);
+
+        AisMessageLayout staticDataReport = header()
+                .unsigned(PART_NUMBER, 38, 2);
+        TYPE24_PARTS[0] = staticDataReport.copy()
+                .sixBitText(VESSEL_NAME, 40, 120);
+        TYPE24_PARTS[1] = staticDataReport.copy()
+                .unsigned(SHIP_TYPE, 40, 8)
+                .sixBitText(CALL_SIGN, 90, 42);
+        TYPE24_PARTS[2] = staticDataReport;
+        TYPE24_PARTS[3] = staticDataReport;
+        LAYOUTS[24] = staticDataReport;
+
+        // long range broadcast, in 1/10 minutes and whole knots and degrees
+        LAYOUTS[27] = header()
+                .unsigned(POSITION_ACCURACY, 38, 1)
+                .unsigned(NAVIGATIONAL_STATUS, 40, 4)
+                .scaled(LONGITUDE, 44, 18, true, 10, NOT_AVAILABLE)
+                .scaled(LATITUDE, 62, 17, true, 10, NOT_AVAILABLE)
+                .scaled(SPEED_OVER_GROUND, 79, 6, false, 1, 63)
+                .scaled(COURSE_OVER_GROUND, 85, 9, false, 1, 511);
+    }
+
+    /**
+     * Indexed by {@link AisField#getIndex()}, null for fields the message type does not have
+     */
+    private final FieldLayout[] fields;
+
+    private AisMessageLayout() {
+        this(new FieldLayout[FIELD_COUNT]);
+    }
+
+    private AisMessageLayout(FieldLayout[] fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * @param payload the message
+     * @return the layout of the message, null if its type has none
+     */
+    public static AisMessageLayout forMessage(AisPayload payload) {
+        int messageType = (int) payload.unsigned(0, 6);
+        if (messageType == 24) {
+            return TYPE24_PARTS[(int) payload.unsigned(38, 2)];
+        }
+        return LAYOUTS[messageType];
+    }
+
+    /**
+     * @return true if messages of this layout have the field
+     */
+    public boolean has(AisField field) {
+        return fields[field.getIndex()] != null;
+    }
+
+    /**
+     * @return the field as sent, not scaled
+     * @throws IllegalArgumentException if the layout does not have the field
+     */
+    public long raw(AisPayload payload, AisField field) {
+        FieldLayout layout = fields[field.getIndex()];
+        if (layout == null) {
+            throw missing(field);
+        }
+        return layout.read(payload);
+    }
+
+    /**
+     * @param unit number of fixed point units in one unit of the field, a multiple of the scale of the field
+     * @return the field in fixed point, e.g. speed over ground with unit 10 is in tenths of knots for every message
+     * type. {@link #NOT_AVAILABLE} if the layout does not have the field or it is not available.
+     */
+    public long fixedPoint(AisPayload payload, AisField field, long unit) {
+        FieldLayout layout = fields[field.getIndex()];
+        if (layout == null) {
+            return NOT_AVAILABLE;
+        }
+        long raw = layout.read(payload);
+        if (raw == layout.notAvailable) {
+            return NOT_AVAILABLE;
+        }
+        return raw * unit / layout.divisor;
+    }
+
+    /**
+     * @return the six bit text of the field, see {@link AisPayload#text(int, int)}
+     * @throws IllegalArgumentException if the layout does not have the field
+     */
+    public String text(AisPayload payload, AisField field) {
+        FieldLayout layout = fields[field.getIndex()];
+        if (layout == null) {
+            throw missing(field);
+        }
+        return payload.text(layout.offset, layout.width);
+    }
+
+    // the same message for raw() and text()
+    private static IllegalArgumentException missing(AisField field) {
+        return new IllegalArgumentException("No " + field + " in this message type");
+    }
+
+    /**
+     * The fields every message starts with
+     */
+    private static AisMessageLayout header() {
+        return new AisMessageLayout()
+                .unsigned(ID, 0, 6)
+                .unsigned(REPEAT_INDICATOR, 6, 2)
+                .unsigned(MMSI, 8, 30);
+    }
+
+    private AisMessageLayout unsigned(AisField field, int offset, int width) {
+        return scaled(field, offset, width, false, 1, NOT_AVAILABLE);
+    }
+
+    private AisMessageLayout sixBitText(AisField field, int offset, int width) {
+        return unsigned(field, offset, width);
+    }
+
+    private AisMessageLayout signed(AisField field, int offset, int width) {
+        return scaled(field, offset, width, true, 1, NOT_AVAILABLE);
+    }
+
+    private AisMessageLayout scaled(AisField field, int offset, int width, boolean signed, long divisor, long notAvailable) {
+        fields[field.getIndex()] = new FieldLayout(offset, width, signed, divisor, notAvailable);
+        return this;
+    }
+
+    private AisMessageLayout copy() {
+        return new AisMessageLayout(fields.clone());
+    }
+
+    private static final class FieldLayout {
+        private final int offset;
+        private final int width;
+        private final boolean signed;
+        private final long divisor;
+        private final long notAvailable;
+
+        FieldLayout(int offset, int width, boolean signed, long divisor, long notAvailable) {
+            this.offset = offset;
+            this.width = width;
+            this.signed = signed;
+            this.divisor = divisor;
+            this.notAvailable = notAvailable;
+        }
+
+        long read(AisPayload payload) {
+            return signed ? payload.signed(offset, width) : payload.unsigned(offset, width);
+        }
+    }
+}
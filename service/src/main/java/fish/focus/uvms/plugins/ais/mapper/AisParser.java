@@ -11,8 +11,6 @@ copy of the GNU General Public License along with the IFDM Suite. If not, see <h
  */
 package fish.focus.uvms.plugins.ais.mapper;
 
-import fish.focus.schema.exchange.module.v1.ExchangeModuleMethod;
-import fish.focus.schema.exchange.module.v1.ReceiveAssetInformationRequest;
 import fish.focus.schema.exchange.movement.asset.v1.AssetId;
 import fish.focus.schema.exchange.movement.asset.v1.AssetIdList;
 import fish.focus.schema.exchange.movement.asset.v1.AssetIdType;
@@ -24,27 +22,45 @@ import fish.focus.uvms.plugins.ais.service.Conversion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static fish.focus.uvms.plugins.ais.constants.AisField.*;
 
 public class AisParser {
 
     private static final Logger LOG = LoggerFactory.getLogger(AisParser.class);
 
-    //according to: http://emsa.europa.eu/cise-documentation/cise-data-model-1.5.3/model/guidelines/687507181.html
-    private static final int AIS_SPEED_ERROR_CODE = 1023;
+    private static final String[] UPDATED_BY = new String[64];
+    private static final int MAX_MMSI = 999_999_999;
+    private static final int MID_COUNT = 1000;
+    private static final long UNKNOWN_MID_LOG_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * Per MID, reports with an unknown MID since it was last logged, and when that was
+     */
+    private static final AtomicIntegerArray UNKNOWN_MID_REPORTS = new AtomicIntegerArray(MID_COUNT);
+    private static final AtomicLongArray UNKNOWN_MID_LOGGED_AT = new AtomicLongArray(MID_COUNT);
+    // 181 and 91 degrees mean not available
+    private static final long LONGITUDE_NOT_AVAILABLE = 181L * 60 * PositionRecord.COORDINATE_UNITS_PER_MINUTE;
+    private static final long LATITUDE_NOT_AVAILABLE = 91L * 60 * PositionRecord.COORDINATE_UNITS_PER_MINUTE;
+
+    static {
+        for (int messageType = 0; messageType < UPDATED_BY.length; messageType++) {
+            UPDATED_BY[messageType] = "AIS Message Type " + messageType;
+        }
+    }
 
     private AisParser() {
     }
 
-    public static AisType parseAisType(String binary) {
-        if (binary == null) {
-            return AisType.UNKNOWN;
-        }
-        int messageType = Integer.parseInt(binary.substring(0, 6), 2);
+    /**
+     * @param messageType the message type, e.g. from {@link fish.focus.uvms.ais.Sentence#getMessageType()}
+     * @return the type, {@link AisType#UNKNOWN} for types that are not handled, among them type 4 base station
+     * reports, which are no vessel movements
+     */
+    public static AisType parseAisType(int messageType) {
         switch (messageType) {
             case 1:
                 return AisType.TYPE1;
@@ -56,245 +72,191 @@ public class AisParser {
                 return AisType.TYPE5;
             case 18:
                 return AisType.TYPE18;
+            case 19:
+                return AisType.TYPE19;
             case 24:
                 return AisType.TYPE24;
+            case 27:
+                return AisType.TYPE27;
             default:
                 return AisType.UNKNOWN;
         }
     }
 
-    public static MovementBaseType parsePositionReport(String binary, AisType aisType, Instant lesTimestamp) {
-        switch (aisType) {
-            case TYPE1:
-            case TYPE2:
-            case TYPE3:
-                return parseReportType123(binary, lesTimestamp);
-            case TYPE18:
-                return parseReportType18(binary, lesTimestamp);
-            default:
-                return null;
-        }
-    }
-
-    public static AssetDTO parseStaticReport(String binary, AisType aisType) {
-        switch (aisType) {
-            case TYPE5:
-                return parseReportType5(binary);
-            case TYPE24:
-                return parseReportType24(binary);
-            default:
-                return null;
+    /**
+     * Decodes a position report into a record, overwriting all of its fields
+     *
+     * @param lesTimestampMillis TAG block time, -1 if there is none
+     * @return false if the message is not a position report or has no position, the record is then not complete
+     */
+    public static boolean parsePositionReport(AisPayload payload, AisType aisType, long lesTimestampMillis, PositionRecord position) {
+        if (!aisType.isPositionReport()) {
+            return false;
         }
+        return parsePositionReport(payload, AisMessageLayout.forMessage(payload), lesTimestampMillis, position);
     }
 
-    public static MovementBaseType parseReportType123(String binary, Instant lesTimestamp) {
-        MovementBaseType movement = new MovementBaseType();
-        Integer messageType = Integer.parseInt(binary.substring(0, 6), 2);
-        movement.setStatus(messageType.toString());
-        Integer mmsiNumeric = Integer.MIN_VALUE;
-        try {
-            mmsiNumeric = Integer.parseInt(binary.substring(8, 38), 2);
-        } catch (NumberFormatException nfe) {
-            LOG.warn("mmsi is not numeric", nfe);
-        }
-        String mmsi = String.valueOf(mmsiNumeric);
-        movement.setMmsi(mmsi);
-        movement.setAssetId(getAssetId(mmsi));
-
-        movement.setReportedSpeed(parseSpeedOverGround(binary, 50, 60));
-        movement.setAisPositionAccuracy(Short.parseShort(binary.substring(60, 61), 2));
-        MovementPoint point = getMovementPoint(parseCoordinate(binary, 61, 89), parseCoordinate(binary, 89, 116));
-        if (point == null) {
+    public static AssetDTO parseStaticReport(AisPayload payload, AisType aisType) {
+        if (!aisType.isStaticReport()) {
             return null;
         }
-        movement.setPosition(point);
-        movement.setReportedCourse(parseCourseOverGround(binary, 116, 128));
-
-        String ansi3 = getAnsi3FromMMSI(mmsi);
-
-        String trueHeadingStr = binary.substring(128, 137);
-        Integer trueHeading = parseToNumeric("TrueHeading", trueHeadingStr);
-        movement.setTrueHeading(trueHeading);
-        movement.setPositionTime(getTimestamp(Integer.parseInt(binary.substring(137, 143), 2), lesTimestamp));
-        if (lesTimestamp != null) {
-            movement.setLesReportTime(Date.from(lesTimestamp));
-        }
-        movement.setSource(MovementSourceType.AIS);
-        movement.setFlagState(ansi3);
-        return movement;
+        return parseStaticReport(payload, AisMessageLayout.forMessage(payload));
     }
 
-    public static AssetDTO parseReportType5(String binary) {
-        ReceiveAssetInformationRequest req = new ReceiveAssetInformationRequest();
-        req.setMethod(ExchangeModuleMethod.RECEIVE_ASSET_INFORMATION);
-
-        Integer mmsiNumeric = Integer.MIN_VALUE;
-        try {
-            mmsiNumeric = Integer.parseInt(binary.substring(8, 38), 2);
-        } catch (NumberFormatException nfe) {
-            LOG.warn("mmsi is not numeric", nfe);
+    private static boolean parsePositionReport(AisPayload payload, AisMessageLayout layout, long lesTimestampMillis, PositionRecord position) {
+        long longitude = layout.fixedPoint(payload, LONGITUDE, PositionRecord.COORDINATE_UNITS_PER_MINUTE);
+        long latitude = layout.fixedPoint(payload, LATITUDE, PositionRecord.COORDINATE_UNITS_PER_MINUTE);
+        if (longitude == AisMessageLayout.NOT_AVAILABLE || latitude == AisMessageLayout.NOT_AVAILABLE
+                || longitude == LONGITUDE_NOT_AVAILABLE || latitude == LATITUDE_NOT_AVAILABLE) {
+            return false;
         }
-        String mmsi = String.valueOf(mmsiNumeric);
-
-        String vesselName = Conversion.getAsciiStringFromBinaryString(binary.substring(112, 232));
-        String ircs = Conversion.getAsciiStringFromBinaryString(binary.substring(70, 112));
-        Integer shipType = Integer.parseInt(binary.substring(232, 240), 2);
-
-        String ansi3 = getAnsi3FromMMSI(mmsi);
-
-        AssetDTO assetDTO = new AssetDTO();
-        assetDTO.setMmsi(mmsi);
-
-        assetDTO.setName(vesselName);
-        assetDTO.setIrcs(ircs);
-        assetDTO.setVesselType(Conversion.getShiptypeForCode(shipType));
-        assetDTO.setFlagStateCode(ansi3);
-        assetDTO.setUpdatedBy("AIS Message Type 5");
-        return assetDTO;
+        position.setLongitude((int) longitude);
+        position.setLatitude((int) latitude);
+        position.setMmsi((int) layout.raw(payload, MMSI));
+        position.setMessageType((int) layout.raw(payload, ID));
+        position.setPositionAccuracy((int) layout.raw(payload, POSITION_ACCURACY));
+        position.setSpeedOverGround(toShort(layout.fixedPoint(payload, SPEED_OVER_GROUND, PositionRecord.SPEED_AND_COURSE_UNITS)));
+        position.setCourseOverGround(toShort(layout.fixedPoint(payload, COURSE_OVER_GROUND, PositionRecord.SPEED_AND_COURSE_UNITS)));
+        position.setTrueHeading(layout.has(TRUE_HEADING) ? (int) layout.raw(payload, TRUE_HEADING) : -1);
+        position.setPositionTimeMillis(getPositionTime(payload, layout, lesTimestampMillis));
+        position.setLesTimeMillis(lesTimestampMillis);
+        return true;
     }
 
-    public static MovementBaseType parseReportType18(String binary, Instant lesTimestamp) {
-
-        if (binary == null || binary.trim().length() < 1) {
-            return null;
-        }
+    /**
+     * Builds the movement sent to exchange from a decoded position report
+     */
+    public static MovementBaseType toMovement(PositionRecord position) {
         MovementBaseType movement = new MovementBaseType();
-        Integer messageType = Integer.parseInt(binary.substring(0, 6), 2);
-        movement.setStatus(messageType.toString());
-        // mmsi
-        Integer mmsiNumeric = Integer.MIN_VALUE;
-        try {
-            mmsiNumeric = Integer.parseInt(binary.substring(8, 38), 2);
-        } catch (NumberFormatException nfe) {
-            LOG.warn("mmsi is not numeric", nfe);
-        }
-        String mmsi = String.valueOf(mmsiNumeric);
+        movement.setStatus(Integer.toString(position.getMessageType()));
+        String mmsi = Integer.toString(position.getMmsi());
         movement.setMmsi(mmsi);
         movement.setAssetId(getAssetId(mmsi));
 
-        // speedOverGround
-        Double speedOverGround = parseSpeedOverGround(binary, 46, 56);
-        movement.setReportedSpeed(speedOverGround);
-
-        movement.setAisPositionAccuracy(Short.parseShort(binary.substring(56, 57), 2));
-
-        // position  longitude latitude
-        MovementPoint point = getMovementPoint(parseCoordinate(binary, 57, 85), parseCoordinate(binary, 85, 112));
-        if (point == null) {
-            return null;
-        }
+        movement.setReportedSpeed(toDouble(position.getSpeedOverGround(), PositionRecord.SPEED_AND_COURSE_UNITS));
+        movement.setAisPositionAccuracy((short) position.getPositionAccuracy());
+        MovementPoint point = new MovementPoint();
+        point.setLongitude(toDegrees(position.getLongitude()));
+        point.setLatitude(toDegrees(position.getLatitude()));
         movement.setPosition(point);
-
-        // course
-        movement.setReportedCourse(parseCourseOverGround(binary, 112, 124));
-
-        // trueHeading
-        String trueHeadingStr = binary.substring(124, 133);
-        Integer trueHeading = parseToNumeric("TrueHeading", trueHeadingStr);
-        movement.setTrueHeading(trueHeading);
-
-        String ansi3 = getAnsi3FromMMSI(mmsi);
-
-        // timestamp
-        movement.setPositionTime(getTimestamp(Integer.parseInt(binary.substring(133, 139), 2), lesTimestamp));
-        if (lesTimestamp != null) {
-            movement.setLesReportTime(Date.from(lesTimestamp));
+        movement.setReportedCourse(toDouble(position.getCourseOverGround(), PositionRecord.SPEED_AND_COURSE_UNITS));
+        if (position.getTrueHeading() >= 0) {
+            movement.setTrueHeading(position.getTrueHeading());
+        }
+        movement.setPositionTime(new Date(position.getPositionTimeMillis()));
+        if (position.getLesTimeMillis() >= 0) {
+            movement.setLesReportTime(new Date(position.getLesTimeMillis()));
         }
         movement.setSource(MovementSourceType.AIS);
-        movement.setFlagState(ansi3);
+        movement.setFlagState(getAnsi3FromMMSI(position.getMmsi()));
         return movement;
     }
 
-    public static AssetDTO parseReportType24(String binary) {
+    private static AssetDTO parseStaticReport(AisPayload payload, AisMessageLayout layout) {
+        int mmsi = (int) layout.raw(payload, MMSI);
 
-        if (binary == null || binary.trim().length() < 1) {
-            return null;
+        AssetDTO assetDTO = new AssetDTO();
+        assetDTO.setMmsi(Integer.toString(mmsi));
+        if (layout.has(VESSEL_NAME)) {
+            assetDTO.setName(layout.text(payload, VESSEL_NAME));
         }
-        ReceiveAssetInformationRequest req = new ReceiveAssetInformationRequest();
-        req.setMethod(ExchangeModuleMethod.RECEIVE_ASSET_INFORMATION);
-
-        String mmsi = String.valueOf(Integer.parseInt(binary.substring(8, 38), 2));
-        String vesselName = null;
-        Integer shipType = null;
-        String ircs = null;
-        String ansi3 = null;
-
-        // if partNumber == 0   the rest of the message is interpreted as a Part A
-        // if partNumber == 1   the rest of the message is interpreted as a Part B
-        // values of 2 and 3 is not allowed
-        Integer partNumber = parseToNumeric("Part Number", binary, 38, 40);
-        if (partNumber.equals(0)) {
-            vesselName = Conversion.getAsciiStringFromBinaryString(binary.substring(40, 160));
-        } else if (partNumber.equals(1)) {
-            shipType = Integer.parseInt(binary.substring(40, 48), 2);
-            ircs = Conversion.getAsciiStringFromBinaryString(binary.substring(90, 132));
-            ansi3 = getAnsi3FromMMSI(mmsi);
+        if (layout.has(CALL_SIGN)) {
+            assetDTO.setIrcs(layout.text(payload, CALL_SIGN));
+            // part A of type 24 only has the name, the flag state is set with the call sign
+            assetDTO.setFlagStateCode(getAnsi3FromMMSI(mmsi));
         }
-
-        AssetDTO assetDTO = new AssetDTO();
-        assetDTO.setMmsi(mmsi);
-        assetDTO.setName(vesselName);
-        assetDTO.setIrcs(ircs);
-        if (shipType != null) {
-            assetDTO.setVesselType(Conversion.getShiptypeForCode(shipType));
+        if (layout.has(SHIP_TYPE)) {
+            assetDTO.setVesselType(Conversion.getShiptypeForCode((int) layout.raw(payload, SHIP_TYPE)));
         }
-        assetDTO.setFlagStateCode(ansi3);
-        assetDTO.setUpdatedBy("AIS Message Type 24");
+        assetDTO.setUpdatedBy(UPDATED_BY[(int) layout.raw(payload, ID)]);
         return assetDTO;
-
     }
 
     static String getAnsi3FromMMSI(String mmsi) {
-        if (mmsi == null || mmsi.length() < 3) {
+        int value = parseMmsi(mmsi);
+        if (value < 0) {
             LOG.warn("Vessel with mmsi={} has unknown country code", mmsi);
             return "ERR";
         }
+        return getAnsi3FromMMSI(value);
+    }
 
-        String cc = mmsi.substring(0, 3);
-        String mid;
-        if (("970".equals(cc) || "111".equals(cc)) && mmsi.length() >= 6) {
-            mid = mmsi.substring(3, 6);
-        } else if (("00".equals(cc.substring(0, 2)) || "98".equals(cc.substring(0, 2)) || "99".equals(cc.substring(0, 2)))
-                && mmsi.length() >= 5) {
-            mid = mmsi.substring(2, 5);
-        } else if (("0".equals(cc.substring(0, 1)) || "8".equals(cc.substring(0, 1))) && mmsi.length() >= 4) {
-            mid = mmsi.substring(1, 4);
-        } else {
-            mid = cc;
-        }
-
-        String ansi3 = Conversion.getAnsi3ForCountryCode(mid);
+    static String getAnsi3FromMMSI(int mmsi) {
+        int mid = getMid(mmsi);
+        String ansi3 = Conversion.getAnsi3ForMid(mid);
         if ("ERR".equals(ansi3)) {
-            LOG.warn("Vessel with mmsi={} has unknown country code={}", mmsi, mid);
+            reportUnknownMid(mid, mmsi);
         }
-
         return ansi3;
     }
 
-    private static Double parseCoordinate(String data, int stringStart, int stringEnd) {
-        try {
-            String byteString = data.substring(stringStart, stringEnd);
-            Long i = Long.parseLong(byteString, 2);
-            if (byteString.charAt(0) == '1') {
-                i -= (1L << byteString.length());
-            }
-            return (i.doubleValue() / 10000 / 60);
-        } catch (NumberFormatException nfe) {
-            return null;
+    /**
+     * The MMSI is taken as nine digits with leading zeros. Coast stations (00), craft associated with a parent ship
+     * (98) and aids to navigation (99) have the MID after two digits, groups (0) and handhelds (8) after one, SAR
+     * aircraft (111) and SARTs (970) after three.
+     *
+     * @return the maritime identification digits as a number, e.g. 265 for 265789456 and 002650702
+     */
+    private static int getMid(int mmsi) {
+        int prefix = mmsi / 1_000_000;
+        if (prefix == 111 || prefix == 970) {
+            return mmsi / 1000 % 1000;
+        }
+        if (prefix < 10 || prefix / 10 == 98 || prefix / 10 == 99) {
+            return mmsi / 10_000 % 1000;
+        }
+        if (prefix < 100 || prefix / 100 == 8) {
+            return mmsi / 100_000 % 1000;
         }
+        return prefix;
     }
 
-    private static double parseCourseOverGround(String s, int stringStart, int stringEnd) {
-        Integer i = Integer.parseInt(s.substring(stringStart, stringEnd), 2);
-        return i.doubleValue() / 10;
+    /**
+     * @return the MMSI, -1 if it is null, not all digits or more than nine digits
+     */
+    private static int parseMmsi(String mmsi) {
+        if (mmsi == null || mmsi.isEmpty()) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < mmsi.length(); i++) {
+            int digit = mmsi.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > MAX_MMSI) {
+                return -1;
+            }
+        }
+        return (int) value;
     }
 
-    private static Double parseSpeedOverGround(String s, int stringStart, int stringEnd) {
-        Integer speedOverGround = Integer.parseInt(s.substring(stringStart, stringEnd), 2);
-        if (speedOverGround == AIS_SPEED_ERROR_CODE) {
-            return null;
+    /**
+     * Logs an unknown MID at most once per interval, with the number of reports since it was last logged
+     */
+    private static void reportUnknownMid(int mid, int mmsi) {
+        // MIDs outside the table, from MMSIs of more than nine digits, share the slot of MID 0 which is never allocated
+        int slot = mid >= 0 && mid < UNKNOWN_MID_REPORTS.length() ? mid : 0;
+        UNKNOWN_MID_REPORTS.incrementAndGet(slot);
+        long now = System.currentTimeMillis();
+        long loggedAt = UNKNOWN_MID_LOGGED_AT.get(slot);
+        if (now - loggedAt >= UNKNOWN_MID_LOG_INTERVAL_MILLIS && UNKNOWN_MID_LOGGED_AT.compareAndSet(slot, loggedAt, now)) {
+            LOG.warn("Vessel with mmsi={} has unknown country code={}, {} reports with it since it was last logged",
+                    mmsi, mid, UNKNOWN_MID_REPORTS.getAndSet(slot, 0));
         }
-        return speedOverGround.doubleValue() / 10;
+    }
+
+    private static int toShort(long fixedPoint) {
+        return fixedPoint == AisMessageLayout.NOT_AVAILABLE ? -1 : (int) fixedPoint;
+    }
+
+    private static Double toDouble(int fixedPoint, int unit) {
+        return fixedPoint < 0 ? null : fixedPoint / (double) unit;
+    }
+
+    private static double toDegrees(int fixedPoint) {
+        return fixedPoint / (double) PositionRecord.COORDINATE_UNITS_PER_MINUTE / 60;
     }
 
     private static AssetId getAssetId(String mmsi) {
@@ -306,49 +268,24 @@ public class AisParser {
         return assetId;
     }
 
-    private static MovementPoint getMovementPoint(Double longitude, Double latitude) {
-
-        if (longitude == null || latitude == null || longitude.equals(181d) || latitude.equals(91d)) {
-            return null;
-        }
-
-        MovementPoint point = new MovementPoint();
-        point.setLongitude(longitude);
-        point.setLatitude(latitude);
-        return point;
+    private static long getPositionTime(AisPayload payload, AisMessageLayout layout, long lesTimestampMillis) {
+        return getTimestamp(layout.has(UTC_SECOND) ? (int) layout.raw(payload, UTC_SECOND) : -1, lesTimestampMillis);
     }
 
-    private static Date getTimestamp(Integer utcSeconds, Instant lesTimestamp) {
-        ZonedDateTime now = Instant.now().truncatedTo(ChronoUnit.SECONDS).atZone(ZoneId.of("UTC"));
-        if (lesTimestamp != null) {
-            now = lesTimestamp.atZone(ZoneId.of("UTC"));
-        }
-        if (utcSeconds != null && utcSeconds >= 0 && utcSeconds < 60) {
-            if (utcSeconds > now.getSecond()) {
-                now = now.minusMinutes(1);
+    /**
+     * @param utcSecond second of the minute the report was sent, 60 and up or -1 if not available
+     * @return the TAG block time, or now if there is none, moved back to the last time at that second
+     */
+    private static long getTimestamp(int utcSecond, long lesTimestampMillis) {
+        long time = lesTimestampMillis >= 0 ? lesTimestampMillis : System.currentTimeMillis() / 1000 * 1000;
+        if (utcSecond >= 0 && utcSecond < 60) {
+            int second = (int) Math.floorMod(Math.floorDiv(time, 1000), 60);
+            if (utcSecond > second) {
+                time -= 60_000;
             }
-            now = now.withSecond(utcSeconds);
-        }
-        return Date.from(now.toInstant());
-    }
-
-    private static Integer parseToNumeric(String fieldName, String str) {
-        try {
-            return Integer.parseInt(str, 2);
-        } catch (NumberFormatException e) {
-            LOG.error(fieldName + " is not numeric", e);
-            throw e;
-        }
-    }
-
-    private static Integer parseToNumeric(String fieldName, String sentence, int startPosInclusive, int endPosExclusive) {
-        try {
-            String str = sentence.substring(startPosInclusive, endPosExclusive);
-            return Integer.parseInt(str, 2);
-        } catch (NumberFormatException | IndexOutOfBoundsException e) {
-            LOG.error(fieldName + " parsing error", e);
-            throw e;
+            time += (utcSecond - second) * 1000L;
         }
+        return time;
     }
 
     public enum AisType {
@@ -357,7 +294,9 @@ public class AisParser {
         TYPE3(Type.POSITION),
         TYPE5(Type.STATIC),
         TYPE18(Type.POSITION),
+        TYPE19(Type.POSITION),
         TYPE24(Type.STATIC),
+        TYPE27(Type.POSITION),
         UNKNOWN(null);
 
         private Type type;
@@ -0,0 +1,157 @@
+package fish.focus.uvms.plugins.ais.mapper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The bits of an armored AIS payload, packed six per character into 64-bit words, most significant bit first.
+ * Fields are read by bit offset and width as in the message layouts of ITU-R M.1371, see
+ * http://catb.org/gpsd/AIVDM.html. Fill bits are not removed, a field is only read past the end of the message
+ * if it overlaps them.
+ */
+public final class AisPayload {
+
+    private static final int BITS_PER_CHARACTER = 6;
+
+    /**
+     * Six bit value of each ASCII payload character, -1 for characters that are not used in payloads
+     */
+    private static final byte[] DEARMOR = buildDearmorTable();
+
+    private final long[] words;
+    private final int bitLength;
+
+    private AisPayload(long[] words, int bitLength) {
+        this.words = words;
+        this.bitLength = bitLength;
+    }
+
+    /**
+     * @param armored the armored payload, one byte per character. Anything from a ',' on, the rest of the
+     *                sentence, is ignored.
+     * @throws IllegalArgumentException if a character is not a payload character
+     */
+    public static AisPayload of(byte[] armored) {
+        int length = 0;
+        while (length < armored.length && armored[length] != ',') {
+            length++;
+        }
+        int bitLength = length * BITS_PER_CHARACTER;
+        long[] words = new long[(bitLength + 63) >>> 6];
+        for (int i = 0; i < length; i++) {
+            int value = dearmor(armored[i]);
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid payload character '" + (char) (armored[i] & 0xff) + "' at " + i);
+            }
+            int position = i * BITS_PER_CHARACTER;
+            int word = position >>> 6;
+            int shift = 64 - BITS_PER_CHARACTER - (position & 63);
+            if (shift >= 0) {
+                words[word] |= (long) value << shift;
+            } else {
+                // the character is split over two words
+                words[word] |= value >>> -shift;
+                words[word + 1] |= (long) value << (64 + shift);
+            }
+        }
+        return new AisPayload(words, bitLength);
+    }
+
+    /**
+     * @param armored the armored payload, anything from a ',' on is ignored
+     * @throws IllegalArgumentException if a character is not a payload character
+     */
+    public static AisPayload of(String armored) {
+        return of(armored.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * @param armored payload character
+     * @return the six bits the character stands for, -1 if it is not a payload character
+     */
+    public static int dearmor(byte armored) {
+        return armored < 0 ? -1 : DEARMOR[armored];
+    }
+
+    /**
+     * @return number of bits, six per payload character
+     */
+    public int bitLength() {
+        return bitLength;
+    }
+
+    /**
+     * @param offset bit offset of the field
+     * @param width  field width, 1 to 63 bits
+     * @return the field as an unsigned number
+     * @throws IndexOutOfBoundsException if the field is not within the payload
+     */
+    public long unsigned(int offset, int width) {
+        return topAligned(offset, width) >>> (64 - width);
+    }
+
+    /**
+     * @param offset bit offset of the field
+     * @param width  field width, 1 to 63 bits
+     * @return the field as a two's complement number
+     * @throws IndexOutOfBoundsException if the field is not within the payload
+     */
+    public long signed(int offset, int width) {
+        return topAligned(offset, width) >> (64 - width);
+    }
+
+    /**
+     * Reads six bit ASCII text. '@', which pads text fields, is left out and surrounding spaces are trimmed.
+     *
+     * @param offset bit offset of the field
+     * @param width  field width, bits after the last whole character are ignored
+     * @return the text, empty if the field only holds padding
+     * @throws IndexOutOfBoundsException if the field is not within the payload
+     */
+    public String text(int offset, int width) {
+        StringBuilder text = new StringBuilder(width / BITS_PER_CHARACTER);
+        for (int bit = offset; bit + BITS_PER_CHARACTER <= offset + width; bit += BITS_PER_CHARACTER) {
+            int value = (int) unsigned(bit, BITS_PER_CHARACTER);
+            if (value != 0) {
+                // 0 to 31 are '@' to '_', 32 to 63 are ' ' to '?'
+                text.append((char) (value < 32 ? value + 64 : value));
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * @return the field in the upper bits of a long, the lower bits are zero
+     */
+    private long topAligned(int offset, int width) {
+        if (offset < 0 || width < 1 || width > 63 || offset + width > bitLength) {
+            throw outOfRange(offset, width);
+        }
+        int word = offset >>> 6;
+        int bit = offset & 63;
+        long value = words[word] << bit;
+        if (bit + width > 64) {
+            value |= words[word + 1] >>> (64 - bit);
+        }
+        return value & (-1L << (64 - width));
+    }
+
+    // topAligned() runs for every field that is decoded, building the message here keeps it small enough to be inlined
+    private IndexOutOfBoundsException outOfRange(int offset, int width) {
+        return new IndexOutOfBoundsException("Field of " + width + " bits at " + offset + " is not within " + bitLength + " bits");
+    }
+
+    private static byte[] buildDearmorTable() {
+        byte[] table = new byte[128];
+        for (int c = 0; c < table.length; c++) {
+            // '0' to 'W' are 0 to 39, '`' to 'w' are 40 to 63
+            if (c >= '0' && c <= 'W') {
+                table[c] = (byte) (c - '0');
+            } else if (c >= '`' && c <= 'w') {
+                table[c] = (byte) (c - '0' - 8);
+            } else {
+                table[c] = -1;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,138 @@
+package fish.focus.uvms.plugins.ais.mapper;
+
+/**
+ * A decoded position report in primitive fields. Records are reused: a report is decoded into a record with
+ * {@link AisParser#parsePositionReport}, later reports of the same vessel overwrite it with {@link #copyFrom}, and
+ * the {@link fish.focus.schema.exchange.movement.v1.MovementBaseType} is only built from the record that is sent,
+ * with {@link AisParser#toMovement}.
+ */
+public class PositionRecord {
+
+    /**
+     * Fixed point units per minute of latitude or longitude, the resolution of class A position reports
+     */
+    public static final int COORDINATE_UNITS_PER_MINUTE = 10_000;
+    /**
+     * Fixed point units per knot or degree of speed and course over ground
+     */
+    public static final int SPEED_AND_COURSE_UNITS = 10;
+
+    private int mmsi;
+    private byte messageType;
+    private byte positionAccuracy;
+    /**
+     * In 1/10000 minutes
+     */
+    private int latitude;
+    private int longitude;
+    /**
+     * In 1/10 knots, -1 if not available
+     */
+    private short speedOverGround;
+    /**
+     * In 1/10 degrees, -1 if not available
+     */
+    private short courseOverGround;
+    /**
+     * In degrees, -1 if the message type has none
+     */
+    private short trueHeading;
+    private long positionTimeMillis;
+    /**
+     * TAG block time, -1 if there is none
+     */
+    private long lesTimeMillis;
+
+    public void copyFrom(PositionRecord other) {
+        mmsi = other.mmsi;
+        messageType = other.messageType;
+        positionAccuracy = other.positionAccuracy;
+        latitude = other.latitude;
+        longitude = other.longitude;
+        speedOverGround = other.speedOverGround;
+        courseOverGround = other.courseOverGround;
+        trueHeading = other.trueHeading;
+        positionTimeMillis = other.positionTimeMillis;
+        lesTimeMillis = other.lesTimeMillis;
+    }
+
+    public int getMmsi() {
+        return mmsi;
+    }
+
+    public void setMmsi(int mmsi) {
+        this.mmsi = mmsi;
+    }
+
+    public int getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(int messageType) {
+        this.messageType = (byte) messageType;
+    }
+
+    public int getPositionAccuracy() {
+        return positionAccuracy;
+    }
+
+    public void setPositionAccuracy(int positionAccuracy) {
+        this.positionAccuracy = (byte) positionAccuracy;
+    }
+
+    public int getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(int latitude) {
+        this.latitude = latitude;
+    }
+
+    public int getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(int longitude) {
+        this.longitude = longitude;
+    }
+
+    public int getSpeedOverGround() {
+        return speedOverGround;
+    }
+
+    public void setSpeedOverGround(int speedOverGround) {
+        this.speedOverGround = (short) speedOverGround;
+    }
+
+    public int getCourseOverGround() {
+        return courseOverGround;
+    }
+
+    public void setCourseOverGround(int courseOverGround) {
+        this.courseOverGround = (short) courseOverGround;
+    }
+
+    public int getTrueHeading() {
+        return trueHeading;
+    }
+
+    public void setTrueHeading(int trueHeading) {
+        this.trueHeading = (short) trueHeading;
+    }
+
+    public long getPositionTimeMillis() {
+        return positionTimeMillis;
+    }
+
+    public void setPositionTimeMillis(long positionTimeMillis) {
+        this.positionTimeMillis = positionTimeMillis;
+    }
+
+    public long getLesTimeMillis() {
+        return lesTimeMillis;
+    }
+
+    public void setLesTimeMillis(long lesTimeMillis) {
+        this.lesTimeMillis = lesTimeMillis;
+    }
+}
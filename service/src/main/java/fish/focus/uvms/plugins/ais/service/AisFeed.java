@@ -0,0 +1,200 @@
+package fish.focus.uvms.plugins.ais.service;
+
+import fish.focus.uvms.ais.AISConnectionRequestInfo;
+import fish.focus.uvms.ais.StreamCompression;
+import fish.focus.uvms.plugins.ais.StartupBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Endpoint of an upstream AIS feed.
+ * <p>
+ * Feeds are listed by name in the {@value #FEEDS_SETTING} setting, each with its own
+ * {@code FEED.<name>.HOST}, {@code PORT}, {@code USERNAME}, {@code PASSWORD} and optional {@code COMPRESSION}
+ * (NONE, DEFLATE or GZIP) and {@code PROTOCOL} (TCP or UDP) settings. Without {@value #FEEDS_SETTING} the plugin
+ * reads a single feed from the plain HOST, PORT, USERNAME, PASSWORD, COMPRESSION and PROTOCOL settings.
+ * <p>
+ * A UDP feed is received on the local HOST address and PORT, without login.
+ * <p>
+ * A feed with a {@code REPLAY_FILE} setting replays that recorded NMEA file, plain or gzip, instead of connecting,
+ * for load tests and backfills. HOST and PORT are not needed then. {@code REPLAY_SPEED} is a multiple of the
+ * recorded pace, e.g. 1 or 10x, or MAX for as fast as the plugin can process, 1 by default.
+ */
+public class AisFeed {
+
+    public enum Protocol {
+        /**
+         * Connect and log in to the feed
+         */
+        TCP,
+        /**
+         * Receive datagrams sent by the receivers
+         */
+        UDP;
+
+        static Protocol parse(String value) {
+            return value == null || value.isBlank() ? TCP : valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    static final String FEEDS_SETTING = "FEEDS";
+    private static final String FEED_SETTING_PREFIX = "FEED.";
+
+    /**
+     * Replay speed for as fast as possible
+     */
+    public static final double MAX_REPLAY_SPEED = 0;
+
+    private final String name;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final StreamCompression compression;
+    private final Protocol protocol;
+    private final String replayFile;
+    private final double replaySpeed;
+
+    public AisFeed(String name, String host, int port, String username, String password) {
+        this(name, host, port, username, password, StreamCompression.NONE, Protocol.TCP);
+    }
+
+    public AisFeed(String name, String host, int port, String username, String password, StreamCompression compression,
+                   Protocol protocol) {
+        this(name, host, port, username, password, compression, protocol, null, 1);
+    }
+
+    public AisFeed(String name, String host, int port, String username, String password, StreamCompression compression,
+                   Protocol protocol, String replayFile, double replaySpeed) {
+        this.name = name;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.compression = compression;
+        this.protocol = protocol;
+        this.replayFile = replayFile;
+        this.replaySpeed = replaySpeed;
+    }
+
+    static List<AisFeed> fromSettings(StartupBean startUp) {
+        List<String> names = startUp.getSettingAsList(FEEDS_SETTING);
+        List<AisFeed> feeds = new ArrayList<>();
+        if (names.isEmpty()) {
+            feeds.add(fromSettings(startUp, AISConnectionRequestInfo.DEFAULT_FEED, ""));
+        } else {
+            for (String name : names) {
+                feeds.add(fromSettings(startUp, name, FEED_SETTING_PREFIX + name + "."));
+            }
+        }
+        return feeds;
+    }
+
+    private static AisFeed fromSettings(StartupBean startUp, String name, String prefix) {
+        String host = startUp.getSetting(prefix + "HOST");
+        String port = startUp.getSetting(prefix + "PORT");
+        String username = startUp.getSetting(prefix + "USERNAME");
+        String password = startUp.getSetting(prefix + "PASSWORD");
+        StreamCompression compression = StreamCompression.parse(startUp.getSetting(prefix + "COMPRESSION"));
+        Protocol protocol = Protocol.parse(startUp.getSetting(prefix + "PROTOCOL"));
+        String replayFile = startUp.getSetting(prefix + "REPLAY_FILE");
+        double replaySpeed = parseReplaySpeed(startUp.getSetting(prefix + "REPLAY_SPEED"));
+        if (replayFile == null || replayFile.isBlank()) {
+            replayFile = null;
+        }
+        return new AisFeed(name, host, replayFile != null && port == null ? 0 : Integer.parseInt(port), username, password,
+                compression, protocol, replayFile, replaySpeed);
+    }
+
+    static double parseReplaySpeed(String value) {
+        if (value == null || value.isBlank()) {
+            return 1;
+        }
+        String speed = value.trim().toUpperCase();
+        if ("MAX".equals(speed)) {
+            return MAX_REPLAY_SPEED;
+        }
+        if (speed.endsWith("X")) {
+            speed = speed.substring(0, speed.length() - 1);
+        }
+        double parsed = Double.parseDouble(speed);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("Replay speed must be positive or MAX, was " + value);
+        }
+        return parsed;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDefault() {
+        return AISConnectionRequestInfo.DEFAULT_FEED.equals(name);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public StreamCompression getCompression() {
+        return compression;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public boolean isReplay() {
+        return replayFile != null;
+    }
+
+    public String getReplayFile() {
+        return replayFile;
+    }
+
+    /**
+     * @return multiple of the recorded pace, {@value #MAX_REPLAY_SPEED} for as fast as possible
+     */
+    public double getReplaySpeed() {
+        return replaySpeed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        AisFeed aisFeed = (AisFeed) o;
+        return port == aisFeed.port && Objects.equals(name, aisFeed.name) && Objects.equals(host, aisFeed.host)
+                && Objects.equals(username, aisFeed.username) && Objects.equals(password, aisFeed.password)
+                && compression == aisFeed.compression && protocol == aisFeed.protocol
+                && Objects.equals(replayFile, aisFeed.replayFile) && Double.compare(replaySpeed, aisFeed.replaySpeed) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, host, port, username, password, compression, protocol, replayFile, replaySpeed);
+    }
+
+    @Override
+    public String toString() {
+        if (replayFile != null) {
+            return name + " (replay of " + replayFile + ")";
+        }
+        return name + " (" + (protocol == Protocol.UDP ? "udp://" : "") + host + ":" + port + ")";
+    }
+}
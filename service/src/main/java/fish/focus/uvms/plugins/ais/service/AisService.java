@@ -33,14 +33,13 @@ import javax.ejb.Startup;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 import javax.resource.ResourceException;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
-import static java.time.temporal.ChronoUnit.MINUTES;
-
 @Singleton
 @Startup
 @DependsOn({"StartupBean"})
@@ -48,8 +47,18 @@ public class AisService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AisService.class);
 
-    private final List<CompletableFuture<Void>> processes = new ArrayList<>();
-    private final Set<String> knownFishingVessels = new HashSet<>();
+    // batches being processed at the same time, the RA pushes a batch per feed several times a second
+    private static final int MAX_PROCESSES_IN_FLIGHT = 8;
+
+    private final Queue<CompletableFuture<Void>> processes = new ConcurrentLinkedQueue<>();
+    private final Semaphore processesInFlight = new Semaphore(MAX_PROCESSES_IN_FLIGHT);
+    // read by every process and changed by the asset list fetch and EventStreamListener
+    private final Set<String> knownFishingVessels = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The connected feeds by feed name
+     */
+    private final Map<String, FeedConnection> feeds = new ConcurrentHashMap<>();
 
     private StartupBean startUp;
     private ProcessService processService;
@@ -59,31 +68,15 @@ public class AisService {
     private ManagedExecutorService executorService;
     private AISConnectionFactory factory;
 
-    private AISConnection connection;
-
     private AssetClient assetClient;
 
     private boolean isAssetListOK = false;
 
-    /**
-     * Used for keeping track of reconnect attempts for the "socket stuck" problem
-     */
-    private int numberOfReconnectAttempts = 0;
-
     /**
     * Used to keep track of retrieval attempts for the asset list
     */
     private int numberOfFetchAssetListAttempts = 0;
 
-    /**
-     * Used when the socket has gotten "stuck".
-     */
-    Instant lastConnectionAttempt;
-
-    int shortBackOffTime = 1;
-    int longBackOffTime = 10;
-    ChronoUnit backOffUnit = MINUTES;
-
     public AisService() {
     }
 
@@ -104,12 +97,80 @@ public class AisService {
     @PostConstruct
     public void init() {
         LOG.debug("AisService init");
-        try {
-            if (factory == null) {
-                return;
+        if (factory == null) {
+            return;
+        }
+        startUp.registerLiveReadersMetric(factory::getLiveReaders);
+
+        List<AisFeed> configuredFeeds = readFeeds();
+        if (configuredFeeds == null) {
+            return;
+        }
+        for (AisFeed feed : configuredFeeds) {
+            FeedConnection feedConnection = feeds.get(feed.getName());
+            if (feedConnection == null) {
+                feedConnection = addFeed(feed);
+            }
+            initFeed(feedConnection);
+        }
+    }
+
+    /**
+     * Applies the feed settings. Feeds that were removed or whose endpoint changed are closed and new
+     * feeds are connected, the other feeds keep running.
+     */
+    public void updateFeeds() {
+        if (factory == null) {
+            return;
+        }
+        List<AisFeed> configuredFeeds = readFeeds();
+        if (configuredFeeds == null) {
+            return;
+        }
+
+        Map<String, AisFeed> configuredByName = new HashMap<>();
+        configuredFeeds.forEach(feed -> configuredByName.put(feed.getName(), feed));
+        for (FeedConnection feedConnection : new ArrayList<>(feeds.values())) {
+            AisFeed feed = feedConnection.getFeed();
+            if (!feed.equals(configuredByName.get(feed.getName()))) {
+                LOG.info("Removing AIS feed {}", feed);
+                removeFeed(feedConnection);
+            }
+        }
+        for (AisFeed feed : configuredFeeds) {
+            if (!feeds.containsKey(feed.getName())) {
+                LOG.info("Adding AIS feed {}", feed);
+                initFeed(addFeed(feed));
             }
+        }
+    }
 
-            connection = factory.getConnection();
+    private List<AisFeed> readFeeds() {
+        try {
+            return AisFeed.fromSettings(startUp);
+        } catch (RuntimeException e) {
+            LOG.error("Invalid AIS feed settings: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private FeedConnection addFeed(AisFeed feed) {
+        FeedConnection feedConnection = new FeedConnection(feed, this::process);
+        feeds.put(feed.getName(), feedConnection);
+        startUp.registerFeedMetrics(feed.getName(), feedConnection::getReceivedSentences, feedConnection::getMetrics);
+        return feedConnection;
+    }
+
+    private void removeFeed(FeedConnection feedConnection) {
+        feeds.remove(feedConnection.getFeed().getName());
+        feedConnection.close();
+        startUp.removeFeedMetrics(feedConnection.getFeed().getName());
+    }
+
+    private void initFeed(FeedConnection feed) {
+        try {
+            AISConnection connection = getConnection(feed.getFeed());
+            feed.setConnection(connection);
 
             if (connection == null || connection.isOpen()) {
                 return;
@@ -119,39 +180,37 @@ public class AisService {
                 return;
             }
 
-            connect();
+            connect(feed);
         } catch (ResourceException e) {
             LOG.error("Exception during init: ", e);
         }
     }
 
-    private void connect() {
-        lastConnectionAttempt = Instant.now();
-
-        String host = startUp.getSetting("HOST");
-        int port = Integer.parseInt(startUp.getSetting("PORT"));
-        String username = startUp.getSetting("USERNAME");
-        String password = startUp.getSetting("PASSWORD");
+    private AISConnection getConnection(AisFeed feed) throws ResourceException {
+        return feed.isDefault() ? factory.getConnection() : factory.getConnection(feed.getName());
+    }
 
-        LOG.info("Trying to connect to {}:{}", host, port);
-        connection.open(host, port, username, password);
+    private void connect(FeedConnection feed) {
+        LOG.info("Trying to connect to {}", feed.getFeed());
+        feed.open();
     }
 
     void fetchAssetList () {
         SearchBranch searchBranch = new SearchBranch(true);
         List<AssetDTO> assetDTOList =  assetClient.getAssetList(searchBranch);
-        knownFishingVessels.clear();
+        Set<String> fishingVessels = new HashSet<>();
         for (AssetDTO assetDTO: assetDTOList) {
-            knownFishingVessels.add(assetDTO.getMmsi());
+            fishingVessels.add(assetDTO.getMmsi());
         }
+        // processes running meanwhile see the old or the new vessels, never an empty set
+        knownFishingVessels.retainAll(fishingVessels);
+        knownFishingVessels.addAll(fishingVessels);
     }
 
     @PreDestroy
     public void destroy() {
         LOG.debug("Shutting down AisService");
-        if (connection != null) {
-            connection.close();
-        }
+        feeds.values().forEach(FeedConnection::close);
         Iterator<CompletableFuture<Void>> processIterator = processes.iterator();
         while (processIterator.hasNext()) {
             CompletableFuture<Void> process = processIterator.next();
@@ -170,7 +229,23 @@ public class AisService {
 
     @Schedule(second = "*/15", minute = "*", hour = "*", persistent = false)
     public void connectAndRetrieve() {
-        if (isConnectionDown()) {
+        if (!startUp.isEnabled()) {
+            destroy();
+            return;
+        }
+
+        if (feeds.isEmpty()) {
+            LOG.warn("No AIS feed connected. Connecting again.");
+            init();
+        }
+
+        List<FeedConnection> liveFeeds = new ArrayList<>();
+        for (FeedConnection feed : feeds.values()) {
+            if (!isConnectionDown(feed)) {
+                liveFeeds.add(feed);
+            }
+        }
+        if (liveFeeds.isEmpty()) {
             return;
         }
 
@@ -184,27 +259,64 @@ public class AisService {
 
         processes.removeIf(process -> process.isDone() || process.isCancelled());
 
-        List<Sentence> sentences = connection.getSentences();
-        startUp.incrementAisIncomingAll(sentences.size());
-        CompletableFuture<Void> process = CompletableFuture.supplyAsync(() -> processService.processMessages(sentences, knownFishingVessels), executorService)
-                .thenAccept(result -> {
-                            downsamplingService.getDownSampledMovements().putAll(result.getDownsampledMovements());
-                            downsamplingAssetService.getStoredAssetInfo().putAll(result.getDownsampledAssets());
-                            downsamplingFishingService.getDownSampledFishingVesselMovements().putAll(result.getDownSampledFishingVesselMovements());
-                        }
-                );
-        processes.add(process);
-        LOG.info("Got {} sentences from AIS RA. Currently running {} parallel threads", sentences.size(), processes.size());
+        for (FeedConnection feed : liveFeeds) {
+            retrieve(feed);
+        }
+    }
 
+    private void retrieve(FeedConnection feed) {
+        // from now on sentences are pushed as they arrive, the poll below only picks up what was left in the queue
+        feed.subscribe();
+
+        List<Sentence> sentences = feed.pollSentences();
         if (!sentences.isEmpty()) {
-            // reconnecting worked and are now receiving messages again
-            numberOfReconnectAttempts = 0;
+            process(sentences);
         }
+        long received = sentences.size() + feed.takePushedCount();
+        startUp.registerFilteredMessageMetrics(feed.getFeed().getName(), feed::getMetrics);
+        // a silent feed is reconnected by the idle read watchdog of the RA, not from here
+        LOG.info("Got {} sentences from AIS feed {}. Currently running {} parallel threads", received, feed.getFeed().getName(), processes.size());
+    }
 
-        if (sentences.isEmpty() && shouldTryToReconnect()) {
-            // no new data was sent. This might indicate the "socket stuck" problem
-            LOG.warn("No new data received. Reconnecting socket.");
-            reconnect();
+    private void process(List<Sentence> sentences) {
+        startUp.incrementAisIncomingAll(sentences.size());
+        // waiting here holds back the RA dispatcher, so a backlog builds in the bounded RA queue and its overflow
+        // policy decides what is dropped, not the executor
+        if (!acquireProcessPermit()) {
+            startUp.incrementAisIncomingDropped(sentences.size());
+            LOG.warn("Dropped {} sentences, interrupted while {} batches were being processed", sentences.size(), MAX_PROCESSES_IN_FLIGHT);
+            return;
+        }
+        CompletableFuture<Void> process;
+        try {
+            process = CompletableFuture.supplyAsync(() -> processService.processMessages(sentences, knownFishingVessels), executorService)
+                    .thenAccept(result -> {
+                                downsamplingService.getDownSampledMovements().putAll(result.getDownsampledMovements());
+                                downsamplingAssetService.getStoredAssetInfo().putAll(result.getDownsampledAssets());
+                                downsamplingFishingService.getDownSampledFishingVesselMovements().putAll(result.getDownSampledFishingVesselMovements());
+                            }
+                    );
+        } catch (RuntimeException e) {
+            processesInFlight.release();
+            startUp.incrementAisIncomingDropped(sentences.size());
+            LOG.error("Could not process {} sentences: {}", sentences.size(), e.getMessage());
+            return;
+        }
+        process.whenComplete((result, e) -> processesInFlight.release());
+        processes.removeIf(CompletableFuture::isDone);
+        processes.add(process);
+    }
+
+    /**
+     * @return false if the thread was interrupted while waiting, e.g. because the RA is stopping
+     */
+    private boolean acquireProcessPermit() {
+        try {
+            processesInFlight.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 
@@ -220,57 +332,30 @@ public class AisService {
         }
     }
 
-    private boolean isConnectionDown() {
-        if (!startUp.isEnabled()) {
-            destroy();
-            return true;
-        }
-
+    private boolean isConnectionDown(FeedConnection feed) {
+        AISConnection connection = feed.getConnection();
         if (connection != null && !connection.isOpen()) {
-            connect();
+            connect(feed);
         }
 
         if (connection == null || !connection.isOpen()) {
-            LOG.warn("Connection was down. Reconnecting again.");
-            reconnect();
+            LOG.warn("Connection to AIS feed {} was down. Reconnecting again.", feed.getFeed().getName());
+            reconnect(feed);
         }
 
+        connection = feed.getConnection();
         if (connection == null || !connection.isOpen()) {
             // failed to init a new connection above => try again later
-            LOG.warn("Failed to init an AIS connection");
+            LOG.warn("Failed to init an AIS connection to feed {}", feed.getFeed().getName());
             return true;
         }
 
         return false;
     }
 
-    /**
-     * Back off 1 min between connection retries for the first 5 tries. Then wait 10min before retrying again.
-     *
-     * @return true if the connection should be reconnected. False otherwise.
-     */
-    private boolean shouldTryToReconnect() {
-        var now = Instant.now();
-
-        int backOffTime = longBackOffTime;
-
-        if (numberOfReconnectAttempts < 5) {
-            backOffTime = shortBackOffTime;
-        }
-
-        Instant earliestNextAttempt = lastConnectionAttempt.plus(backOffTime, backOffUnit);
-        boolean shouldTryReconnect = !now.isBefore(earliestNextAttempt);
-        LOG.info("{} connection attempts. Last attempt at {}. Earliest next attempt at {}. Now is {}. Reconnect now = {}",
-                numberOfReconnectAttempts, lastConnectionAttempt, earliestNextAttempt, now, shouldTryReconnect);
-        return shouldTryReconnect;
-    }
-
-    private void reconnect() {
-        if (connection != null) {
-            connection.close();
-        }
-        numberOfReconnectAttempts += 1;
-        init();
+    private void reconnect(FeedConnection feed) {
+        feed.close();
+        initFeed(feed);
     }
 
     public Set<String> getKnownFishingVessels() {
@@ -289,4 +374,4 @@ public class AisService {
     public void setNumberOfFetchAssetListAttempts(int numberOfFetchAssetListAttempts) {
         this.numberOfFetchAssetListAttempts = numberOfFetchAssetListAttempts;
     }
-}
\ No newline at end of file
+}
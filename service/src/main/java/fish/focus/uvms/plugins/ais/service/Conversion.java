@@ -26,6 +26,10 @@ public class Conversion {
     private static Map<String, String> symbolMap = buildSymbolMap();
     private static Map<String, Character> binToAsciiMap = buildBinToAsciiMap();
     private static Map<String, CountryCode> countryCodeMap = buildCountryCodeMap();
+    /**
+     * ANSI3 code by MID, null for MIDs that are not allocated
+     */
+    private static String[] ansi3ByMid = buildAnsi3ByMid();
     private static Map<Integer, String> shipTypeMap = buildShiptypeMap();
 
     private Conversion() {
@@ -48,6 +52,15 @@ public class Conversion {
         return cc.getAnsi3();
     }
 
+    /**
+     * @param mid the three digit maritime identification digits as a number
+     * @return the ANSI3 code of the country, ERR if the MID is unknown
+     */
+    public static String getAnsi3ForMid(int mid) {
+        String ansi3 = mid >= 0 && mid < ansi3ByMid.length ? ansi3ByMid[mid] : null;
+        return ansi3 == null ? "ERR" : ansi3;
+    }
+
     public static String getBinaryForSymbol(char c) {
         return symbolMap.get("" + c);
     }
@@ -476,6 +489,14 @@ public class Conversion {
         return countryCodes;
     }
 
+    private static String[] buildAnsi3ByMid() {
+        String[] ansi3ByMid = new String[1000];
+        for (CountryCode countryCode : countryCodeMap.values()) {
+            ansi3ByMid[Integer.parseInt(countryCode.getCode())] = countryCode.getAnsi3();
+        }
+        return ansi3ByMid;
+    }
+
 
     private static String removeTrailingSnabelA(String s) {
         return s.replace("@", "").trim();
@@ -1,36 +1,160 @@
 package fish.focus.uvms.plugins.ais.service;
 
+import fish.focus.uvms.ais.Sentence;
 import fish.focus.uvms.asset.client.model.AssetDTO;
 import fish.focus.uvms.plugins.ais.StartupBean;
+import fish.focus.uvms.plugins.ais.mapper.AisPayload;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.annotation.Gauge;
 
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.inject.Inject;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @Singleton
 public class DownsamplingAssetService {
 
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // set in a stored fingerprint when the report was of a fishing vessel
+    private static final long FISHING_VESSEL = 1;
+
     @Inject
     private StartupBean startUp;
 
     @Inject
     private ExchangeService exchangeService;
 
-    private Map<String, AssetDTO> downSampledAssetInfo = new HashMap<>();
+    private final Map<String, AssetDTO> downSampledAssetInfo = new ConcurrentHashMap<>();
+
+    /**
+     * Fingerprint of the last static report payload of each vessel since the last asset update, see
+     * {@link #fingerprintKey(Sentence)}. The lowest bit is {@link #FISHING_VESSEL} instead of a hash bit.
+     */
+    private final ConcurrentMap<Long, Long> staticReportFingerprints = new ConcurrentHashMap<>();
+    private final LongAdder staticReports = new LongAdder();
+    private final LongAdder unchangedStaticReports = new LongAdder();
 
     @Schedule(minute = "6", hour = "*", persistent = false)
     public void sendAssetUpdates() {
         if (!startUp.isEnabled()) {
             return;
         }
-        exchangeService.sendAssetUpdates(downSampledAssetInfo.values());
-        downSampledAssetInfo.clear();
+        // processes keep adding assets while they are sent, an asset replaced meanwhile is left for the next update
+        List<AssetDTO> assets = new ArrayList<>();
+        for (Map.Entry<String, AssetDTO> asset : downSampledAssetInfo.entrySet()) {
+            if (downSampledAssetInfo.remove(asset.getKey(), asset.getValue())) {
+                assets.add(asset.getValue());
+            }
+        }
+        exchangeService.sendAssetUpdates(assets);
+        // the next update sends every vessel that reports again, changed or not
+        staticReportFingerprints.clear();
     }
 
     public Map<String, AssetDTO> getStoredAssetInfo() {
         return downSampledAssetInfo;
     }
 
+    /**
+     * A vessel sends the same static report every few minutes. A report that has the same payload as the last one
+     * of the vessel since the last asset update does not need to be decoded again. The known fishing vessels may
+     * have been reloaded since, so a fishing vessel is added to them again as decoding the report would.
+     *
+     * @param sentence            a type 5 or 24 report
+     * @param knownFishingVessels MMSIs of the known fishing vessels
+     * @return true if the payload is the same as the last one stored with {@link #storeStaticReport(Sentence, boolean)}
+     */
+    @Lock(LockType.READ)
+    public boolean isUnchangedStaticReport(Sentence sentence, Set<String> knownFishingVessels) {
+        staticReports.increment();
+        long key = fingerprintKey(sentence);
+        if (key < 0) {
+            return false;
+        }
+        Long stored = staticReportFingerprints.get(key);
+        if (stored == null || (stored & ~FISHING_VESSEL) != fingerprint(sentence.getPayload())) {
+            return false;
+        }
+        if ((stored & FISHING_VESSEL) != 0) {
+            knownFishingVessels.add(Integer.toString(sentence.getMmsi()));
+        }
+        unchangedStaticReports.increment();
+        return true;
+    }
+
+    /**
+     * Stores the fingerprint of a static report that has been decoded
+     *
+     * @param fishingVessel true if the report is of a fishing vessel
+     */
+    @Lock(LockType.READ)
+    public void storeStaticReport(Sentence sentence, boolean fishingVessel) {
+        long key = fingerprintKey(sentence);
+        if (key >= 0) {
+            staticReportFingerprints.put(key, fingerprint(sentence.getPayload()) | (fishingVessel ? FISHING_VESSEL : 0));
+        }
+    }
+
+    @Gauge(unit = MetricUnits.NONE, name = "ais_static_reports", absolute = true)
+    public long getStaticReports() {
+        return staticReports.sum();
+    }
+
+    @Gauge(unit = MetricUnits.NONE, name = "ais_static_reports_unchanged", absolute = true)
+    public long getUnchangedStaticReports() {
+        return unchangedStaticReports.sum();
+    }
+
+    @Gauge(unit = MetricUnits.NONE, name = "ais_static_reports_unchanged_ratio", absolute = true)
+    public double getUnchangedStaticReportRatio() {
+        long reports = staticReports.sum();
+        return reports == 0 ? 0 : (double) unchangedStaticReports.sum() / reports;
+    }
+
+    /**
+     * Type 5 and the two parts of type 24 are compared separately, so the key is the MMSI and which of them the
+     * report is
+     *
+     * @return the key, -1 if the MMSI or the type 24 part cannot be read
+     */
+    private static long fingerprintKey(Sentence sentence) {
+        int mmsi = sentence.getMmsi();
+        if (mmsi < 0) {
+            return -1;
+        }
+        if (sentence.getMessageType() != 24) {
+            return (long) mmsi << 2;
+        }
+        // the part number is bits 38 and 39, in the seventh character
+        byte[] payload = sentence.getPayload();
+        int part = payload.length > 6 ? AisPayload.dearmor(payload[6]) : -1;
+        if (part < 0) {
+            return -1;
+        }
+        return ((long) mmsi << 2) | (1 + ((part >> 2) & 1));
+    }
+
+    /**
+     * @return 64 bit FNV-1a hash of the armored payload, up to the ',' before the fill bits, without the lowest bit
+     */
+    private static long fingerprint(byte[] payload) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : payload) {
+            if (b == ',') {
+                break;
+            }
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return hash & ~FISHING_VESSEL;
+    }
 }
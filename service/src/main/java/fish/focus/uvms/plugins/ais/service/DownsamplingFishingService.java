@@ -1,6 +1,8 @@
 package fish.focus.uvms.plugins.ais.service;
 
 import fish.focus.schema.exchange.movement.v1.MovementBaseType;
+import fish.focus.uvms.plugins.ais.mapper.AisParser;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,12 +14,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 @Singleton
 public class DownsamplingFishingService {
     private static final Logger LOG = LoggerFactory.getLogger(DownsamplingFishingService.class);
 
-    private final ConcurrentMap<String, MovementBaseType> downSampledFishingVesselMovements = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, PositionRecord> downSampledFishingVesselMovements = new ConcurrentHashMap<>();
 
     @Inject
     private ExchangeService exchangeService;
@@ -31,13 +34,15 @@ public class DownsamplingFishingService {
             return;
         }
         LOG.info("Handle {} downSampledFishingVesselMovements", downSampledFishingVesselMovements.size());
-        List<MovementBaseType> movements = new ArrayList<>(downSampledFishingVesselMovements.values());
+        List<PositionRecord> positions = new ArrayList<>(downSampledFishingVesselMovements.values());
         downSampledFishingVesselMovements.clear();
+        // only the positions that are sent are converted
+        List<MovementBaseType> movements = positions.stream().map(AisParser::toMovement).collect(Collectors.toList());
         List<MovementBaseType> failedToSendMovements = exchangeService.sendMovements(movements);
         failedMovementsService.add(failedToSendMovements);
     }
 
-    public Map<String, MovementBaseType> getDownSampledFishingVesselMovements() {
+    public Map<Integer, PositionRecord> getDownSampledFishingVesselMovements() {
         return downSampledFishingVesselMovements;
     }
 }
@@ -13,6 +13,8 @@ package fish.focus.uvms.plugins.ais.service;
 
 import fish.focus.schema.exchange.movement.v1.MovementBaseType;
 import fish.focus.uvms.plugins.ais.StartupBean;
+import fish.focus.uvms.plugins.ais.mapper.AisParser;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,13 +26,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 @Singleton
 public class DownsamplingService {
     private static final Logger LOG = LoggerFactory.getLogger(DownsamplingService.class);
     private static final Logger LOG_SAVED_MOVEMENTS = LoggerFactory.getLogger("SAVED_MOVEMENTS");
 
-    private final ConcurrentMap<String, MovementBaseType> downSampledMovements = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, PositionRecord> downSampledMovements = new ConcurrentHashMap<>();
 
     @Inject
     private StartupBean startUp;
@@ -50,8 +53,10 @@ public class DownsamplingService {
 
         LOG.info("Handle {} downSampledMovements, onlyAisFromFishingVessels:{}", downSampledMovements.size(), onlyAisFromFishingVessels);
 
-        List<MovementBaseType> movements = new ArrayList<>(downSampledMovements.values());
+        List<PositionRecord> positions = new ArrayList<>(downSampledMovements.values());
         downSampledMovements.clear();
+        // only the positions that are sent are converted
+        List<MovementBaseType> movements = positions.stream().map(AisParser::toMovement).collect(Collectors.toList());
 
         if (onlyAisFromFishingVessels) {
             LOG_SAVED_MOVEMENTS.info("---- START logging {} downSampledMovements", movements.size());
@@ -64,7 +69,7 @@ public class DownsamplingService {
         }
     }
 
-    public Map<String, MovementBaseType> getDownSampledMovements() {
+    public Map<Integer, PositionRecord> getDownSampledMovements() {
         return downSampledMovements;
     }
 }
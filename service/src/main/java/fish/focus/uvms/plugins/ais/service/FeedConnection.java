@@ -0,0 +1,108 @@
+package fish.focus.uvms.plugins.ais.service;
+
+import fish.focus.uvms.ais.AISConnection;
+import fish.focus.uvms.ais.AISConnectionMetrics;
+import fish.focus.uvms.ais.Sentence;
+import fish.focus.uvms.ais.SentenceListener;
+import fish.focus.uvms.ais.StreamCompression;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Connection state of one AIS feed in {@link AisService}.
+ */
+class FeedConnection {
+
+    private final AisFeed feed;
+    private final SentenceListener listener;
+
+    /**
+     * Sentences pushed by the RA since the last scheduled run
+     */
+    private final AtomicLong pushedSentences = new AtomicLong();
+    private final LongAdder receivedSentences = new LongAdder();
+
+    private AISConnection connection;
+    private boolean subscribed = false;
+
+    FeedConnection(AisFeed feed, Consumer<List<Sentence>> processor) {
+        this.feed = feed;
+        this.listener = sentences -> {
+            pushedSentences.addAndGet(sentences.size());
+            receivedSentences.add(sentences.size());
+            processor.accept(sentences);
+        };
+    }
+
+    AisFeed getFeed() {
+        return feed;
+    }
+
+    AISConnection getConnection() {
+        return connection;
+    }
+
+    void setConnection(AISConnection connection) {
+        this.connection = connection;
+        this.subscribed = false;
+    }
+
+    boolean isOpen() {
+        return connection != null && connection.isOpen();
+    }
+
+    void open() {
+        if (feed.isReplay()) {
+            connection.replay(feed.getReplayFile(), feed.getReplaySpeed());
+        } else if (feed.getProtocol() == AisFeed.Protocol.UDP) {
+            connection.listen(feed.getHost(), feed.getPort());
+        } else if (feed.getCompression() == StreamCompression.NONE) {
+            connection.open(feed.getHost(), feed.getPort(), feed.getUsername(), feed.getPassword());
+        } else {
+            connection.open(feed.getHost(), feed.getPort(), feed.getUsername(), feed.getPassword(), feed.getCompression());
+        }
+    }
+
+    void subscribe() {
+        if (!subscribed) {
+            connection.subscribe(listener);
+            subscribed = true;
+        }
+    }
+
+    void close() {
+        if (connection != null) {
+            connection.unsubscribe(listener);
+            connection.close();
+        }
+        subscribed = false;
+    }
+
+    /**
+     * @return sentences left in the RA queue, these have not been pushed to the listener
+     */
+    List<Sentence> pollSentences() {
+        List<Sentence> sentences = connection.getSentences();
+        receivedSentences.add(sentences.size());
+        return sentences;
+    }
+
+    /**
+     * @return number of pushed sentences since the previous call
+     */
+    long takePushedCount() {
+        return pushedSentences.getAndSet(0);
+    }
+
+    long getReceivedSentences() {
+        return receivedSentences.sum();
+    }
+
+    AISConnectionMetrics getMetrics() {
+        AISConnection current = connection;
+        return current == null ? null : current.getMetrics();
+    }
+}
@@ -89,6 +89,8 @@ public class PluginService {
                 LOG.debug("Setting [ {} : {} ]", values.getKey(), values.getValue());
                 startupBean.getSettings().put(values.getKey(), values.getValue());
             }
+            // connects new feeds and drops removed ones, the other feeds keep running
+            aisService.updateFeeds();
             return AcknowledgeTypeType.OK;
         } catch (Exception e) {
             LOG.error("Failed to set config in {}", startupBean.getRegisterClassName());
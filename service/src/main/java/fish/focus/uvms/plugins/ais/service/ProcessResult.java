@@ -11,36 +11,36 @@ copy of the GNU General Public License along with the IFDM Suite. If not, see <h
  */
 package fish.focus.uvms.plugins.ais.service;
 
-import fish.focus.schema.exchange.movement.v1.MovementBaseType;
 import fish.focus.uvms.asset.client.model.AssetDTO;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 
 import java.util.Map;
 
 public class ProcessResult {
 
-    private Map<String, MovementBaseType> downsampledMovements;
-    private Map<String, MovementBaseType> downSampledFishingVesselMovements;
+    private Map<Integer, PositionRecord> downsampledMovements;
+    private Map<Integer, PositionRecord> downSampledFishingVesselMovements;
     private Map<String, AssetDTO> downsampledAssets;
 
-    public ProcessResult(Map<String, MovementBaseType> downsampledMovements, Map<String, MovementBaseType> downSampledFishingVesselMovements, Map<String, AssetDTO> downsampledAssets) {
+    public ProcessResult(Map<Integer, PositionRecord> downsampledMovements, Map<Integer, PositionRecord> downSampledFishingVesselMovements, Map<String, AssetDTO> downsampledAssets) {
         this.downsampledMovements = downsampledMovements;
         this.downSampledFishingVesselMovements = downSampledFishingVesselMovements;
         this.downsampledAssets = downsampledAssets;
     }
 
-    public Map<String, MovementBaseType> getDownsampledMovements() {
+    public Map<Integer, PositionRecord> getDownsampledMovements() {
         return downsampledMovements;
     }
 
-    public void setDownsampledMovements(Map<String, MovementBaseType> downsampledMovements) {
+    public void setDownsampledMovements(Map<Integer, PositionRecord> downsampledMovements) {
         this.downsampledMovements = downsampledMovements;
     }
 
-    public Map<String, MovementBaseType> getDownSampledFishingVesselMovements() {
+    public Map<Integer, PositionRecord> getDownSampledFishingVesselMovements() {
         return downSampledFishingVesselMovements;
     }
 
-    public void setDownSampledFishingVesselMovements(Map<String, MovementBaseType> downSampledFishingVesselMovements) {
+    public void setDownSampledFishingVesselMovements(Map<Integer, PositionRecord> downSampledFishingVesselMovements) {
         this.downSampledFishingVesselMovements = downSampledFishingVesselMovements;
     }
 
@@ -11,18 +11,19 @@ copy of the GNU General Public License along with the IFDM Suite. If not, see <h
  */
 package fish.focus.uvms.plugins.ais.service;
 
-import fish.focus.schema.exchange.movement.v1.MovementBaseType;
 import fish.focus.uvms.ais.Sentence;
 import fish.focus.uvms.asset.client.model.AssetDTO;
 import fish.focus.uvms.plugins.ais.mapper.AisParser;
 import fish.focus.uvms.plugins.ais.mapper.AisParser.AisType;
+import fish.focus.uvms.plugins.ais.mapper.AisPayload;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ejb.Stateless;
 import javax.inject.Inject;
-import java.time.Instant;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,39 +33,60 @@ public class ProcessService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ProcessService.class);
 
-    @Inject
     private ExchangeService exchangeService;
+    private DownsamplingAssetService downsamplingAssetService;
+
+    public ProcessService() {
+    }
+
+    @Inject
+    public ProcessService(ExchangeService exchangeService, DownsamplingAssetService downsamplingAssetService) {
+        this.exchangeService = exchangeService;
+        this.downsamplingAssetService = downsamplingAssetService;
+    }
 
     public ProcessResult processMessages(List<Sentence> sentences, Set<String> knownFishingVessels) {
         long start = System.currentTimeMillis();
 
-        Map<String, MovementBaseType> downsampledMovements = new HashMap<>();
-        Map<String, MovementBaseType> downSampledFishingVesselMovements = new HashMap<>();
+        Map<Integer, PositionRecord> downsampledMovements = new HashMap<>();
+        Map<Integer, PositionRecord> downSampledFishingVesselMovements = new HashMap<>();
         Map<String, AssetDTO> downsampledAssets = new HashMap<>();
+        // reports are decoded into this record, it is kept when it holds the first report of a vessel in the batch
+        PositionRecord decoded = new PositionRecord();
         // collect
         for (Sentence sentence : sentences) {
             try {
-                String binary = symbolToBinary(sentence.getSentence());
-                AisType aisType = AisParser.parseAisType(binary);
-                Instant lesTimestamp = null;
+                // the RA has read the message type, messages that are not handled are not decoded at all
+                AisType aisType = AisParser.parseAisType(sentence.getMessageType());
+                if (aisType == AisType.UNKNOWN) {
+                    continue;
+                }
+                // static reports rarely change, an unchanged one is skipped before it is decoded
+                if (aisType.isStaticReport() && downsamplingAssetService.isUnchangedStaticReport(sentence, knownFishingVessels)) {
+                    continue;
+                }
+                AisPayload payload = AisPayload.of(sentence.getPayload());
+                long lesTimestampMillis = -1;
                 if (sentence.hasValidCommentBlock()) {
-                    lesTimestamp = sentence.getCommentBlockLesTimestamp();
+                    lesTimestampMillis = sentence.getCommentBlockTimestampMillis();
                 }
                 if (aisType.isPositionReport()) {
-                    MovementBaseType movement = AisParser.parsePositionReport(binary, aisType, lesTimestamp);
-
-                    if (movement != null) {
-                        if (knownFishingVessels.contains(movement.getMmsi())) {
-                            downSampledFishingVesselMovements.put(movement.getMmsi(), movement);
+                    if (AisParser.parsePositionReport(payload, aisType, lesTimestampMillis, decoded)) {
+                        // a later report of the vessel overwrites the earlier one in place
+                        PositionRecord latest = downsampledMovements.get(decoded.getMmsi());
+                        if (latest == null) {
+                            downsampledMovements.put(decoded.getMmsi(), decoded);
+                            decoded = new PositionRecord();
                         } else {
-                            downsampledMovements.put(movement.getMmsi(), movement);
+                            latest.copyFrom(decoded);
                         }
                     }
                 } else if (aisType.isStaticReport()) {
-                    AssetDTO asset = AisParser.parseStaticReport(binary, aisType);
+                    AssetDTO asset = AisParser.parseStaticReport(payload, aisType);
                     if (asset != null) {
                         downsampledAssets.put(asset.getMmsi(), asset);
-                        addFishingVessels(asset, knownFishingVessels);
+                        boolean fishingVessel = addFishingVessels(asset, knownFishingVessels);
+                        downsamplingAssetService.storeStaticReport(sentence, fishingVessel);
                     } else {
                         LOG.error("Couldn't get asset from ais static report, ignoring it");
                     }
@@ -74,35 +96,37 @@ public class ProcessService {
                 LOG.error("Could not parse AIS message {}", sentence, e);
             }
         }
+        splitFishingVessels(downsampledMovements, downSampledFishingVesselMovements, knownFishingVessels);
         LOG.info("Processing time: {} for {} sentences", (System.currentTimeMillis() - start), sentences.size());
         return new ProcessResult(downsampledMovements, downSampledFishingVesselMovements, downsampledAssets);
     }
 
-    private void addFishingVessels(AssetDTO asset, Set<String> knownFishingVessels) {
-        if ((asset.getVesselType() != null && asset.getVesselType().equals("Fishing"))) {
-            knownFishingVessels.add(asset.getMmsi()); // knownFishingVessels is also changed by EventStreamListener
+    /**
+     * Moves the positions of known fishing vessels over, once per vessel instead of once per report
+     */
+    private void splitFishingVessels(Map<Integer, PositionRecord> movements, Map<Integer, PositionRecord> fishingVesselMovements,
+                                     Set<String> knownFishingVessels) {
+        if (knownFishingVessels.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<Integer, PositionRecord>> iterator = movements.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, PositionRecord> movement = iterator.next();
+            if (knownFishingVessels.contains(Integer.toString(movement.getKey()))) {
+                fishingVesselMovements.put(movement.getKey(), movement.getValue());
+                iterator.remove();
+            }
         }
     }
 
-    private String symbolToBinary(String symbolString) {
-        try {
-            StringBuilder sb = new StringBuilder();
-            switch (symbolString.charAt(0)) {
-                case '1': // message id 1
-                case '2': // message id 2
-                case '3': // message id 3
-                case '5': // message id 5
-                case 'B': // message id 18
-                case 'H': // message id 24
-                    for (int i = 0; i < symbolString.length(); i++) {
-                        sb.append(Conversion.getBinaryForSymbol(symbolString.charAt(i)));
-                    }
-                    return sb.toString();
-                default:
-            }
-        } catch (Exception e) {
-            LOG.info("Failed to parse {}", symbolString, e);
+    /**
+     * @return true if the asset is a fishing vessel
+     */
+    private boolean addFishingVessels(AssetDTO asset, Set<String> knownFishingVessels) {
+        if ((asset.getVesselType() != null && asset.getVesselType().equals("Fishing"))) {
+            knownFishingVessels.add(asset.getMmsi()); // knownFishingVessels is also changed by EventStreamListener
+            return true;
         }
-        return null;
+        return false;
     }
 }
\ No newline at end of file
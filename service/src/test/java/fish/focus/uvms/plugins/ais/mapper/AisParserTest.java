@@ -19,7 +19,8 @@ public class AisParserTest {
         return Arrays.asList(new Object[][]{
                 {"826500702", "SWE"}, {"03699999", "USA"}, {"0026500702", "SWE"}, {"111257456", "NOR"},
                 {"992572500", "NOR"}, {"982574565", "NOR"}, {"970257456", "NOR"}, {"265789456", "SWE"},
-                {"826", "ERR"}, {"00222", "ERR"}, {"9825", "ERR"}, {"98", "ERR"}, { null, "ERR"}
+                {"003669702", "USA"}, {"826", "ERR"}, {"00222", "ERR"}, {"9825", "ERR"}, {"98", "ERR"}, { null, "ERR"},
+                {"1073741823", "ERR"}
         });
     }
 
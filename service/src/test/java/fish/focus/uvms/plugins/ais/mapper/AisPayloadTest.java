@@ -0,0 +1,69 @@
+package fish.focus.uvms.plugins.ais.mapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AisPayloadTest {
+
+    // type 1 from https://fossies.org/linux/gpsd/test/sample.aivdm
+    private static final String TYPE1 = "15RTgt0PAso;90TKcjM8h6g208CQ";
+    // type 5, vessel BALTICA
+    private static final String TYPE5 = "5CpuqR029m2U<pLP00084i@T<40000000000000N1HN814lf0<1i6CR@@PC52@ii6CR@@00";
+
+    @Test
+    public void readFieldsTest() {
+        AisPayload payload = AisPayload.of(TYPE1);
+
+        assertEquals(168, payload.bitLength());
+        assertEquals(1, payload.unsigned(0, 6));
+        assertEquals(371798000, payload.unsigned(8, 30));
+        // longitude and latitude cross word boundaries
+        assertEquals(-74037230, payload.signed(61, 28));
+        assertEquals(29028980, payload.signed(89, 27));
+        assertEquals(2240, payload.unsigned(116, 12));
+        assertEquals(215, payload.unsigned(128, 9));
+    }
+
+    @Test
+    public void readFieldsLikeBinaryStringTest() {
+        AisPayload payload = AisPayload.of(TYPE5);
+        StringBuilder binary = new StringBuilder();
+        for (char c : TYPE5.toCharArray()) {
+            int value = c - '0' > 40 ? c - '0' - 8 : c - '0';
+            binary.append(String.format("%6s", Integer.toBinaryString(value)).replace(' ', '0'));
+        }
+
+        for (int offset = 0; offset < payload.bitLength(); offset++) {
+            for (int width = 1; width < 64 && offset + width <= payload.bitLength(); width++) {
+                long expected = Long.parseUnsignedLong(binary.substring(offset, offset + width), 2);
+                assertEquals(expected, payload.unsigned(offset, width));
+                assertEquals(expected << (64 - width) >> (64 - width), payload.signed(offset, width));
+            }
+        }
+    }
+
+    @Test
+    public void readTextTest() {
+        AisPayload payload = AisPayload.of(TYPE5);
+
+        assertEquals("BALTICA", payload.text(112, 120));
+        assertEquals("SNGH", payload.text(70, 42));
+        assertEquals("", payload.text(0, 5));
+    }
+
+    @Test
+    public void restOfSentenceIsIgnoredTest() {
+        assertEquals(168, AisPayload.of(TYPE1 + ",0*4A").bitLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCharacterTest() {
+        AisPayload.of("15RTgt0PAso;90TKcjM8h6g2X8CQ");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void fieldPastEndTest() {
+        AisPayload.of(TYPE1).unsigned(160, 9);
+    }
+}
@@ -3,6 +3,7 @@ package fish.focus.uvms.plugins.ais.service;
 import fish.focus.uvms.ais.AISConnection;
 import fish.focus.uvms.ais.AISConnectionFactory;
 import fish.focus.uvms.ais.Sentence;
+import fish.focus.uvms.ais.StreamCompression;
 import fish.focus.uvms.asset.client.AssetClient;
 import fish.focus.uvms.asset.client.model.AssetDTO;
 import fish.focus.uvms.asset.client.model.search.SearchBranch;
@@ -11,7 +12,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.*;
-import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import javax.enterprise.concurrent.ManagedExecutorService;
@@ -19,10 +19,6 @@ import javax.resource.ResourceException;
 import java.util.ArrayList;
 import java.util.List;
 
-import static java.time.temporal.ChronoUnit.MILLIS;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static java.util.concurrent.TimeUnit.SECONDS;
-import static org.awaitility.Awaitility.with;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
@@ -59,21 +55,8 @@ public class AisServiceTest {
     @InjectMocks
     private AisService aisService;
 
-    private int numberOfGeneratedReconnectAnswers = 0;
-    private final List<Boolean> reconnectAnswersForBackOffs = List.of(
-            // init
-            false,
-            // connectAndRetrieve -> isConnectionDown
-            // Should have a "live" connection since these tests are about a
-            // connection not receiving data while still open
-            true, true, true
-    );
-
-
     @Before
     public void setupMocks() {
-        numberOfGeneratedReconnectAnswers = 0;
-
         when(startUp.isEnabled()).thenReturn(true);
         when(startUp.getSetting("HOST")).thenReturn("127.0.0.0");
         when(startUp.getSetting("PORT")).thenReturn("0");
@@ -81,44 +64,33 @@ public class AisServiceTest {
         when(startUp.getSetting("PASSWORD")).thenReturn("mypassword");
     }
 
-    private boolean generateConnectionAnswersForBackOffTests(InvocationOnMock input) {
-        // mimics internal state in AisService
-
-        numberOfGeneratedReconnectAnswers++;
-        if (numberOfGeneratedReconnectAnswers == 25) {
-            // need to skip the init in the 25th run since it should be in a "lockout" period then
-            numberOfGeneratedReconnectAnswers++;
-        }
-
-        return reconnectAnswersForBackOffs.get((numberOfGeneratedReconnectAnswers - 1) % 4);
-    }
-
-    // White-box testing the reconnect functionality
-
     @Test
-    public void shouldNotReconnectDuringShortBackOffTime() throws ResourceException {
+    public void shouldLeaveSilentFeedToResourceAdapter() throws ResourceException {
         AISConnection connectionMock = mock(AISConnection.class);
         when(connectionMock.getSentences()).thenReturn(List.of());
-        when(connectionMock.isOpen()).thenAnswer(this::generateConnectionAnswersForBackOffTests);
+        when(connectionMock.isOpen()).thenReturn(false, // init
+                true);
         when(factory.getConnection()).thenReturn(connectionMock);
 
         aisService.init();
-        aisService.connectAndRetrieve();
+        for (int i = 0; i < 6; i++) {
+            aisService.connectAndRetrieve();
+        }
 
-        // One in init
+        // Only in init, the idle read watchdog of the RA reconnects a feed that stays open but silent
         verify(connectionMock, times(1)).open(anyString(), anyInt(), anyString(), anyString());
+        verify(connectionMock, times(0)).reconnect();
         verify(connectionMock, times(0)).close();
     }
 
     @Test
-    public void shouldReconnectWhenNoMessagesOnFirstTryWithNoBackOffTime() throws ResourceException {
+    public void shouldReconnectWhenConnectionIsClosed() throws ResourceException {
         AISConnection connectionMock = mock(AISConnection.class);
-        when(connectionMock.getSentences()).thenReturn(List.of());
-        when(connectionMock.isOpen()).thenAnswer(this::generateConnectionAnswersForBackOffTests);
+        when(connectionMock.getSentences()).thenReturn(List.of(new Sentence("", "")));
+        when(connectionMock.isOpen()).thenReturn(false, // init
+                true, false, false, true);
         when(factory.getConnection()).thenReturn(connectionMock);
 
-        aisService.shortBackOffTime = 0;
-
         aisService.init();
         aisService.connectAndRetrieve();
 
@@ -128,64 +100,110 @@ public class AisServiceTest {
     }
 
     @Test
-    public void shouldReconnectWhenNoMessagesOnSixthTryAfterLongBackOffTime() throws ResourceException {
+    public void shouldCloseConnectionWhenPluginDisabled() throws ResourceException {
+        when(startUp.isEnabled()).thenReturn(true, false);
+
         AISConnection connectionMock = mock(AISConnection.class);
-        when(connectionMock.getSentences()).thenReturn(List.of());
-        when(connectionMock.isOpen()).thenAnswer(this::generateConnectionAnswersForBackOffTests);
+        when(connectionMock.isOpen()).thenReturn(false, true);
         when(factory.getConnection()).thenReturn(connectionMock);
 
-        aisService.shortBackOffTime = 0;
-        // windows might have time resolution in 10s of millis?
-        aisService.longBackOffTime = 50;
-        aisService.backOffUnit = MILLIS;
+        aisService.init();
+        aisService.connectAndRetrieve();
+
+        verify(connectionMock, times(0)).getSentences();
+        verify(connectionMock).close();
+    }
+
+    @Test
+    public void shouldConnectEachConfiguredFeed() throws ResourceException {
+        stubFeed("terrestrial", "10.0.0.1");
+        stubFeed("satellite", "10.0.0.2");
+        when(startUp.getSettingAsList("FEEDS")).thenReturn(List.of("terrestrial", "satellite"));
+        AISConnection terrestrial = mock(AISConnection.class);
+        AISConnection satellite = mock(AISConnection.class);
+        when(factory.getConnection("terrestrial")).thenReturn(terrestrial);
+        when(factory.getConnection("satellite")).thenReturn(satellite);
 
         aisService.init();
 
-        for (int i = 0; i < 6; i++) {
-            aisService.connectAndRetrieve();
-        }
+        verify(terrestrial).open("10.0.0.1", 8040, "user", "password");
+        verify(satellite).open("10.0.0.2", 8040, "user", "password");
+    }
 
-        // Need to wait for the above lockout period to pass before running again
-        with()
-                .pollDelay(100, MILLISECONDS)
-                .await()
-                .atMost(1, SECONDS)
-                .untilAsserted(() -> {
-                    aisService.connectAndRetrieve();
-                    verify(connectionMock, times(7)).open(anyString(), anyInt(), anyString(), anyString());
-                    verify(connectionMock, times(6)).close();
-                });
+    @Test
+    public void shouldOpenCompressedFeedWithCompression() throws ResourceException {
+        stubFeed("satellite", "10.0.0.2");
+        when(startUp.getSetting("FEED.satellite.COMPRESSION")).thenReturn("gzip");
+        when(startUp.getSettingAsList("FEEDS")).thenReturn(List.of("satellite"));
+        AISConnection satellite = mock(AISConnection.class);
+        when(factory.getConnection("satellite")).thenReturn(satellite);
+
+        aisService.init();
+
+        verify(satellite).open("10.0.0.2", 8040, "user", "password", StreamCompression.GZIP);
     }
 
     @Test
-    public void shouldReconnectWhenConnectionIsClosed() throws ResourceException {
-        AISConnection connectionMock = mock(AISConnection.class);
-        when(connectionMock.getSentences()).thenReturn(List.of(new Sentence("", "")));
-        when(connectionMock.isOpen()).thenReturn(false, // init
-                true, false, false, true);
-        when(factory.getConnection()).thenReturn(connectionMock);
+    public void shouldListenForUdpFeed() throws ResourceException {
+        stubFeed("coastal", "0.0.0.0");
+        when(startUp.getSetting("FEED.coastal.PROTOCOL")).thenReturn("udp");
+        when(startUp.getSettingAsList("FEEDS")).thenReturn(List.of("coastal"));
+        AISConnection coastal = mock(AISConnection.class);
+        when(factory.getConnection("coastal")).thenReturn(coastal);
 
         aisService.init();
-        aisService.connectAndRetrieve();
 
-        // One in init and one in reconnect
-        verify(connectionMock, times(2)).open(anyString(), anyInt(), anyString(), anyString());
-        verify(connectionMock).close();
+        verify(coastal).listen("0.0.0.0", 8040);
+        verify(coastal, times(0)).open(anyString(), anyInt(), anyString(), anyString());
     }
 
     @Test
-    public void shouldCloseConnectionWhenPluginDisabled() throws ResourceException {
-        when(startUp.isEnabled()).thenReturn(true, false);
+    public void shouldReplayFileInsteadOfConnecting() throws ResourceException {
+        stubFeed("backfill", null);
+        when(startUp.getSetting("FEED.backfill.PORT")).thenReturn(null);
+        when(startUp.getSetting("FEED.backfill.REPLAY_FILE")).thenReturn("/data/ais/capture.nmea.gz");
+        when(startUp.getSetting("FEED.backfill.REPLAY_SPEED")).thenReturn("10x");
+        when(startUp.getSettingAsList("FEEDS")).thenReturn(List.of("backfill"));
+        AISConnection backfill = mock(AISConnection.class);
+        when(factory.getConnection("backfill")).thenReturn(backfill);
 
-        AISConnection connectionMock = mock(AISConnection.class);
-        when(connectionMock.isOpen()).thenReturn(false, true);
-        when(factory.getConnection()).thenReturn(connectionMock);
+        aisService.init();
+
+        verify(backfill).replay("/data/ais/capture.nmea.gz", 10);
+        verify(backfill, times(0)).open(anyString(), anyInt(), anyString(), anyString());
+    }
+
+    @Test
+    public void shouldOnlyCloseRemovedFeedOnUpdate() throws ResourceException {
+        stubFeed("terrestrial", "10.0.0.1");
+        stubFeed("satellite", "10.0.0.2");
+        stubFeed("backup", "10.0.0.3");
+        when(startUp.getSettingAsList("FEEDS")).thenReturn(List.of("terrestrial", "satellite"), List.of("terrestrial", "backup"));
+        AISConnection terrestrial = mock(AISConnection.class);
+        AISConnection satellite = mock(AISConnection.class);
+        AISConnection backup = mock(AISConnection.class);
+        when(factory.getConnection("terrestrial")).thenReturn(terrestrial);
+        when(factory.getConnection("satellite")).thenReturn(satellite);
+        when(factory.getConnection("backup")).thenReturn(backup);
 
         aisService.init();
-        aisService.connectAndRetrieve();
+        aisService.updateFeeds();
 
-        verify(connectionMock, times(0)).getSentences();
-        verify(connectionMock).close();
+        verify(terrestrial, times(1)).open(anyString(), anyInt(), anyString(), anyString());
+        verify(terrestrial, times(0)).close();
+        verify(satellite).close();
+        verify(backup).open("10.0.0.3", 8040, "user", "password");
+    }
+
+    private void stubFeed(String name, String host) {
+        when(startUp.getSetting("FEED." + name + ".HOST")).thenReturn(host);
+        when(startUp.getSetting("FEED." + name + ".PORT")).thenReturn("8040");
+        when(startUp.getSetting("FEED." + name + ".USERNAME")).thenReturn("user");
+        when(startUp.getSetting("FEED." + name + ".PASSWORD")).thenReturn("password");
+        when(startUp.getSetting("FEED." + name + ".COMPRESSION")).thenReturn(null);
+        when(startUp.getSetting("FEED." + name + ".PROTOCOL")).thenReturn(null);
+        when(startUp.getSetting("FEED." + name + ".REPLAY_FILE")).thenReturn(null);
+        when(startUp.getSetting("FEED." + name + ".REPLAY_SPEED")).thenReturn(null);
     }
 
     @Test
@@ -1,5 +1,6 @@
 package fish.focus.uvms.plugins.ais.service;
 
+import fish.focus.uvms.ais.Sentence;
 import fish.focus.uvms.asset.client.model.AssetDTO;
 import fish.focus.uvms.plugins.ais.StartupBean;
 import org.junit.Test;
@@ -8,8 +9,12 @@ import org.mockito.*;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,4 +48,54 @@ public class DownsamplingAssetServiceTest {
         assertThat(captorAssets.getAllValues().size(), is(1));
     }
 
+    @Test
+    public void unchangedStaticReportTest() {
+        Sentence report = new Sentence(null, "55?MbV02;H;s<HtKR20EHE:0@T4@Dn2222222216L961O5Gf0NSQEp6ClRp8");
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(report, new HashSet<>()), is(false));
+        downsamplingAssetService.storeStaticReport(report, false);
+
+        Sentence sameReport = new Sentence(null, "55?MbV02;H;s<HtKR20EHE:0@T4@Dn2222222216L961O5Gf0NSQEp6ClRp8");
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(sameReport, new HashSet<>()), is(true));
+        Sentence changedReport = new Sentence(null, "55?MbV02;H;s<HtKR20EHE:0@T4@Dn2222222216L961O5Gf0NSQEp6ClRp9");
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(changedReport, new HashSet<>()), is(false));
+
+        assertThat(downsamplingAssetService.getStaticReports(), is(3L));
+        assertThat(downsamplingAssetService.getUnchangedStaticReports(), is(1L));
+    }
+
+    @Test
+    public void unchangedFishingVesselReportAddsVesselAgainTest() {
+        Sentence fishingVessel = new Sentence(null, "H42O55lti4hhhilD3nink000?050,0*40");
+        Sentence otherVessel = new Sentence(null, "55?MbV02;H;s<HtKR20EHE:0@T4@Dn2222222216L961O5Gf0NSQEp6ClRp8");
+        downsamplingAssetService.storeStaticReport(fishingVessel, true);
+        downsamplingAssetService.storeStaticReport(otherVessel, false);
+
+        // the known fishing vessels have been reloaded without the vessel meanwhile
+        Set<String> knownFishingVessels = new HashSet<>();
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(otherVessel, knownFishingVessels), is(true));
+        assertThat(knownFishingVessels, is(empty()));
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(fishingVessel, knownFishingVessels), is(true));
+        assertThat(knownFishingVessels, contains("271041815"));
+    }
+
+    @Test
+    public void type24PartsAreComparedSeparatelyTest() {
+        Sentence partA = new Sentence(null, "H42O55i18tMET00000000000000,2*6D");
+        Sentence partB = new Sentence(null, "H42O55lti4hhhilD3nink000?050,0*40");
+        downsamplingAssetService.storeStaticReport(partA, false);
+        downsamplingAssetService.storeStaticReport(partB, false);
+
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(partA, new HashSet<>()), is(true));
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(partB, new HashSet<>()), is(true));
+    }
+
+    @Test
+    public void staticReportsAreDecodedAgainAfterAssetUpdateTest() {
+        when(startUp.isEnabled()).thenReturn(true);
+        Sentence report = new Sentence(null, "55?MbV02;H;s<HtKR20EHE:0@T4@Dn2222222216L961O5Gf0NSQEp6ClRp8");
+        downsamplingAssetService.storeStaticReport(report, false);
+
+        downsamplingAssetService.sendAssetUpdates();
+        assertThat(downsamplingAssetService.isUnchangedStaticReport(report, new HashSet<>()), is(false));
+    }
 }
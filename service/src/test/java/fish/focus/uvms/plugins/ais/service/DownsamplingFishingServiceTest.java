@@ -1,6 +1,7 @@
 package fish.focus.uvms.plugins.ais.service;
 
 import fish.focus.schema.exchange.movement.v1.MovementBaseType;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -38,9 +39,9 @@ public class DownsamplingFishingServiceTest {
     public void sendDownSampledFishingVesselMovementsTest() {
         assertThat(downsamplingFishingService.getDownSampledFishingVesselMovements().size(), is(0));
 
-        MovementBaseType movementBaseType = new MovementBaseType();
-        movementBaseType.setMmsi("123456789");
-        downsamplingFishingService.getDownSampledFishingVesselMovements().put(movementBaseType.getMmsi(), movementBaseType);
+        PositionRecord position = new PositionRecord();
+        position.setMmsi(123456789);
+        downsamplingFishingService.getDownSampledFishingVesselMovements().put(position.getMmsi(), position);
         assertThat(downsamplingFishingService.getDownSampledFishingVesselMovements().size(), is(1));
 
         downsamplingFishingService.handleDownSampledFishingVesselMovements();
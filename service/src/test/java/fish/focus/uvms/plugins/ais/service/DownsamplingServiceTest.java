@@ -2,6 +2,7 @@ package fish.focus.uvms.plugins.ais.service;
 
 import fish.focus.schema.exchange.movement.v1.MovementBaseType;
 import fish.focus.uvms.plugins.ais.StartupBean;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.*;
@@ -40,10 +41,10 @@ public class DownsamplingServiceTest {
         when(startUp.getSetting("onlyAisFromFishingVessels")).thenReturn("false");
 
         assertThat(downsamplingService.getDownSampledMovements().size(), is(0));
-        MovementBaseType movementBaseType = new MovementBaseType();
-        movementBaseType.setMmsi("123456789");
+        PositionRecord position = new PositionRecord();
+        position.setMmsi(123456789);
 
-        downsamplingService.getDownSampledMovements().put(movementBaseType.getMmsi(), movementBaseType);
+        downsamplingService.getDownSampledMovements().put(position.getMmsi(), position);
         assertThat(downsamplingService.getDownSampledMovements().size(), is(1));
         downsamplingService.handleDownSampledMovements();
         assertThat(downsamplingService.getDownSampledMovements().size(), is(0));
@@ -58,10 +59,10 @@ public class DownsamplingServiceTest {
     public void onlyLogDownSampledMovementsTest() {
         when(startUp.getSetting("onlyAisFromFishingVessels")).thenReturn("true");
         assertThat(downsamplingService.getDownSampledMovements().size(), is(0));
-        MovementBaseType movementBaseType = new MovementBaseType();
-        movementBaseType.setMmsi("123456789");
+        PositionRecord position = new PositionRecord();
+        position.setMmsi(123456789);
 
-        downsamplingService.getDownSampledMovements().put(movementBaseType.getMmsi(), movementBaseType);
+        downsamplingService.getDownSampledMovements().put(position.getMmsi(), position);
         assertThat(downsamplingService.getDownSampledMovements().size(), is(1));
 
         downsamplingService.handleDownSampledMovements();
@@ -0,0 +1,89 @@
+package fish.focus.uvms.plugins.ais.service;
+
+import fish.focus.uvms.ais.Sentence;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Measures the time {@link ProcessService} takes to decode a message, on a mix of the message types that are
+ * handled. Not run as a test, run the main method with the test classpath, e.g. with
+ * {@code -Dorg.slf4j.simpleLogger.defaultLogLevel=warn} to leave out the per batch logging.
+ * <p>
+ * Every static report in the batch is of another vessel. The batch is measured twice: with all static reports
+ * decoded, as for vessels not heard since the last asset update, and with all of them unchanged, as when every
+ * vessel has reported again. The share of unchanged static reports is printed with the time.
+ */
+public class ProcessServiceBenchmark {
+
+    private static final String[] PAYLOADS = {
+            "15RTgt0PAso;90TKcjM8h6g208CQ",
+            "25Cjtd0Oj;Jp7ilG7=UkKBoB0<06",
+            "38Id705000rRVJhE7cl9n;160000",
+            "B52K>;h00Fc>jpUlNV@ikwpUoP06",
+            "13@p;@P0020hrRFPqG5EQUHHP00",
+            "55?MbV02;H;s<HtKR20EHE:0@T4@Dn2222222216L961O5Gf0NSQEp6ClRp8",
+            "H42O55i18tMET00000000000000",
+            "H42O55lti4hhhilD3nink000?050",
+    };
+    private static final int BATCH_SIZE = 10_000;
+    private static final int WARMUP_ROUNDS = 50;
+    private static final int ROUNDS = 100;
+
+    public static void main(String[] args) {
+        List<Sentence> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new Sentence(null, withVessel(PAYLOADS[i % PAYLOADS.length], i / PAYLOADS.length)));
+        }
+        Set<String> knownFishingVessels = new HashSet<>();
+
+        run("decoded", batch, knownFishingVessels, DownsamplingAssetService::new);
+        DownsamplingAssetService assetService = new DownsamplingAssetService();
+        run("unchanged", batch, knownFishingVessels, () -> assetService);
+    }
+
+    /**
+     * @param assetServices a new service for every round decodes all static reports, the same service skips them
+     *                      from the second round on
+     */
+    private static void run(String name, List<Sentence> batch, Set<String> knownFishingVessels,
+                            Supplier<DownsamplingAssetService> assetServices) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            new ProcessService(null, assetServices.get()).processMessages(batch, knownFishingVessels);
+        }
+        long elapsed = 0;
+        long staticReports = 0;
+        long unchangedStaticReports = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            DownsamplingAssetService assetService = assetServices.get();
+            ProcessService processService = new ProcessService(null, assetService);
+            long staticReportsBefore = assetService.getStaticReports();
+            long unchangedBefore = assetService.getUnchangedStaticReports();
+            long start = System.nanoTime();
+            processService.processMessages(batch, knownFishingVessels);
+            elapsed += System.nanoTime() - start;
+            staticReports += assetService.getStaticReports() - staticReportsBefore;
+            unchangedStaticReports += assetService.getUnchangedStaticReports() - unchangedBefore;
+        }
+        System.out.printf("%s: %.0f ns/message, %.0f%% of the static reports unchanged%n", name,
+                (double) elapsed / ROUNDS / BATCH_SIZE, 100.0 * unchangedStaticReports / staticReports);
+    }
+
+    /**
+     * Gives a static report the MMSI of another vessel by replacing the fifth and sixth payload character, bits 24
+     * to 35 of the MMSI. The MID and the type 24 part number are kept.
+     */
+    private static String withVessel(String payload, int vessel) {
+        if (payload.charAt(0) != '5' && payload.charAt(0) != 'H') {
+            return payload;
+        }
+        return payload.substring(0, 4) + armor((vessel >> 6) & 63) + armor(vessel & 63) + payload.substring(6);
+    }
+
+    private static char armor(int value) {
+        return (char) (value < 40 ? '0' + value : '0' + value + 8);
+    }
+}
@@ -4,6 +4,8 @@ import fish.focus.schema.exchange.movement.v1.MovementBaseType;
 import fish.focus.uvms.ais.Sentence;
 import fish.focus.uvms.asset.client.model.AssetDTO;
 import fish.focus.uvms.plugins.ais.StartupBean;
+import fish.focus.uvms.plugins.ais.mapper.AisParser;
+import fish.focus.uvms.plugins.ais.mapper.PositionRecord;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,7 +22,9 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.*;
 
 /*
  * Test data taken from https://fossies.org/linux/gpsd/test/sample.aivdm
@@ -37,6 +41,9 @@ public class ProcessServiceTest {
     @Mock
     private FishingVesselCache fishingVesselCache;
 
+    @Mock
+    private DownsamplingAssetService downsamplingAssetService;
+
     @InjectMocks
     private ProcessService processService;
 
@@ -53,8 +60,7 @@ public class ProcessServiceTest {
     @Test
     public void aisType1Test() {
         ProcessResult result = processService.processMessages(Arrays.asList(getAisType1Message()), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("371798000");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 371798000);
         assertThat(movement.getMmsi(), is("371798000"));
         assertThat(movement.getFlagState(), is("PAN"));
         assertThat(movement.getPosition().getLatitude(), is(48.38163333333333));
@@ -70,8 +76,7 @@ public class ProcessServiceTest {
     public void aisType1WithCommentBlockTest() {
         Sentence aisType1MessageWithCommentBlock = new Sentence("1G1:32,s:516,c:1652227200*5B", getAisType1Message().getSentence());
         ProcessResult result = processService.processMessages(Arrays.asList(aisType1MessageWithCommentBlock), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("371798000");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 371798000);
         assertThat(movement.getMmsi(), is("371798000"));
         assertThat(movement.getFlagState(), is("PAN"));
         assertThat(movement.getPosition().getLatitude(), is(48.38163333333333));
@@ -86,11 +91,20 @@ public class ProcessServiceTest {
         assertThat(timestamp, is(Instant.ofEpochSecond(1652227200).minus(1, ChronoUnit.MINUTES).atZone(ZoneOffset.UTC).withSecond(33)));
     }
 
+    @Test
+    public void laterPositionOfVesselReplacesEarlierTest() {
+        Sentence first = new Sentence("s:516,c:1652227200*0B", getAisType1Message().getSentence());
+        Sentence second = new Sentence("s:516,c:1652227260*0D", getAisType1Message().getSentence());
+        ProcessResult result = processService.processMessages(Arrays.asList(first, second), new HashSet<>());
+        assertThat(result.getDownsampledMovements().size(), is(1));
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 371798000);
+        assertThat(movement.getLesReportTime().toInstant(), is(Instant.ofEpochSecond(1652227260)));
+    }
+
     @Test
     public void aisType2Test() {
         ProcessResult result = processService.processMessages(Arrays.asList(getAisType2Message()), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("356302000");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 356302000);
         assertThat(movement.getMmsi(), is("356302000"));
         assertThat(movement.getFlagState(), is("PAN"));
         assertThat(movement.getPosition().getLatitude(), is(40.39235833333333));
@@ -105,8 +119,7 @@ public class ProcessServiceTest {
     @Test
     public void aisType3Test() {
         ProcessResult result = processService.processMessages(Arrays.asList(getAisType3Message()), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("563808000");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 563808000);
         assertThat(movement.getMmsi(), is("563808000"));
         assertThat(movement.getFlagState(), is("SGP"));
         assertThat(movement.getPosition().getLatitude(), is(36.91));
@@ -121,8 +134,7 @@ public class ProcessServiceTest {
     @Test
     public void positionTest() {
         ProcessResult result = processService.processMessages(Arrays.asList(getAisPositionMessage()), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("219024194");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 219024194);
         assertThat(movement.getMmsi(), is("219024194"));
         assertThat(movement.getFlagState(), is("DNK"));
         assertThat(movement.getPosition().getLatitude(), is(57.490381666666664));
@@ -133,8 +145,7 @@ public class ProcessServiceTest {
     @Test
     public void positionType18Test() {
         ProcessResult result = processService.processMessages(Arrays.asList(getAisType18Message()), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("338087471");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 338087471);
         assertThat(movement.getMmsi(), is("338087471"));
         assertThat(movement.getFlagState(), is("USA"));
         assertThat(movement.getPosition().getLatitude(), is(40.68454));
@@ -146,8 +157,7 @@ public class ProcessServiceTest {
     public void positionType18WithCommentBlockTest() {
         Sentence aisType1MessageWithCommentBlock = new Sentence("1G2:353911,s:Goteborg,c:1653900489*4E", getAisType18Message().getSentence());
         ProcessResult result = processService.processMessages(Arrays.asList(aisType1MessageWithCommentBlock), new HashSet<>());
-        Map<String, MovementBaseType> movements = result.getDownsampledMovements();
-        MovementBaseType movement = movements.get("338087471");
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 338087471);
         assertThat(movement.getMmsi(), is("338087471"));
         assertThat(movement.getFlagState(), is("USA"));
         assertThat(movement.getPosition().getLatitude(), is(40.68454));
@@ -171,6 +181,15 @@ public class ProcessServiceTest {
         assertThat(asset.getIrcs(), is("3FOF8"));
     }
 
+    @Test
+    public void unchangedStaticReportIsSkippedTest() {
+        Sentence sentence = getAisType5Message();
+        when(downsamplingAssetService.isUnchangedStaticReport(eq(sentence), anySet())).thenReturn(true);
+        ProcessResult result = processService.processMessages(Arrays.asList(sentence), new HashSet<>());
+        assertThat(result.getDownsampledAssets().size(), is(0));
+        verify(downsamplingAssetService, never()).storeStaticReport(eq(sentence), anyBoolean());
+    }
+
     @Test
     public void fishingVesselTest() {
         String knownMmsi = "261061000";
@@ -188,7 +207,7 @@ public class ProcessServiceTest {
         fishingVessels.add(knownMmsi);
         ProcessResult result = processService.processMessages(Arrays.asList(getAisPositionMessage()), fishingVessels);
         assertThat(result.getDownSampledFishingVesselMovements().size(), is(1));
-        assertThat(result.getDownSampledFishingVesselMovements().get(knownMmsi).getMmsi(), is(knownMmsi));
+        assertThat(movement(result.getDownSampledFishingVesselMovements(), Integer.parseInt(knownMmsi)).getMmsi(), is(knownMmsi));
     }
 
     @Test
@@ -216,6 +235,40 @@ public class ProcessServiceTest {
         assertThat(asset.getIrcs(), is("TC6163"));
     }
 
+    @Test
+    public void baseStationReportType4IsNoMovementTest() {
+        ProcessResult result = processService.processMessages(Arrays.asList(getAisType4Message()), new HashSet<>());
+        assertThat(result.getDownsampledMovements().size(), is(0));
+        assertThat(result.getDownsampledAssets().size(), is(0));
+    }
+
+    @Test
+    public void extendedClassBReportType19Test() {
+        ProcessResult result = processService.processMessages(Arrays.asList(getAisType19Message()), new HashSet<>());
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 367059850);
+        assertThat(movement.getFlagState(), is("USA"));
+        assertThat(movement.getPosition().getLatitude(), is(29.543695));
+        assertThat(movement.getPosition().getLongitude(), is(-88.81039166666666));
+        assertThat(movement.getReportedSpeed(), is(8.7));
+        assertThat(movement.getReportedCourse(), is(335.9));
+        assertThat(movement.getPositionTime().toInstant().atZone(ZoneOffset.UTC).getSecond(), is(46));
+    }
+
+    @Test
+    public void longRangeReportType27Test() {
+        ProcessResult result = processService.processMessages(Arrays.asList(getAisType27Message()), new HashSet<>());
+        MovementBaseType movement = movement(result.getDownsampledMovements(), 206914217);
+        assertThat(movement.getPosition().getLatitude(), is(4.84));
+        assertThat(movement.getPosition().getLongitude(), is(137.02333333333334));
+        assertThat(movement.getReportedSpeed(), is(57.0));
+        assertThat(movement.getReportedCourse(), is(167.0));
+        assertThat(movement.getTrueHeading(), is(nullValue()));
+    }
+
+    private MovementBaseType movement(Map<Integer, PositionRecord> positions, int mmsi) {
+        return AisParser.toMovement(positions.get(mmsi));
+    }
+
     /*
     MessageID:          1
     RepeatIndicator:    0
@@ -363,6 +416,44 @@ public class ProcessServiceTest {
         return new Sentence(null, "H42O55lti4hhhilD3nink000?050,0*40");
     }
 
+    /*
+    MessageID:         4
+    UserID:            3669702
+    Time:              2007-05-14T19:57:39Z
+    longitude:         -76.352362
+    latitude:          36.883767
+     */
+    private Sentence getAisType4Message() {
+        return new Sentence(null, "403OviQuMGCqWrRO9>E6fE700@GO,0*4D");
+    }
+
+    /*
+    MessageID:         19
+    UserID:            367059850
+    SOG:               8.7
+    longitude:         -88.810392
+    latitude:          29.543695
+    COG:               335.9
+    TimeStamp:         46
+    name:              CAPT.J.RIMES
+    shipandcargo:      70
+     */
+    private Sentence getAisType19Message() {
+        return new Sentence(null, "C5N3SRgPEnJGEBT>NhWAwwo862PaLELTBJ:V00000000S0D:R220,0*0B");
+    }
+
+    /*
+    MessageID:         27
+    UserID:            206914217
+    longitude:         137.023333
+    latitude:          4.84
+    SOG:               57
+    COG:               167
+     */
+    private Sentence getAisType27Message() {
+        return new Sentence(null, "KC5E2b@U19PFdLbL,0*2D");
+    }
+
     private Sentence getAisType5FishingVessel() {
         return new Sentence(null, "5CpuqR029m2U<pLP00084i@T<40000000000000N1HN814lf0<1i6CR@@PC52@ii6CR@@00");
     }